@@ -1,8 +1,13 @@
 package imageLibrary;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Random;
 import javax.swing.JOptionPane;
+import imageLibrary.analyzer.ImageAnalyzer;
+import imageLibrary.analyzer.ScanOptions;
 import imageLibrary.ui.MainWindow;
 import imageLibrary.util.FolderGenerator;
 import imageLibrary.util.ImageCreator;
@@ -43,14 +48,26 @@ public class Main {
      */
     private static void addImagesInFolders(File folder, Random random) {
         if (!folder.isDirectory()) return;
-        String imageName = "image_" + random.nextInt(1000) + ".jpg";
-        File image = new File(folder, imageName);
-        ImageCreator.createRandomImage(image, 200, 200, Format.JPEG, random.nextInt(256));
-        File[] subfolders = folder.listFiles(File::isDirectory);
-        if (subfolders != null) {
-            for (File sub : subfolders) {
-                addImagesInFolders(sub, random);
-            }
+        try {
+            ImageAnalyzer.walkTree(folder.toPath(), new ScanOptions(), new ImageAnalyzer.TreeVisitor() {
+                @Override
+                public void visitDirectory(Path directory, BasicFileAttributes attributes) {
+                    String imageName;
+                    int shapeCount;
+                    synchronized (random) {
+                        imageName = "image_" + random.nextInt(1000) + ".jpg";
+                        shapeCount = random.nextInt(256);
+                    }
+                    File image = new File(directory.toFile(), imageName);
+                    ImageCreator.createRandomImage(image, 200, 200, Format.JPEG, shapeCount);
+                }
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attributes) {
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Error al crear imágenes en " + folder + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,234 @@
+package imageLibrary.analyzer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import imageLibrary.util.SingleFlight;
+
+/**
+ * Admission control for full image decodes.
+ * Before a file is decoded, its pixel memory (width x height x 4 bytes) is estimated from the
+ * header and taken from a global byte budget shared by every decode in the application.
+ * Decodes that do not fit wait a bounded time for the budget; each time the wait runs out they are
+ * subsampled further when that is allowed, and after the last attempt they fail instead of blocking.
+ * Images whose header announces an absurd pixel count are refused as decompression bombs.
+ * Concurrent requests to decode the same file share a single decode, and full-resolution
+ * decodes use the fastest decoder for the format (see {@link DecoderRegistry}), reusing the
+ * reader that already parsed the header when ImageIO is the one chosen.
+ */
+public class DecodeAdmission {
+    /** Name of the image property holding the subsampling factor of a reduced decode. */
+    public static final String SUBSAMPLING_PROPERTY = "subsampling";
+
+    private static final long MAX_PIXELS = 16_384L * 16_384L;
+    private static final int BYTES_PER_PIXEL = 4;
+    private static final long WAIT_SECONDS = 2;
+    private static final int MAX_ATTEMPTS = 3;
+    private static volatile Budget budget = new Budget(Runtime.getRuntime().maxMemory() / 4);
+
+    /**
+     * Replaces the memory budget shared by every decode. By default it is a quarter of the maximum heap.
+     * Decodes already admitted return their memory to the budget they were admitted in.
+     * @param bytes The new budget in bytes
+     * @throws IllegalArgumentException if the budget is smaller than 1 KB
+     */
+    public static void setBudget(long bytes) {
+        if (bytes < 1024) {
+            throw new IllegalArgumentException("Invalid budget: " + bytes);
+        }
+        budget = new Budget(bytes);
+    }
+
+    /**
+     * Gets the memory of the budget not taken by decodes in progress.
+     * @return The available memory in bytes
+     */
+    public static long getAvailableBytes() {
+        return budget.permits.availablePermits() * 1024L;
+    }
+
+    /**
+     * Decodes an image at full resolution, waiting a bounded time for the memory budget to allow it.
+     * @param file The image file to decode
+     * @return The decoded image, or null if no reader understands the file
+     * @throws IOException if the file cannot be read, is a decompression bomb, is larger than the whole
+     *         budget or does not get its memory in time
+     */
+    public static BufferedImage decode(File file) throws IOException {
+        return decode(file, false);
+    }
+
+    /**
+     * Decodes an image within the memory budget.
+     * When subsampling is allowed, an image larger than the budget is decoded at a reduced
+     * resolution, and so is an image that does not get its memory within a short wait; every
+     * further wait that runs out reduces it again, at least by half its memory.
+     * A reduced image carries its subsampling factor in the {@link #SUBSAMPLING_PROPERTY} property.
+     * @param file The image file to decode
+     * @param allowSubsampling true to accept a reduced image instead of failing or waiting
+     * @return The decoded image, or null if no reader understands the file
+     * @throws IOException if the file cannot be read, is a decompression bomb, is larger than the
+     *         whole budget while subsampling is not allowed, or does not get its memory in time
+     */
+    public static BufferedImage decode(File file, boolean allowSubsampling) throws IOException {
+        try {
+            return SingleFlight.execute(file, allowSubsampling ? "decode-reduced" : "decode",
+                    () -> admitAndDecode(file, allowSubsampling));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Decodes an image once the memory budget admits it. See {@link #decode(File, boolean)}.
+     * @param file The image file to decode
+     * @param allowSubsampling true to accept a reduced image instead of failing or waiting
+     * @return The decoded image, or null if no reader understands the file
+     * @throws Exception if the file cannot be read, cannot be decoded or is refused
+     */
+    private static BufferedImage admitAndDecode(File file, boolean allowSubsampling) throws Exception {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width <= 0 || height <= 0 || width * height > MAX_PIXELS) {
+                    throw new IOException("Imagen rechazada (" + width + "x" + height + " píxeles): "
+                            + file.getName());
+                }
+
+                Budget admitted = budget;
+                int subsampling = 1;
+                int permits = toKilobytes(width * height);
+                if (permits > admitted.kilobytes) {
+                    if (!allowSubsampling) {
+                        throw new IOException("Imagen demasiado grande para la memoria disponible: " + file.getName());
+                    }
+                    subsampling = subsamplingFor(width, height, admitted.kilobytes);
+                    permits = toKilobytes(reducedPixels(width, height, subsampling));
+                }
+
+                int attempts = 1;
+                while (!admitted.permits.tryAcquire(permits, WAIT_SECONDS, TimeUnit.SECONDS)) {
+                    if (attempts++ == MAX_ATTEMPTS) {
+                        throw new IOException("Memoria insuficiente para decodificar la imagen: " + file.getName());
+                    }
+                    if (allowSubsampling) {
+                        // Ask for what is free, or a small share of the budget, but always at most half as much
+                        int available = Math.max(admitted.permits.availablePermits(), admitted.kilobytes / 16);
+                        int target = Math.max(1, Math.min(available, permits / 2));
+                        subsampling = Math.max(subsampling, subsamplingFor(width, height, target));
+                        permits = toKilobytes(reducedPixels(width, height, subsampling));
+                    }
+                }
+                try {
+                    if (subsampling == 1) {
+                        return DecoderRegistry.decode(file, reader);
+                    }
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    return markSubsampled(reader.read(0, param), subsampling);
+                } finally {
+                    admitted.permits.release(permits);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Decodificación interrumpida: " + file.getName());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Gets the subsampling factor an image was decoded with.
+     * @param image An image returned by {@link #decode(File, boolean)}
+     * @return The subsampling factor, 1 for a full-resolution image
+     */
+    public static int getSubsampling(BufferedImage image) {
+        Object value = image.getProperty(SUBSAMPLING_PROPERTY);
+        return value instanceof Integer ? (Integer) value : 1;
+    }
+
+    /**
+     * Converts a pixel count to its estimated memory in KB.
+     * @param pixels The number of pixels
+     * @return The estimated memory in KB, at least 1
+     */
+    private static int toKilobytes(long pixels) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, pixels * BYTES_PER_PIXEL / 1024));
+    }
+
+    /**
+     * Computes the pixel count of an image decoded with a subsampling factor.
+     * @param width The full width
+     * @param height The full height
+     * @param subsampling The subsampling factor
+     * @return The number of pixels of the reduced image
+     */
+    private static long reducedPixels(long width, long height, int subsampling) {
+        return ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+    }
+
+    /**
+     * Finds the smallest subsampling factor that makes an image fit in the given memory.
+     * @param width The full width
+     * @param height The full height
+     * @param kilobytes The memory available in KB
+     * @return The subsampling factor, at least 1
+     */
+    private static int subsamplingFor(long width, long height, int kilobytes) {
+        int subsampling = 1;
+        while (toKilobytes(reducedPixels(width, height, subsampling)) > kilobytes) {
+            subsampling++;
+        }
+        return subsampling;
+    }
+
+    /**
+     * Attaches the subsampling factor to a decoded image without copying its pixels.
+     * @param image The reduced image
+     * @param subsampling The subsampling factor used
+     * @return An image sharing the same raster, with the factor in its properties
+     */
+    private static BufferedImage markSubsampled(BufferedImage image, int subsampling) {
+        Hashtable<String, Object> properties = new Hashtable<>();
+        properties.put(SUBSAMPLING_PROPERTY, subsampling);
+        return new BufferedImage(image.getColorModel(), image.getRaster(), image.isAlphaPremultiplied(), properties);
+    }
+
+    /**
+     * Memory budget in KB, counted in KB so that budgets of several GB fit in an int.
+     */
+    private static final class Budget {
+        private final int kilobytes;
+        private final Semaphore permits;
+
+        /**
+         * Creates a budget.
+         * @param bytes Size of the budget in bytes
+         */
+        Budget(long bytes) {
+            kilobytes = (int) Math.min(Integer.MAX_VALUE, bytes / 1024);
+            permits = new Semaphore(kilobytes, true);
+        }
+    }
+}
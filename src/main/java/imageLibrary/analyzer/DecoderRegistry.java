@@ -0,0 +1,358 @@
+package imageLibrary.analyzer;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageReader;
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.common.ImageMetadata;
+
+/**
+ * Routes each decoding task to the fastest decoder available for the file format.
+ * The project has two decoding stacks, javax.imageio and Apache commons-imaging, plus the
+ * built-in {@link HeaderParser}. A warm-up on a few sample files per format measures the header
+ * probes and metadata readers, which are cheap. Full decodes are never run just to be measured:
+ * they go through {@link DecodeAdmission}, and their route learns from those real calls, trying
+ * each decoder on a few files before settling on the fastest. Every call is recorded in a
+ * per-decoder histogram, and a decoder that fails several times in a row on a format is no
+ * longer tried first for it.
+ */
+public class DecoderRegistry {
+
+    /**
+     * Kinds of work a decoder can be asked to do.
+     */
+    public enum Task { HEADER, DECODE, METADATA }
+
+    private static final int SAMPLES_PER_FORMAT = 3;
+    private static final int FAILURES_TO_EXCLUDE = 3;
+    private static final int HEADER_BYTES = 128 * 1024;
+    private static final String UNKNOWN_FORMAT = "?";
+
+    private static final List<Candidate<Dimension>> HEADER_DECODERS = List.of(
+            new Candidate<>("header-parser", DecoderRegistry::parseHeader),
+            new Candidate<>("imageio", ImageAnalyzer::readHeaderDimensions),
+            new Candidate<>("commons-imaging", Imaging::getImageSize));
+    private static final Candidate<BufferedImage> COMMONS_FULL_DECODER =
+            new Candidate<>("commons-imaging", Imaging::getBufferedImage);
+    private static final List<Candidate<ImageMetadata>> METADATA_DECODERS = List.of(
+            new Candidate<>("commons-imaging", Imaging::getMetadata));
+
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> FAILURES = new ConcurrentHashMap<>();
+    private static final Set<String> FAILED = ConcurrentHashMap.newKeySet();
+    private static final Set<String> DECLINED = ConcurrentHashMap.newKeySet();
+    private static final Set<ImageFormat> WARMED_UP = ConcurrentHashMap.newKeySet();
+    private static final ExecutorService WARM_UP = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "decoder-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Reads the dimensions of an image with the fastest header decoder for its format.
+     * @param file The image file
+     * @return The image dimensions, or null if no decoder understands the file
+     * @throws Exception the error of the first decoder if every decoder fails
+     */
+    public static Dimension readDimensions(File file) throws Exception {
+        return run(Task.HEADER, file, HEADER_DECODERS);
+    }
+
+    /**
+     * Decodes an image at full resolution with the fastest decoder for its format.
+     * The ImageIO decoder reads from the given reader, which has already parsed the header,
+     * instead of opening the file again.
+     * @param file The image file
+     * @param reader An ImageIO reader whose input is the file, positioned on its first image
+     * @return The decoded image, or null if no decoder understands the file
+     * @throws Exception the error of the first decoder if every decoder fails
+     */
+    public static BufferedImage decode(File file, ImageReader reader) throws Exception {
+        return run(Task.DECODE, file, List.of(new Candidate<>("imageio", f -> reader.read(0)), COMMONS_FULL_DECODER));
+    }
+
+    /**
+     * Reads the metadata of an image with the fastest metadata reader for its format.
+     * @param file The image file
+     * @return The parsed metadata, or null if the file has none
+     * @throws Exception the error of the first reader if every reader fails
+     */
+    public static ImageMetadata readMetadata(File file) throws Exception {
+        return run(Task.METADATA, file, METADATA_DECODERS);
+    }
+
+    /**
+     * Benchmarks the header probes and metadata readers on a few sample files of each format that
+     * has not been measured yet. Full decodes are not benchmarked.
+     * Runs on a background thread; the call returns immediately.
+     * @param files Candidate sample files, typically the images of the folder being opened
+     */
+    public static void warmUpInBackground(List<File> files) {
+        Map<ImageFormat, List<File>> samples = new HashMap<>();
+        for (File file : files) {
+            ImageFormat format = FormatSniffer.detect(file);
+            if (format != null && !WARMED_UP.contains(format)) {
+                List<File> sample = samples.computeIfAbsent(format, f -> new ArrayList<>());
+                if (sample.size() < SAMPLES_PER_FORMAT) {
+                    sample.add(file);
+                }
+            }
+        }
+        for (Map.Entry<ImageFormat, List<File>> entry : samples.entrySet()) {
+            if (WARMED_UP.add(entry.getKey())) {
+                WARM_UP.execute(() -> warmUp(entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Builds a report of the measured latencies and of the decoder chosen for each route.
+     * @return One line per decoder and task, grouped by format
+     */
+    public static String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            report.append(entry.getKey()).append(FAILED.contains(entry.getKey()) ? " (falla)" : "")
+                    .append(": ").append(entry.getValue()).append('\n');
+        }
+        return report.length() > 0 ? report.toString() : "Sin mediciones todavía";
+    }
+
+    /**
+     * Measures the header and metadata decoders on the sample files of one format.
+     * @param format The format of the samples
+     * @param samples Sample files of that format
+     */
+    private static void warmUp(ImageFormat format, List<File> samples) {
+        for (File file : samples) {
+            measure(Task.HEADER, format.name(), file, HEADER_DECODERS);
+            measure(Task.METADATA, format.name(), file, METADATA_DECODERS);
+        }
+    }
+
+    /**
+     * Runs every candidate of a task once on a file and records the outcome.
+     * @param <T> The result type of the task
+     * @param task The task being measured
+     * @param format The format of the file
+     * @param file The sample file
+     * @param candidates The decoders able to perform the task
+     */
+    private static <T> void measure(Task task, String format, File file, List<Candidate<T>> candidates) {
+        for (Candidate<T> candidate : candidates) {
+            String key = key(task, format, candidate);
+            if (FAILED.contains(key)) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                if (candidate.loader.load(file) != null) {
+                    succeeded(key, System.nanoTime() - start);
+                } else {
+                    DECLINED.add(key);
+                }
+            } catch (Exception | LinkageError e) {
+                failed(key);
+            }
+        }
+    }
+
+    /**
+     * Performs a task with the fastest decoder for the file format, falling back to the
+     * other decoders when it fails or returns nothing.
+     * @param <T> The result type of the task
+     * @param task The task to perform
+     * @param file The image file
+     * @param candidates The decoders able to perform the task, in default order
+     * @return The result of the first decoder that succeeds, or null if none produces a result
+     * @throws Exception the error of the first decoder if every decoder fails
+     */
+    private static <T> T run(Task task, File file, List<Candidate<T>> candidates) throws Exception {
+        ImageFormat detected = FormatSniffer.detect(file);
+        String format = detected != null ? detected.name() : UNKNOWN_FORMAT;
+        Candidate<T> best = route(task, format, candidates);
+
+        Exception firstError = null;
+        for (Candidate<T> candidate : prefer(best, candidates)) {
+            String key = key(task, format, candidate);
+            if (FAILED.contains(key) && candidate != best) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                T result = candidate.loader.load(file);
+                if (result != null) {
+                    succeeded(key, System.nanoTime() - start);
+                    return result;
+                }
+                DECLINED.add(key);
+            } catch (Exception e) {
+                failed(key);
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+        return null;
+    }
+
+    /**
+     * Records a successful call of a decoder and clears its run of failures.
+     * @param key The route key
+     * @param nanos Duration of the call in nanoseconds
+     */
+    private static void succeeded(String key, long nanos) {
+        histogram(key).record(nanos);
+        FAILURES.remove(key);
+    }
+
+    /**
+     * Records a failed call of a decoder, excluding it from the route after several failures in a row.
+     * A decoder that merely returned nothing has not failed.
+     * @param key The route key
+     */
+    private static void failed(String key) {
+        if (FAILURES.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet() >= FAILURES_TO_EXCLUDE) {
+            FAILED.add(key);
+        }
+    }
+
+    /**
+     * Chooses the decoder for a task among those not excluded on the format.
+     * A decoder with fewer than {@value #SAMPLES_PER_FORMAT} measurements is tried first, so
+     * routes with no warm-up learn from real calls, unless it has returned nothing for the format;
+     * after that, the lowest mean latency wins.
+     * @param <T> The result type of the task
+     * @param task The task to perform
+     * @param format The format of the file
+     * @param candidates The decoders able to perform the task, in default order
+     * @return The chosen decoder
+     */
+    private static <T> Candidate<T> route(Task task, String format, List<Candidate<T>> candidates) {
+        Candidate<T> best = null;
+        double bestMean = Double.MAX_VALUE;
+        for (Candidate<T> candidate : candidates) {
+            String key = key(task, format, candidate);
+            if (FAILED.contains(key)) {
+                continue;
+            }
+            LatencyHistogram histogram = HISTOGRAMS.get(key);
+            if ((histogram == null || histogram.getCount() < SAMPLES_PER_FORMAT) && !DECLINED.contains(key)) {
+                return candidate;
+            }
+            double mean = histogram != null && histogram.getCount() > 0 ? histogram.getMeanMicros() : Double.MAX_VALUE;
+            if (best == null || mean < bestMean) {
+                best = candidate;
+                bestMean = mean;
+            }
+        }
+        return best != null ? best : candidates.get(0);
+    }
+
+    /**
+     * Orders the candidates with the chosen one first.
+     * @param <T> The result type of the task
+     * @param best The chosen decoder
+     * @param candidates The decoders in default order
+     * @return The decoders to try, in order
+     */
+    private static <T> List<Candidate<T>> prefer(Candidate<T> best, List<Candidate<T>> candidates) {
+        List<Candidate<T>> ordered = new ArrayList<>(candidates);
+        ordered.remove(best);
+        ordered.add(0, best);
+        return ordered;
+    }
+
+    /**
+     * Gets or creates the histogram of a route.
+     * @param key The route key
+     * @return The histogram of the route
+     */
+    private static LatencyHistogram histogram(String key) {
+        return HISTOGRAMS.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Builds the key identifying a decoder on a task and format.
+     * @param task The task
+     * @param format The format name
+     * @param candidate The decoder
+     * @return The route key
+     */
+    private static String key(Task task, String format, Candidate<?> candidate) {
+        return format + "/" + task + "/" + candidate.name;
+    }
+
+    /**
+     * Reads the dimensions of a file with the built-in header parser.
+     * @param file The image file
+     * @return The dimensions, or null if the parser does not handle the format
+     * @throws IOException if the file cannot be read
+     */
+    private static Dimension parseHeader(File file) throws IOException {
+        return HeaderParser.readDimensions(ByteBuffer.wrap(readHead(file)));
+    }
+
+    /**
+     * Reads the first bytes of a file, where the headers and the JPEG metadata live.
+     * @param file The image file
+     * @return Up to 128 KB from the start of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readHead(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return in.readNBytes(HEADER_BYTES);
+        }
+    }
+
+    /**
+     * A named decoder able to perform one task.
+     * @param <T> The result type of the task
+     */
+    private static final class Candidate<T> {
+        private final String name;
+        private final Loader<T> loader;
+
+        /**
+         * Creates a candidate decoder.
+         * @param name Name shown in reports
+         * @param loader The decoding function
+         */
+        Candidate(String name, Loader<T> loader) {
+            this.name = name;
+            this.loader = loader;
+        }
+    }
+
+    /**
+     * Decoding function of a candidate.
+     * @param <T> The result type
+     */
+    private interface Loader<T> {
+        /**
+         * Runs the decoder on a file.
+         * @param file The image file
+         * @return The result, or null if the decoder does not understand the file
+         * @throws Exception if decoding fails
+         */
+        T load(File file) throws Exception;
+    }
+}
@@ -0,0 +1,420 @@
+package imageLibrary.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import imageLibrary.model.ExifData;
+import imageLibrary.util.LruCache;
+import imageLibrary.util.SingleFlight;
+
+/**
+ * Minimal EXIF reader.
+ * Seeks to the APP1 segment of a JPEG file and decodes only the tags the application shows
+ * (DateTimeOriginal, DateTime, Model and the GPS position) instead of building the whole
+ * commons-imaging metadata tree. Malformed data never throws; whatever was decoded is returned.
+ * Results are cached per path and modification time, so each file is parsed at most once until it changes;
+ * the least recently used entries are evicted once 100,000 files are cached.
+ */
+public class ExifReader {
+
+    private static final int MAX_ENTRIES = 100_000;
+    private static final LruCache<Path, CachedExif> CACHE = new LruCache<>(MAX_ENTRIES);
+
+    private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    // "Exif\0\0" identifier that opens the APP1 payload
+    private static final int EXIF_HEADER_LENGTH = 6;
+
+    private static final int TAG_MODEL = 0x0110;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_GPS_IFD = 0x8825;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TAG_GPS_LATITUDE_REF = 1;
+    private static final int TAG_GPS_LATITUDE = 2;
+    private static final int TAG_GPS_LONGITUDE_REF = 3;
+    private static final int TAG_GPS_LONGITUDE = 4;
+
+    private static final int TYPE_ASCII = 2;
+    private static final int TYPE_RATIONAL = 5;
+    private static final int[] TYPE_SIZES = { 0, 1, 1, 2, 4, 8, 1, 1, 2, 4, 8, 4, 8 };
+
+    /**
+     * Gets the EXIF fields of a file, parsing it only if it changed since it was last read.
+     * Concurrent requests for the same file share a single parse.
+     * @param file The image file
+     * @param lastModified Modification time of the file in milliseconds, used to validate the cache
+     * @return The EXIF fields, {@link ExifData#EMPTY} if the file has none
+     * @throws IOException if the file cannot be read
+     */
+    public static ExifData get(File file, long lastModified) throws IOException {
+        Path path = file.toPath();
+        CachedExif cached = CACHE.get(path);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.exif;
+        }
+        try {
+            ExifData exif = SingleFlight.execute(file, "exif", () -> read(file));
+            CACHE.put(path, new CachedExif(lastModified, exif));
+            return exif;
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Caches EXIF fields read elsewhere, e.g. from a header buffer, so that {@link #get} does not read the file.
+     * @param file The image file
+     * @param lastModified Modification time of the file when the fields were read
+     * @param exif The EXIF fields
+     */
+    public static void remember(File file, long lastModified, ExifData exif) {
+        CACHE.put(file.toPath(), new CachedExif(lastModified, exif));
+    }
+
+    /**
+     * Drops the cached EXIF fields of a file after its metadata was rewritten.
+     * @param file The modified file
+     */
+    public static void forget(File file) {
+        CACHE.remove(file.toPath());
+    }
+
+    /**
+     * Keeps the cached EXIF fields of a file that was renamed or moved; its modification time does not change.
+     * @param from The old file
+     * @param to The new file
+     */
+    public static void moved(File from, File to) {
+        CachedExif cached = CACHE.remove(from.toPath());
+        if (cached != null) {
+            CACHE.put(to.toPath(), cached);
+        }
+    }
+
+    /**
+     * Reads the EXIF fields of a JPEG file, reading only its segment headers and the APP1 segment.
+     * @param file The image file
+     * @return The EXIF fields, {@link ExifData#EMPTY} if the file is not a JPEG or has no EXIF
+     * @throws IOException if the file cannot be read
+     */
+    public static ExifData read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer marker = ByteBuffer.allocate(4);
+            long position = 0;
+            if (!readFully(channel, marker, position) || (marker.get(0) & 0xFF) != 0xFF
+                    || (marker.get(1) & 0xFF) != MARKER_SOI) {
+                return ExifData.EMPTY;
+            }
+            position = 2;
+            while (readFully(channel, marker, position)) {
+                if ((marker.get(0) & 0xFF) != 0xFF) {
+                    return ExifData.EMPTY;
+                }
+                int type = marker.get(1) & 0xFF;
+                if (type == 0xFF) {
+                    position++; // fill byte
+                    continue;
+                }
+                if (type == MARKER_SOS || type == MARKER_EOI) {
+                    return ExifData.EMPTY;
+                }
+                int length = marker.getShort(2) & 0xFFFF;
+                if (type == MARKER_APP1 && length > 2 + EXIF_HEADER_LENGTH) {
+                    ByteBuffer segment = ByteBuffer.allocate(length - 2);
+                    if (readFully(channel, segment, position + 4) && isExifHeader(segment, 0)) {
+                        segment.position(EXIF_HEADER_LENGTH);
+                        return readTiff(segment.slice());
+                    }
+                }
+                position += 2 + length;
+            }
+            return ExifData.EMPTY;
+        }
+    }
+
+    /**
+     * Reads the EXIF fields from the first bytes of a JPEG file.
+     * @param header Buffer holding the start of the file, between position 0 and its limit
+     * @return The EXIF fields, {@link ExifData#EMPTY} if none are found within the buffer
+     */
+    public static ExifData read(ByteBuffer header) {
+        ExifData exif = readHeader(header);
+        return exif != null ? exif : ExifData.EMPTY;
+    }
+
+    /**
+     * Reads the EXIF fields from the first bytes of a file, telling apart a file without EXIF
+     * from one whose APP1 segment lies beyond the buffer.
+     * @param header Buffer holding the start of the file, between position 0 and its limit
+     * @return The EXIF fields, {@link ExifData#EMPTY} if the file is not a JPEG or its segments
+     *         end without EXIF, or null if the buffer ends before the APP1 segment does
+     */
+    public static ExifData readHeader(ByteBuffer header) {
+        ByteBuffer data = header.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int limit = data.limit();
+        if (limit < 4 || (data.get(0) & 0xFF) != 0xFF || (data.get(1) & 0xFF) != MARKER_SOI) {
+            return ExifData.EMPTY;
+        }
+        int position = 2;
+        while (position + 4 <= limit) {
+            if ((data.get(position) & 0xFF) != 0xFF) {
+                return ExifData.EMPTY;
+            }
+            int type = data.get(position + 1) & 0xFF;
+            if (type == 0xFF) {
+                position++;
+                continue;
+            }
+            if (type == MARKER_SOS || type == MARKER_EOI) {
+                return ExifData.EMPTY;
+            }
+            int length = data.getShort(position + 2) & 0xFFFF;
+            int start = position + 4;
+            int end = position + 2 + length;
+            if (type == MARKER_APP1 && end > limit) {
+                return null;
+            }
+            if (type == MARKER_APP1 && length > 2 + EXIF_HEADER_LENGTH && isExifHeader(data, start)) {
+                data.limit(end).position(start + EXIF_HEADER_LENGTH);
+                return readTiff(data.slice());
+            }
+            position = end;
+        }
+        return null;
+    }
+
+    /**
+     * Decodes the wanted tags from a TIFF structure (the APP1 payload after the EXIF identifier).
+     * @param tiff Buffer whose position 0 is the TIFF byte order mark
+     * @return The decoded fields
+     */
+    private static ExifData readTiff(ByteBuffer tiff) {
+        LocalDateTime dateTime = null;
+        LocalDateTime dateTimeOriginal = null;
+        String model = null;
+        String gps = null;
+        try {
+            if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+                tiff.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (tiff.get(0) == 'M' && tiff.get(1) == 'M') {
+                tiff.order(ByteOrder.BIG_ENDIAN);
+            } else {
+                return ExifData.EMPTY;
+            }
+            int ifd0 = tiff.getInt(4);
+            int exifIfd = -1;
+            int gpsIfd = -1;
+
+            int entries = tiff.getShort(ifd0) & 0xFFFF;
+            for (int i = 0; i < entries; i++) {
+                int entry = ifd0 + 2 + i * 12;
+                switch (tiff.getShort(entry) & 0xFFFF) {
+                case TAG_MODEL:
+                    model = readAscii(tiff, entry);
+                    break;
+                case TAG_DATE_TIME:
+                    dateTime = parseDate(readAscii(tiff, entry));
+                    break;
+                case TAG_EXIF_IFD:
+                    exifIfd = tiff.getInt(entry + 8);
+                    break;
+                case TAG_GPS_IFD:
+                    gpsIfd = tiff.getInt(entry + 8);
+                    break;
+                default:
+                    break;
+                }
+            }
+
+            if (exifIfd > 0) {
+                int exifEntries = tiff.getShort(exifIfd) & 0xFFFF;
+                for (int i = 0; i < exifEntries && dateTimeOriginal == null; i++) {
+                    int entry = exifIfd + 2 + i * 12;
+                    if ((tiff.getShort(entry) & 0xFFFF) == TAG_DATE_TIME_ORIGINAL) {
+                        dateTimeOriginal = parseDate(readAscii(tiff, entry));
+                    }
+                }
+            }
+
+            if (gpsIfd > 0) {
+                gps = readGps(tiff, gpsIfd);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Truncated or corrupt EXIF: keep what was decoded so far
+        }
+        return new ExifData(dateTimeOriginal != null ? dateTimeOriginal : dateTime, model, gps);
+    }
+
+    /**
+     * Decodes the latitude and longitude of a GPS IFD.
+     * @param tiff The TIFF buffer
+     * @param ifd Offset of the GPS IFD
+     * @return "latitude, longitude" in decimal degrees, or null if either is missing
+     */
+    private static String readGps(ByteBuffer tiff, int ifd) {
+        String latitudeRef = null;
+        String longitudeRef = null;
+        double latitude = Double.NaN;
+        double longitude = Double.NaN;
+
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            switch (tiff.getShort(entry) & 0xFFFF) {
+            case TAG_GPS_LATITUDE_REF:
+                latitudeRef = readAscii(tiff, entry);
+                break;
+            case TAG_GPS_LATITUDE:
+                latitude = readDegrees(tiff, entry);
+                break;
+            case TAG_GPS_LONGITUDE_REF:
+                longitudeRef = readAscii(tiff, entry);
+                break;
+            case TAG_GPS_LONGITUDE:
+                longitude = readDegrees(tiff, entry);
+                break;
+            default:
+                break;
+            }
+        }
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return null;
+        }
+        if ("S".equals(latitudeRef)) {
+            latitude = -latitude;
+        }
+        if ("W".equals(longitudeRef)) {
+            longitude = -longitude;
+        }
+        return String.format(Locale.ROOT, "%.6f, %.6f", latitude, longitude);
+    }
+
+    /**
+     * Reads a degrees/minutes/seconds triple of rationals as decimal degrees.
+     * @param tiff The TIFF buffer
+     * @param entry Offset of the IFD entry
+     * @return The angle in degrees, or NaN if the entry is not three rationals
+     */
+    private static double readDegrees(ByteBuffer tiff, int entry) {
+        if ((tiff.getShort(entry + 2) & 0xFFFF) != TYPE_RATIONAL || tiff.getInt(entry + 4) != 3) {
+            return Double.NaN;
+        }
+        int offset = tiff.getInt(entry + 8);
+        double degrees = 0;
+        double scale = 1;
+        for (int i = 0; i < 3; i++) {
+            long numerator = tiff.getInt(offset + i * 8) & 0xFFFFFFFFL;
+            long denominator = tiff.getInt(offset + i * 8 + 4) & 0xFFFFFFFFL;
+            if (denominator != 0) {
+                degrees += (double) numerator / denominator / scale;
+            }
+            scale *= 60;
+        }
+        return degrees;
+    }
+
+    /**
+     * Reads the value of an ASCII entry, inline or at its offset.
+     * @param tiff The TIFF buffer
+     * @param entry Offset of the IFD entry
+     * @return The trimmed string, or null if the entry is not ASCII or is empty
+     */
+    private static String readAscii(ByteBuffer tiff, int entry) {
+        int type = tiff.getShort(entry + 2) & 0xFFFF;
+        int count = tiff.getInt(entry + 4);
+        if (type != TYPE_ASCII || count <= 0 || count > tiff.limit()) {
+            return null;
+        }
+        int offset = count * TYPE_SIZES[type] <= 4 ? entry + 8 : tiff.getInt(entry + 8);
+        StringBuilder value = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            byte b = tiff.get(offset + i);
+            if (b == 0) {
+                break;
+            }
+            value.append((char) (b & 0xFF));
+        }
+        String text = value.toString().trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Parses an EXIF date.
+     * @param text Date in "yyyy:MM:dd HH:mm:ss" format, may be null
+     * @return The date, or null if it is missing or invalid (e.g. "0000:00:00 00:00:00")
+     */
+    private static LocalDateTime parseDate(String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(text, EXIF_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks for the "Exif\0\0" identifier.
+     * @param data The buffer
+     * @param offset Where the identifier should start
+     * @return true if the identifier is present
+     */
+    private static boolean isExifHeader(ByteBuffer data, int offset) {
+        return data.limit() >= offset + EXIF_HEADER_LENGTH && data.get(offset) == 'E' && data.get(offset + 1) == 'x'
+                && data.get(offset + 2) == 'i' && data.get(offset + 3) == 'f' && data.get(offset + 4) == 0
+                && data.get(offset + 5) == 0;
+    }
+
+    /**
+     * Fills a buffer from a position of the channel.
+     * @param channel The open file
+     * @param buffer The buffer to fill; it is cleared first
+     * @param position File position to read from
+     * @return true if the buffer was filled, false if the file ended first
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cache entry holding the EXIF fields of a file at a given modification time.
+     */
+    private static class CachedExif {
+        private final long lastModified;
+        private final ExifData exif;
+
+        /**
+         * Creates a cache entry.
+         * @param lastModified Modification time the fields were read at
+         * @param exif The EXIF fields
+         */
+        CachedExif(long lastModified, ExifData exif) {
+            this.lastModified = lastModified;
+            this.exif = exif;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package imageLibrary.analyzer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import imageLibrary.util.FileAttributeCache;
+import imageLibrary.util.LruCache;
+
+/**
+ * Shared classifier that tells image files apart by their content instead of their name.
+ * Reads the first 16 bytes of a file and caches the result per path and modification time,
+ * so each file is sniffed at most once until it changes. The least recently used entries are
+ * evicted once 100,000 files are cached.
+ */
+public class FormatSniffer {
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int MAX_ENTRIES = 100_000;
+    private static final LruCache<Path, CachedFormat> CACHE = new LruCache<>(MAX_ENTRIES);
+
+    /**
+     * Checks if a file is an image.
+     * Existing files are judged by their content; for files that do not exist (yet) only the
+     * extension is available, so it is used instead.
+     * @param file The file to check
+     * @return true if the file is an image, false otherwise
+     */
+    public static boolean isImageFile(File file) {
+        BasicFileAttributes attributes = FileAttributeCache.get(file.toPath());
+        if (attributes == null) {
+            return ImageFormat.fromExtension(file.getName()) != null;
+        }
+        return attributes.isRegularFile() && detect(file.toPath(), attributes.lastModifiedTime().toMillis()) != null;
+    }
+
+    /**
+     * Detects the format of a file from its content.
+     * @param file The file to sniff
+     * @return The detected format, or null if the file is not a known image or cannot be read
+     */
+    public static ImageFormat detect(File file) {
+        return detect(file.toPath(), FileAttributeCache.lastModified(file));
+    }
+
+    /**
+     * Detects the format of a file from its content, using a modification time the caller already knows.
+     * @param path The file to sniff
+     * @param lastModified Modification time of the file in milliseconds, used to validate the cache
+     * @return The detected format, or null if the file is not a known image or cannot be read
+     */
+    public static ImageFormat detect(Path path, long lastModified) {
+        CachedFormat cached = CACHE.get(path);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.format;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            ImageFormat format = ImageFormat.detect(ByteBuffer.wrap(in.readNBytes(SIGNATURE_BYTES)));
+            remember(path, lastModified, format);
+            return format;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells the format of a file without reading it: the cached result when it is still valid,
+     * otherwise the format its extension stands for. Meant for code that must not block, such as
+     * the event dispatch thread.
+     * @param path The file
+     * @param lastModified Modification time of the file in milliseconds, used to validate the cache
+     * @return The cached or guessed format, or null if the file is not known to be an image
+     */
+    public static ImageFormat guess(Path path, long lastModified) {
+        CachedFormat cached = CACHE.get(path);
+        if (cached != null && cached.lastModified == lastModified) {
+            return cached.format;
+        }
+        return ImageFormat.fromExtension(path.getFileName().toString());
+    }
+
+    /**
+     * Stores a format detected elsewhere, e.g. from a header buffer that was read anyway.
+     * @param path The file the format belongs to
+     * @param lastModified Modification time of the file in milliseconds
+     * @param format The detected format, or null if the file is not an image
+     */
+    public static void remember(Path path, long lastModified, ImageFormat format) {
+        CACHE.put(path, new CachedFormat(lastModified, format));
+    }
+
+    /**
+     * Keeps the cached format of a file that was renamed or moved; its modification time does not change.
+     * @param from The old path
+     * @param to The new path
+     */
+    public static void moved(Path from, Path to) {
+        CachedFormat cached = CACHE.remove(from);
+        if (cached != null) {
+            CACHE.put(to, cached);
+        }
+    }
+
+    /**
+     * Cache entry holding the format of a file at a given modification time.
+     */
+    private static class CachedFormat {
+        private final long lastModified;
+        private final ImageFormat format;
+
+        /**
+         * Creates a cache entry.
+         * @param lastModified Modification time the format was detected at
+         * @param format The detected format, or null for non-images
+         */
+        CachedFormat(long lastModified, ImageFormat format) {
+            this.lastModified = lastModified;
+            this.format = format;
+        }
+    }
+}
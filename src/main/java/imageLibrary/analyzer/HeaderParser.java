@@ -0,0 +1,125 @@
+package imageLibrary.analyzer;
+
+import java.awt.Dimension;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reads image dimensions straight from the first bytes of a file.
+ * Understands the JPEG SOF segment, the PNG IHDR chunk, the GIF logical screen descriptor
+ * and the BMP info header. Nothing beyond the given buffer is read.
+ */
+public class HeaderParser {
+
+    /**
+     * Reads the dimensions of an image from the start of its file.
+     * The buffer is read with absolute indexes, so its position is left untouched.
+     * @param header Buffer holding the first bytes of the file, from index 0 up to its limit
+     * @return The image dimensions, or null if the format has no parser here or the header
+     *         does not fit in the buffer
+     */
+    public static Dimension readDimensions(ByteBuffer header) {
+        ImageFormat format = ImageFormat.detect(header);
+        if (format == null) {
+            return null;
+        }
+        ByteBuffer buf = header.duplicate();
+        switch (format) {
+        case JPEG:
+            return readJpeg(buf);
+        case PNG:
+            return readPng(buf);
+        case GIF:
+            return readGif(buf);
+        case BMP:
+            return readBmp(buf);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Walks the JPEG marker segments until the first start-of-frame segment.
+     * @param buf Buffer holding the start of the file
+     * @return The frame dimensions, or null if no SOF segment is found within the buffer
+     */
+    private static Dimension readJpeg(ByteBuffer buf) {
+        buf.order(ByteOrder.BIG_ENDIAN);
+        int pos = 2;
+        while (pos + 4 <= buf.limit()) {
+            if ((buf.get(pos) & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = buf.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                pos++; // fill byte
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                pos += 2; // markers without a length field
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null; // end of image or start of scan before any frame header
+            }
+            int length = buf.getShort(pos + 2) & 0xFFFF;
+            boolean startOfFrame = marker >= 0xC0 && marker <= 0xCF
+                    && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+            if (startOfFrame) {
+                if (pos + 9 > buf.limit()) {
+                    return null;
+                }
+                int height = buf.getShort(pos + 5) & 0xFFFF;
+                int width = buf.getShort(pos + 7) & 0xFFFF;
+                return new Dimension(width, height);
+            }
+            pos += 2 + length;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the IHDR chunk, which the PNG specification requires to come first.
+     * @param buf Buffer holding the start of the file
+     * @return The image dimensions, or null if the header is truncated
+     */
+    private static Dimension readPng(ByteBuffer buf) {
+        if (buf.limit() < 24) {
+            return null;
+        }
+        buf.order(ByteOrder.BIG_ENDIAN);
+        return new Dimension(buf.getInt(16), buf.getInt(20));
+    }
+
+    /**
+     * Reads the logical screen descriptor that follows the GIF signature.
+     * @param buf Buffer holding the start of the file
+     * @return The image dimensions, or null if the header is truncated
+     */
+    private static Dimension readGif(ByteBuffer buf) {
+        if (buf.limit() < 10) {
+            return null;
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return new Dimension(buf.getShort(6) & 0xFFFF, buf.getShort(8) & 0xFFFF);
+    }
+
+    /**
+     * Reads the DIB header that follows the 14-byte BMP file header.
+     * Handles both the old 12-byte core header and the 40-byte (and later) info headers.
+     * @param buf Buffer holding the start of the file
+     * @return The image dimensions, or null if the header is truncated
+     */
+    private static Dimension readBmp(ByteBuffer buf) {
+        if (buf.limit() < 26) {
+            return null;
+        }
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        int dibSize = buf.getInt(14);
+        if (dibSize == 12) {
+            return new Dimension(buf.getShort(18) & 0xFFFF, buf.getShort(20) & 0xFFFF);
+        }
+        // Negative heights mark top-down bitmaps
+        return new Dimension(buf.getInt(18), Math.abs(buf.getInt(22)));
+    }
+}
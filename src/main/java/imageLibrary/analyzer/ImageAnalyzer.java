@@ -1,51 +1,265 @@
 package imageLibrary.analyzer;
 
+import imageLibrary.model.ExifData;
 import imageLibrary.model.ImageInfo;
+import imageLibrary.util.DirectoryLister;
+import imageLibrary.util.FileAttributeCache;
+import imageLibrary.util.SingleFlight;
+import imageLibrary.util.XmpSidecar;
 import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class for analyzing image files.
- * Supported formats: PNG, JPG, JPEG, GIF, and BMP.
+ * Supported formats: PNG, JPEG, GIF and BMP, plus TIFF through ImageIO.
+ * Files are recognized by their content (see {@link FormatSniffer}), not by their extension.
+ * Dimensions are probed from the container headers, so no pixel data is decoded.
+ * Folders are analyzed on a bounded worker pool, one task per file.
+ * Each file is opened once: its first bytes are read into a per-thread buffer and the
+ * dimensions, and the EXIF fields when the APP1 segment fits in the buffer, are taken from that
+ * single read. Other files have their EXIF parsed only when it is asked for.
  */
 public class ImageAnalyzer {
 
-    private static final String[] SUPPORTED_FORMATS = { "png", "jpg", "jpeg", "gif", "bmp" };
+    private static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    // Large enough for the JPEG APP segments (EXIF is at most 64 KB) and the frame header
+    private static final int HEADER_BYTES = 128 * 1024;
+    private static final ThreadLocal<ByteBuffer> HEADER_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(HEADER_BYTES));
 
     /**
      * Analyzes all image files in a folder and returns a list of ImageInfo objects.
+     * Uses one worker per available processor.
      * @param folder Directory to analyze
-     * @return List of ImageInfo objects for the found images
+     * @return List of ImageInfo objects for the found images, sorted by file name
      */
     public static List<ImageInfo> analyzeFolder(File folder) {
-        List<ImageInfo> images = new ArrayList<>();
+        return analyzeFolder(folder, DEFAULT_POOL_SIZE);
+    }
 
-        if (folder == null || !folder.exists() || !folder.isDirectory()) {
+    /**
+     * Analyzes all image files in a folder in parallel.
+     * Files are handed to the workers while the folder is still being listed.
+     * Results keep the order of the file names regardless of which worker finishes first.
+     * @param folder Directory to analyze
+     * @param poolSize Maximum number of files analyzed at the same time
+     * @return List of ImageInfo objects for the found images, sorted by file name
+     * @throws IllegalArgumentException if poolSize is not positive
+     */
+    public static List<ImageInfo> analyzeFolder(File folder, int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+        }
+        List<ImageInfo> images = new ArrayList<>();
+        if (folder == null) {
             return images;
         }
 
-        File[] files = folder.listFiles();
-        if (files == null) {
-            return images;
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+        try {
+            List<Map.Entry<String, Future<ImageInfo>>> results = new ArrayList<>();
+            DirectoryLister.list(folder.toPath(), (entry, attrs) -> {
+                // Non-images are rejected by readInfo from the header it reads anyway
+                if (attrs.isRegularFile()) {
+                    results.add(Map.entry(entry.getFileName().toString(), pool.submit(() -> readInfo(entry, attrs))));
+                }
+            });
+            results.sort(Map.Entry.comparingByKey());
+            for (Map.Entry<String, Future<ImageInfo>> result : results) {
+                ImageInfo info = result.getValue().get();
+                if (info != null) {
+                    images.add(info);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error al listar carpeta: " + folder.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error al analizar carpeta: " + e.getCause());
+        } finally {
+            pool.shutdownNow();
         }
+        return images;
+    }
 
-        for (File file : files) {
-            if (file.isFile() && isImage(file)) {
-                try {
-                    BufferedImage img = ImageIO.read(file);
-                    if (img != null) {
-                        ImageInfo info = new ImageInfo(file, img.getWidth(), img.getHeight());
-                        images.add(info);
+    /**
+     * Analyzes all image files in a folder, handing each result to the listener as soon as
+     * its file has been processed. Uses one worker per available processor.
+     * @param folder Directory to analyze
+     * @param listener Receiver of each analyzed image
+     */
+    public static void analyzeFolder(File folder, AnalysisListener listener) {
+        analyzeFolder(folder, DEFAULT_POOL_SIZE, listener);
+    }
+
+    /**
+     * Analyzes all image files in a folder in parallel, handing each result to the listener
+     * as soon as its file has been processed. Returns once every file has been reported.
+     * This is a scan of the folder limited to its direct children, so files are analyzed
+     * while the folder is still being listed.
+     * The listener is called from the worker threads, in completion order.
+     * Interrupting the calling thread cancels the analysis: files not started yet are
+     * skipped and files in progress are abandoned.
+     * @param folder Directory to analyze
+     * @param poolSize Maximum number of files analyzed at the same time
+     * @param listener Receiver of each analyzed image
+     * @throws IllegalArgumentException if poolSize is not positive or listener is null
+     */
+    public static void analyzeFolder(File folder, int poolSize, AnalysisListener listener) {
+        if (poolSize <= 0 || listener == null) {
+            throw new IllegalArgumentException("Invalid parameters");
+        }
+        if (folder == null || !folder.isDirectory()) {
+            return;
+        }
+        ScanOptions options = new ScanOptions();
+        options.setMaxDepth(1);
+        options.setPoolSize(poolSize);
+        try {
+            analyzeTree(folder.toPath(), options, listener);
+        } catch (IOException e) {
+            System.err.println("Error al listar carpeta: " + folder.getName());
+        }
+    }
+
+    /**
+     * Analyzes every image below a root directory, descending into subdirectories.
+     * The tree is walked in parallel (see {@link #walkTree}) while the files found are analyzed
+     * on a separate worker pool, so images from different subdirectories are processed at the same time.
+     * The listener is called from the worker threads, in completion order.
+     * Interrupting the calling thread cancels the scan.
+     * @param root Root directory of the library
+     * @param options Depth limit, symlink policy, pool size and include/exclude patterns
+     * @param listener Receiver of each analyzed image
+     * @return Counts and throughput of the scan; failures include unreadable entries and images
+     *         that could not be analyzed
+     * @throws IOException if the root directory cannot be read
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static ScanReport analyzeTree(Path root, ScanOptions options, AnalysisListener listener) throws IOException {
+        if (root == null || options == null || listener == null) {
+            throw new IllegalArgumentException("Invalid parameters");
+        }
+        AtomicLong files = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+
+        // Bounded queue: when the workers fall behind, the walking threads analyze files themselves
+        int poolSize = options.getPoolSize();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            ScanReport walk = walkTree(root, options, (file, attrs) -> {
+                pool.execute(() -> {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    ImageInfo info = readInfo(file, attrs);
+                    if (info != null) {
+                        files.incrementAndGet();
+                        bytes.addAndGet(attrs.size());
+                        listener.onImageAnalyzed(info);
+                    } else if (FormatSniffer.guess(file, attrs.lastModifiedTime().toMillis()) != null) {
+                        // An image that could not be read; other files were just not images
+                        failures.incrementAndGet();
                     }
-                } catch (IOException e) {
-                    System.err.println("Error al leer imagen: " + file.getName());
+                });
+            });
+            failures.addAndGet(walk.getFailures());
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return new ScanReport(files.get(), bytes.get(), failures.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Walks the directory tree below a root, listing subdirectories in parallel.
+     * The root is listed on the calling thread and every subdirectory within the depth limit
+     * becomes a task of a pool of {@link ScanOptions#getPoolSize()} threads. Excluded directories
+     * are skipped with their subtree; regular files passing the include and exclude patterns are
+     * handed to the visitor. Symbolic links are skipped unless the options follow them, in which
+     * case a directory reached twice (a link cycle) is only walked once. Entries that cannot be
+     * read are counted as failures, reported on the error output and skipped.
+     * The visitor is called concurrently from several threads. Interrupting the calling thread
+     * stops the walk.
+     * @param root Root directory to walk
+     * @param options Depth limit, symlink policy, pool size and include/exclude patterns
+     * @param visitor Receiver of the directories and files found
+     * @return Number and total size of the files visited, and the number of unreadable entries
+     * @throws IOException if the root directory cannot be read
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static ScanReport walkTree(Path root, ScanOptions options, TreeVisitor visitor) throws IOException {
+        if (root == null || options == null || visitor == null) {
+            throw new IllegalArgumentException("Invalid parameters");
+        }
+        return new TreeWalk(root, options, visitor).run();
+    }
+
+    /**
+     * Lists the image files of a folder without analyzing them.
+     * No file is opened: formats come from the cached signatures, or from the extension for files
+     * not sniffed yet, so this is cheap enough to run before the analysis, which then confirms
+     * each file from its header. Dimensions of the returned images are unknown (0).
+     * @param folder Directory to list
+     * @return Image data of the folder sorted by name, or an empty list if the folder is invalid
+     */
+    public static List<ImageInfo> listImages(File folder) {
+        List<ImageInfo> images = new ArrayList<>();
+        if (folder == null) {
+            return images;
+        }
+        try {
+            DirectoryLister.list(folder.toPath(), (entry, attrs) -> {
+                if (attrs.isRegularFile()
+                        && FormatSniffer.guess(entry, attrs.lastModifiedTime().toMillis()) != null) {
+                    images.add(new ImageInfo(entry, attrs, 0, 0, null));
                 }
-            }
+            });
+        } catch (IOException e) {
+            System.err.println("Error al listar carpeta: " + folder.getName());
         }
+        images.sort(Comparator.comparing(ImageInfo::getName));
         return images;
     }
 
@@ -55,31 +269,327 @@ public class ImageAnalyzer {
      * @return ImageInfo object with image data, or null if invalid
      */
     public static ImageInfo analyzeFile(File file) {
-        if (file.isFile() && isImage(file)) {
-            try {
-                BufferedImage img = ImageIO.read(file);
-                if (img != null) {
-                    return new ImageInfo(file, img.getWidth(), img.getHeight());
-                }
-            } catch (IOException e) {
-                System.err.println("Error al leer imagen: " + file.getName());
+        if (FileAttributeCache.isFile(file)) {
+            return readInfo(file.toPath(), null);
+        }
+        return null;
+    }
+
+    /**
+     * Builds the ImageInfo of a regular file.
+     * The file is opened once and only its first bytes are read; files without a known image
+     * signature are rejected from that buffer, and the image dimensions are parsed from it.
+     * Only when the frame header lies beyond the buffer is the file probed again through ImageIO. The EXIF fields are taken from the same buffer when
+     * the APP1 segment fits in it, and are otherwise left to be read on demand.
+     * @param file Image file to analyze
+     * @param attributes File attributes from a previous listing, or null to read them here
+     * @return ImageInfo object with image data, or null if invalid
+     */
+    private static ImageInfo readInfo(Path file, BasicFileAttributes attributes) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (attributes == null) {
+                attributes = FileAttributeCache.get(file);
+            }
+            if (attributes == null) {
+                return null;
+            }
+            ByteBuffer header = HEADER_BUFFER.get();
+            header.clear();
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            header.flip();
+            ImageFormat format = ImageFormat.detect(header);
+            FormatSniffer.remember(file, attributes.lastModifiedTime().toMillis(), format);
+            if (format == null) {
+                return null;
+            }
+
+            Dimension size = HeaderParser.readDimensions(header);
+            if (size == null) {
+                size = probeDimensions(file.toFile());
+            }
+            if (size == null) {
+                return null;
             }
+            ExifData exif = ExifReader.readHeader(header);
+            if (exif != null) {
+                ExifReader.remember(file.toFile(), attributes.lastModifiedTime().toMillis(), exif);
+                exif = XmpSidecar.overlay(file.toFile(), exif);
+            }
+            return new ImageInfo(file, attributes, size.width, size.height, exif);
+        } catch (ClosedByInterruptException e) {
+            // The analysis was cancelled while this file was being read
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Error al leer imagen: " + file.getFileName());
         }
         return null;
     }
 
     /**
-     * Checks if a file has a supported image extension.
-     * @param file File to verify
-     * @return true if the file is a supported image, false otherwise
+     * Reads the width and height of an image from its container header
+     * (JPEG SOF, PNG IHDR, GIF logical screen, BMP info header) without decoding pixels.
+     * The fastest header decoder for the format is used (see {@link DecoderRegistry}) and
+     * concurrent probes of the same file share a single read.
+     * @param file Image file to probe
+     * @return Image dimensions, or null if no reader understands the file
+     * @throws IOException if the file cannot be read
+     */
+    public static Dimension probeDimensions(File file) throws IOException {
+        try {
+            return SingleFlight.execute(file, "header", () -> DecoderRegistry.readDimensions(file));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Asks the ImageIO reader of a file for its dimensions, without decoding pixels.
+     * @param file Image file to probe
+     * @return Image dimensions, or null if no reader understands the file
+     * @throws IOException if the file cannot be read
+     */
+    static Dimension readHeaderDimensions(File file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Interface for receiving the entries found by {@link #walkTree}.
      */
-    private static boolean isImage(File file) {
-        String name = file.getName().toLowerCase();
-        for (String format : SUPPORTED_FORMATS) {
-            if (name.endsWith("." + format)) {
-                return true;
+    public interface TreeVisitor {
+        /**
+         * Called for each directory that is going to be listed, the root included.
+         * @param directory Path of the directory
+         * @param attributes Attributes of the directory
+         */
+        default void visitDirectory(Path directory, BasicFileAttributes attributes) {
+        }
+
+        /**
+         * Called for each regular file passing the include and exclude patterns.
+         * @param file Path of the file
+         * @param attributes Attributes read by the listing
+         */
+        void visitFile(Path file, BasicFileAttributes attributes);
+    }
+
+    /**
+     * State of one parallel walk of a directory tree.
+     */
+    private static class TreeWalk {
+        private final Path root;
+        private final ScanOptions options;
+        private final TreeVisitor visitor;
+        private final ExecutorService walkers;
+        private final Set<Object> visitedDirectories = ConcurrentHashMap.newKeySet();
+        // Directories listed or waiting to be; the root counts until its own listing ends
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private volatile boolean cancelled;
+
+        /**
+         * Prepares a walk.
+         * @param root Root directory to walk
+         * @param options Scan options
+         * @param visitor Receiver of the entries
+         */
+        TreeWalk(Path root, ScanOptions options, TreeVisitor visitor) {
+            this.root = root;
+            this.options = options;
+            this.visitor = visitor;
+            this.walkers = options.getMaxDepth() > 1 ? Executors.newFixedThreadPool(options.getPoolSize()) : null;
+        }
+
+        /**
+         * Walks the tree and waits for every directory to be listed.
+         * @return The counts of the walk
+         * @throws IOException if the root directory cannot be read
+         */
+        ScanReport run() throws IOException {
+            long start = System.nanoTime();
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                if (!attributes.isDirectory()) {
+                    throw new NotDirectoryException(root.toString());
+                }
+                visitedDirectories.add(directoryKey(root, attributes));
+                visitor.visitDirectory(root, attributes);
+                if (options.getMaxDepth() > 0) {
+                    list(root, 0);
+                }
+                directoryDone();
+                finished.await();
+            } catch (InterruptedException e) {
+                cancelled = true;
+                Thread.currentThread().interrupt();
+            } finally {
+                if (walkers != null) {
+                    walkers.shutdownNow();
+                }
+            }
+            return new ScanReport(files.get(), bytes.get(), failures.get(), System.nanoTime() - start);
+        }
+
+        /**
+         * Lists one directory, visiting its files and queueing its subdirectories.
+         * @param directory The directory
+         * @param depth Its depth below the root, 0 for the root
+         * @throws IOException if the directory cannot be opened or read
+         */
+        private void list(Path directory, int depth) throws IOException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (cancelled || Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = readAttributes(entry);
+                    } catch (IOException e) {
+                        failed(entry, e);
+                        continue;
+                    }
+                    Path relative = root.relativize(entry);
+                    if (options.isExcluded(relative)) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (depth + 1 < options.getMaxDepth() && firstVisit(entry, attributes)) {
+                            visitor.visitDirectory(entry, attributes);
+                            submit(entry, depth + 1);
+                        }
+                    } else if (attributes.isRegularFile() && options.isIncluded(relative)) {
+                        FileAttributeCache.put(entry, attributes);
+                        files.incrementAndGet();
+                        bytes.addAndGet(attributes.size());
+                        visitor.visitFile(entry, attributes);
+                    }
+                }
+            } catch (DirectoryIteratorException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Queues a subdirectory to be listed by the walker pool.
+         * @param directory The subdirectory
+         * @param depth Its depth below the root
+         */
+        private void submit(Path directory, int depth) {
+            pending.incrementAndGet();
+            try {
+                walkers.execute(() -> {
+                    try {
+                        if (!cancelled) {
+                            list(directory, depth);
+                        }
+                    } catch (IOException e) {
+                        failed(directory, e);
+                    } finally {
+                        directoryDone();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The walk was cancelled
+                directoryDone();
+            }
+        }
+
+        /**
+         * Records that a directory has been listed, ending the walk after the last one.
+         */
+        private void directoryDone() {
+            if (pending.decrementAndGet() == 0) {
+                finished.countDown();
             }
         }
-        return false;
+
+        /**
+         * Records an entry that could not be read.
+         * @param entry The entry
+         * @param e The error
+         */
+        private void failed(Path entry, IOException e) {
+            System.err.println("Error al recorrer " + entry + ": " + e.getMessage());
+            failures.incrementAndGet();
+        }
+
+        /**
+         * Reads the attributes of an entry, following links if the options say so.
+         * A link whose target does not exist is reported as the link itself.
+         * @param entry The entry
+         * @return Its attributes
+         * @throws IOException if the entry cannot be read
+         */
+        private BasicFileAttributes readAttributes(Path entry) throws IOException {
+            if (options.isFollowLinks()) {
+                try {
+                    return Files.readAttributes(entry, BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    // Broken link: fall through to the link itself
+                }
+            }
+            return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+
+        /**
+         * Records a directory as walked.
+         * @param directory The directory
+         * @param attributes Its attributes
+         * @return true the first time the directory is reached, false if it was already walked
+         *         or cannot be identified
+         */
+        private boolean firstVisit(Path directory, BasicFileAttributes attributes) {
+            try {
+                return visitedDirectories.add(directoryKey(directory, attributes));
+            } catch (IOException e) {
+                failed(directory, e);
+                return false;
+            }
+        }
+
+        /**
+         * Identifies a directory so that a link cycle reaching it again can be detected.
+         * @param directory The directory
+         * @param attributes Its attributes
+         * @return The file key, or the real path where the file system has no keys
+         * @throws IOException if the real path cannot be resolved
+         */
+        private static Object directoryKey(Path directory, BasicFileAttributes attributes) throws IOException {
+            Object key = attributes.fileKey();
+            return key != null ? key : directory.toRealPath();
+        }
+    }
+
+    /**
+     * Interface for receiving images as they are analyzed.
+     */
+    public interface AnalysisListener {
+        /**
+         * Called when an image has been analyzed.
+         * @param info The data of the analyzed image
+         */
+        void onImageAnalyzed(ImageInfo info);
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package imageLibrary.analyzer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Image formats recognized by the library, identified by their file signature.
+ */
+public enum ImageFormat {
+    JPEG("jpg", "jpeg"),
+    PNG("png"),
+    GIF("gif"),
+    BMP("bmp"),
+    TIFF("tif", "tiff"),
+    WEBP("webp");
+
+    private final String[] extensions;
+
+    /**
+     * Creates a format with its usual file extensions.
+     * @param extensions Lowercase extensions without the dot
+     */
+    ImageFormat(String... extensions) {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Identifies a format from the first bytes of a file (16 bytes are enough for every format).
+     * The buffer is read with absolute indexes, so its position is left untouched.
+     * @param header Buffer holding the start of the file, from index 0 up to its limit
+     * @return The detected format, or null if the data does not start with a known signature
+     */
+    public static ImageFormat detect(ByteBuffer header) {
+        int length = header.limit();
+        if (length >= 3 && u8(header, 0) == 0xFF && u8(header, 1) == 0xD8 && u8(header, 2) == 0xFF) {
+            return JPEG;
+        }
+        if (length >= 8 && header.getLong(0) == 0x89504E470D0A1A0AL) {
+            return PNG;
+        }
+        if (length >= 6 && startsWith(header, "GIF8") && (u8(header, 4) == '7' || u8(header, 4) == '9')
+                && u8(header, 5) == 'a') {
+            return GIF;
+        }
+        // "BM" alone is too weak a signature: the reserved header fields must also be zero
+        if (length >= 10 && startsWith(header, "BM") && header.getInt(6) == 0) {
+            return BMP;
+        }
+        if (length >= 4 && (startsWith(header, "II*\0") || startsWith(header, "MM\0*"))) {
+            return TIFF;
+        }
+        if (length >= 12 && startsWith(header, "RIFF") && u8(header, 8) == 'W' && u8(header, 9) == 'E'
+                && u8(header, 10) == 'B' && u8(header, 11) == 'P') {
+            return WEBP;
+        }
+        return null;
+    }
+
+    /**
+     * Identifies a format from the extension of a file name.
+     * @param fileName The file name, with its extension after a dot
+     * @return The format the extension belongs to, or null if it is not an image extension
+     */
+    public static ImageFormat fromExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        String extension = fileName.substring(dot + 1).toLowerCase();
+        for (ImageFormat format : values()) {
+            for (String candidate : format.extensions) {
+                if (candidate.equals(extension)) {
+                    return format;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads an unsigned byte.
+     * @param buf The buffer to read
+     * @param index Absolute index of the byte
+     * @return The byte value between 0 and 255
+     */
+    private static int u8(ByteBuffer buf, int index) {
+        return buf.get(index) & 0xFF;
+    }
+
+    /**
+     * Checks if the buffer starts with the given ASCII characters.
+     * @param buf The buffer to check
+     * @param prefix The expected characters
+     * @return true if the first bytes match the prefix
+     */
+    private static boolean startsWith(ByteBuffer buf, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (u8(buf, i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package imageLibrary.analyzer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe latency histogram with power-of-two microsecond buckets.
+ * Bucket i counts the calls that took less than 2^i microseconds (and at least 2^(i-1)).
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 40;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * Records the duration of one call.
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        counts.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Gets the number of recorded calls.
+     * @return The call count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the mean duration of the recorded calls.
+     * @return The mean in microseconds, or 0 if nothing was recorded
+     */
+    public double getMeanMicros() {
+        long n = count.get();
+        return n > 0 ? totalNanos.get() / 1000.0 / n : 0;
+    }
+
+    /**
+     * Gets an upper bound of a percentile of the recorded durations.
+     * @param percentile The percentile between 0 and 100
+     * @return The upper bound of the bucket holding the percentile, in microseconds
+     */
+    public long getPercentileMicros(double percentile) {
+        long n = count.get();
+        long target = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a one-line summary of the histogram.
+     * @return Count, mean and p50/p99 bounds
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d media=%.0fµs p50<%dµs p99<%dµs", getCount(), getMeanMicros(),
+                getPercentileMicros(50), getPercentileMicros(99));
+    }
+}
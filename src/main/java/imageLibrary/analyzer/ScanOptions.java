@@ -0,0 +1,129 @@
+package imageLibrary.analyzer;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options for a recursive library scan with {@link ImageAnalyzer#analyzeTree}.
+ * Controls the depth limit, whether symbolic links are followed, the worker pool size
+ * and which files are included or excluded by glob pattern.
+ */
+public class ScanOptions {
+    private int maxDepth = Integer.MAX_VALUE;
+    private boolean followLinks = false;
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+
+    /**
+     * Gets the maximum number of directory levels to descend below the root.
+     * @return The depth limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Sets the maximum number of directory levels to descend below the root.
+     * @param maxDepth The depth limit (0 scans the root entry only)
+     * @throws IllegalArgumentException if maxDepth is negative
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Invalid depth: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Checks if symbolic links are followed during the scan.
+     * @return true if links are followed, false if they are skipped
+     */
+    public boolean isFollowLinks() {
+        return followLinks;
+    }
+
+    /**
+     * Sets whether symbolic links are followed during the scan.
+     * Link cycles are detected and skipped when links are followed.
+     * @param followLinks true to follow links, false to skip them
+     */
+    public void setFollowLinks(boolean followLinks) {
+        this.followLinks = followLinks;
+    }
+
+    /**
+     * Gets the number of files analyzed at the same time.
+     * @return The worker pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Sets the number of files analyzed at the same time.
+     * @param poolSize The worker pool size
+     * @throws IllegalArgumentException if poolSize is not positive
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Invalid pool size: " + poolSize);
+        }
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Adds a glob pattern that files must match to be analyzed (e.g. "*.jpg" or "Viajes/**").
+     * When no include pattern is set, every image file is included.
+     * @param glob The glob pattern, matched against the file name and the path relative to the root
+     */
+    public void addInclude(String glob) {
+        includes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Adds a glob pattern for files and directories to leave out of the scan.
+     * An excluded directory is skipped with its whole subtree.
+     * @param glob The glob pattern, matched against the name and the path relative to the root
+     */
+    public void addExclude(String glob) {
+        excludes.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+    }
+
+    /**
+     * Checks if a file passes the include patterns.
+     * @param relative The file path relative to the scan root
+     * @return true if there are no include patterns or one of them matches
+     */
+    boolean isIncluded(Path relative) {
+        return includes.isEmpty() || matchesAny(includes, relative);
+    }
+
+    /**
+     * Checks if a file or directory matches one of the exclude patterns.
+     * @param relative The path relative to the scan root
+     * @return true if the path is excluded
+     */
+    boolean isExcluded(Path relative) {
+        return matchesAny(excludes, relative);
+    }
+
+    /**
+     * Matches a relative path, and its last name element, against a list of patterns.
+     * @param matchers The patterns to try
+     * @param relative The path relative to the scan root
+     * @return true if any pattern matches
+     */
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+        Path name = relative.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative) || (name != null && matcher.matches(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+package imageLibrary.analyzer;
+
+/**
+ * Summary of a recursive library scan: how many files and bytes were analyzed and how fast.
+ */
+public class ScanReport {
+    private final long files;
+    private final long bytes;
+    private final long failures;
+    private final long elapsedNanos;
+
+    /**
+     * Creates a scan report.
+     * @param files Number of images analyzed
+     * @param bytes Total size of the analyzed images in bytes
+     * @param failures Number of files or directories that could not be read
+     * @param elapsedNanos Wall-clock duration of the scan in nanoseconds
+     */
+    public ScanReport(long files, long bytes, long failures, long elapsedNanos) {
+        this.files = files;
+        this.bytes = bytes;
+        this.failures = failures;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of images analyzed.
+     * @return The image count
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Gets the total size of the analyzed images.
+     * @return The size in bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Gets the number of files or directories that could not be read.
+     * @return The failure count
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the duration of the scan.
+     * @return The elapsed time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * Gets the analysis throughput in files.
+     * @return Files analyzed per second
+     */
+    public double getFilesPerSecond() {
+        return elapsedNanos > 0 ? files * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Gets the analysis throughput in bytes.
+     * @return Bytes analyzed per second
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos > 0 ? bytes * 1e9 / elapsedNanos : 0;
+    }
+
+    /**
+     * Returns a one-line summary of the scan.
+     * @return The summary text
+     */
+    @Override
+    public String toString() {
+        return String.format("%d imágenes, %d bytes en %d ms (%.1f archivos/s, %.1f MB/s), %d errores",
+                files, bytes, getElapsedMillis(), getFilesPerSecond(), getBytesPerSecond() / (1024 * 1024), failures);
+    }
+}
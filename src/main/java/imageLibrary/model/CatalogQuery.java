@@ -0,0 +1,961 @@
+package imageLibrary.model;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Filter query over the images of an {@link ImageCatalog}, such as
+ * {@code width>4000 AND date>=2024-01-01 AND (name~"IMG_" OR size<2MB)}.
+ * <p>
+ * A query combines comparisons with {@code AND}, {@code OR}, {@code NOT} and parentheses.
+ * Fields are {@code width}, {@code height}, {@code pixels}, {@code size}, {@code date} (capture date,
+ * or modification date when there is none), {@code modified}, {@code captured} and {@code name},
+ * with the Spanish aliases {@code ancho}, {@code alto}, {@code pixeles}, {@code tamaño},
+ * {@code fecha}, {@code modificado}, {@code captura} and {@code nombre}. Numeric fields accept
+ * {@code < <= = != >= >}; sizes take the units B, KB, MB and GB and pixel counts MP. Dates are
+ * written as yyyy, yyyy-MM, yyyy-MM-dd or "yyyy-MM-dd HH:mm[:ss]" and stand for the whole period,
+ * so {@code date=2024} matches the whole year and {@code date>2024-01-01} starts the next day.
+ * Names accept {@code ~} (contains), {@code =} and {@code !=}, ignoring case.
+ * Images whose value is not known yet (dimensions still being analyzed, no capture date)
+ * never match a comparison on that field.
+ * <p>
+ * The text is parsed once into a tree of {@link Node}s, which is then compiled into a single
+ * predicate over catalog rows that reads the primitive columns directly. On large catalogs,
+ * {@link #select(ImageCatalog)} first narrows the rows down with the sorted index of the most
+ * selective range comparison and only tests the predicate on those.
+ */
+public class CatalogQuery {
+    /** Column value of images whose value is not known. */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final int PARALLEL_CHUNK_SIZE = 16_384;
+    private static final int MIN_INDEXED_ROWS = 4096;
+
+    private final String text;
+    private final Node root;
+
+    /**
+     * Creates a parsed query.
+     * @param text The query text
+     * @param root The root of the query tree
+     */
+    private CatalogQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    /**
+     * Parses a query.
+     * @param text The query text
+     * @return The parsed query
+     * @throws ParseException if the text is not a valid query; the offset points at the error
+     */
+    public static CatalogQuery parse(String text) throws ParseException {
+        Parser parser = new Parser(text);
+        Node root = parser.parseOr();
+        if (parser.peek() != null) {
+            throw parser.error("Se esperaba AND, OR o el final de la consulta");
+        }
+        return new CatalogQuery(text, root);
+    }
+
+    /**
+     * Gets the text the query was parsed from.
+     * @return The query text
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Gets the root of the query tree.
+     * @return The root node
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Checks whether the query compares a field anywhere in its tree.
+     * @param field The field
+     * @return true if some comparison of the query reads the field
+     */
+    public boolean uses(Field field) {
+        return root.uses(field);
+    }
+
+    /**
+     * Compiles the query into a predicate over the rows of a catalog.
+     * The predicate reads the catalog when it is tested, so it stays valid as rows are added or updated.
+     * @param catalog The catalog
+     * @return The predicate
+     */
+    public IntPredicate compile(ImageCatalog catalog) {
+        return root.compile(catalog);
+    }
+
+    /**
+     * Finds the catalog rows matching the query.
+     * When a range comparison that every match must satisfy is selective enough, only the rows
+     * its sorted index returns are tested; otherwise, or if the indexes cannot narrow the query
+     * down after all, every row is, as in {@link #select(ImageCatalog, IntPredicate)}.
+     * @param catalog The catalog
+     * @return The matching rows, in ascending order
+     */
+    public int[] select(ImageCatalog catalog) {
+        IntPredicate predicate = compile(catalog);
+        int size = catalog.size();
+        if (size >= MIN_INDEXED_ROWS && root.estimate(catalog) <= size / 4) {
+            int[] candidates = root.candidates(catalog);
+            if (candidates != null) {
+                return filter(candidates, candidates.length, predicate);
+            }
+        }
+        return filter(null, size, predicate);
+    }
+
+    /**
+     * Finds the catalog rows matching a predicate.
+     * Large catalogs are split into chunks evaluated in parallel; the catalog must not be
+     * modified meanwhile, and the predicate must not have side effects.
+     * @param catalog The catalog
+     * @param predicate The predicate, e.g. from {@link #compile}
+     * @return The matching rows, in ascending order
+     */
+    public static int[] select(ImageCatalog catalog, IntPredicate predicate) {
+        return filter(null, catalog.size(), predicate);
+    }
+
+    /**
+     * Tests a predicate on a list of rows, in parallel chunks if the list is long.
+     * @param candidates The rows to test in ascending order, or null for the rows from 0 to count - 1
+     * @param count Number of rows to test
+     * @param predicate The predicate
+     * @return The rows passing the predicate, in ascending order
+     */
+    private static int[] filter(int[] candidates, int count, IntPredicate predicate) {
+        int chunks = (count + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+        if (chunks <= 1) {
+            return filterRange(candidates, predicate, 0, count);
+        }
+        int[][] parts = new int[chunks][];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> parts[chunk] = filterRange(candidates, predicate,
+                chunk * PARALLEL_CHUNK_SIZE, Math.min(count, (chunk + 1) * PARALLEL_CHUNK_SIZE)));
+
+        int total = 0;
+        for (int[] part : parts) {
+            total += part.length;
+        }
+        int[] rows = new int[total];
+        int position = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, rows, position, part.length);
+            position += part.length;
+        }
+        return rows;
+    }
+
+    /**
+     * Tests a predicate on a range of a list of rows.
+     * @param candidates The rows to test, or null for the identity list
+     * @param predicate The predicate
+     * @param from First position, inclusive
+     * @param to Last position, exclusive
+     * @return The rows passing the predicate
+     */
+    private static int[] filterRange(int[] candidates, IntPredicate predicate, int from, int to) {
+        int[] rows = new int[to - from];
+        int count = 0;
+        for (int position = from; position < to; position++) {
+            int row = candidates != null ? candidates[position] : position;
+            if (predicate.test(row)) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Merges lists of rows into one.
+     * @param lists Lists of rows, each in ascending order
+     * @return The rows in any of the lists, in ascending order and without repetitions
+     */
+    private static int[] union(List<int[]> lists) {
+        int total = 0;
+        for (int[] list : lists) {
+            total += list.length;
+        }
+        int[] rows = new int[total];
+        int position = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, rows, position, list.length);
+            position += list.length;
+        }
+        Arrays.sort(rows);
+        int count = 0;
+        for (int i = 0; i < rows.length; i++) {
+            if (count == 0 || rows[count - 1] != rows[i]) {
+                rows[count++] = rows[i];
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Fields a query can compare.
+     */
+    public enum Field {
+        WIDTH("width", "ancho"),
+        HEIGHT("height", "alto"),
+        PIXELS("pixels", "pixeles"),
+        SIZE("size", "tamaño"),
+        DATE("date", "fecha"),
+        MODIFIED("modified", "modificado"),
+        CAPTURED("captured", "captura"),
+        NAME("name", "nombre");
+
+        private final String[] names;
+
+        /**
+         * Creates a field.
+         * @param names Names of the field in queries
+         */
+        Field(String... names) {
+            this.names = names;
+        }
+
+        /**
+         * Finds a field by one of its names.
+         * @param name The name, in any case
+         * @return The field, or null if there is none with that name
+         */
+        static Field byName(String name) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            for (Field field : values()) {
+                for (String candidate : field.names) {
+                    if (candidate.equals(lower)) {
+                        return field;
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Checks whether the field holds a date.
+         * @return true for the date fields
+         */
+        boolean isDate() {
+            return this == DATE || this == MODIFIED || this == CAPTURED;
+        }
+
+        /**
+         * Gets the column of a numeric field, with {@link CatalogQuery#UNKNOWN} for unknown values.
+         * @param catalog The catalog
+         * @return The column reader
+         */
+        public IntToLongFunction column(ImageCatalog catalog) {
+            switch (this) {
+            case WIDTH:
+                return row -> catalog.getWidth(row) > 0 ? catalog.getWidth(row) : UNKNOWN;
+            case HEIGHT:
+                return row -> catalog.getHeight(row) > 0 ? catalog.getHeight(row) : UNKNOWN;
+            case PIXELS:
+                return row -> catalog.getWidth(row) > 0 && catalog.getHeight(row) > 0
+                        ? (long) catalog.getWidth(row) * catalog.getHeight(row) : UNKNOWN;
+            case SIZE:
+                return catalog::getSize;
+            case DATE:
+                return row -> catalog.getCaptureEpoch(row) != ImageCatalog.UNKNOWN_DATE
+                        ? catalog.getCaptureEpoch(row) : catalog.getLastModified(row);
+            case MODIFIED:
+                return catalog::getLastModified;
+            case CAPTURED:
+                return catalog::getCaptureEpoch;
+            default:
+                throw new IllegalStateException("El campo " + this + " no es numérico");
+            }
+        }
+    }
+
+    /**
+     * Node of a parsed query.
+     */
+    public abstract static class Node {
+        /**
+         * Compiles the node into a predicate over catalog rows.
+         * @param catalog The catalog
+         * @return The predicate
+         */
+        abstract IntPredicate compile(ImageCatalog catalog);
+
+        /**
+         * Checks whether the node, or one of its terms, compares a field.
+         * @param field The field
+         * @return true if the field is read when the node is evaluated
+         */
+        boolean uses(Field field) {
+            return false;
+        }
+
+        /**
+         * Estimates how many rows the sorted indexes would return as candidates for the node.
+         * @param catalog The catalog
+         * @return An upper bound of the number of candidates, or Long.MAX_VALUE if the node cannot use the indexes
+         */
+        long estimate(ImageCatalog catalog) {
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Gets, from the sorted indexes, a superset of the rows matching the node.
+         * @param catalog The catalog
+         * @return The candidate rows, in ascending order, or null if the node cannot use the indexes
+         *         and every row has to be tested
+         */
+        int[] candidates(ImageCatalog catalog) {
+            return null;
+        }
+    }
+
+    /**
+     * Rows matching every term.
+     */
+    public static class And extends Node {
+        private final List<Node> terms;
+
+        /**
+         * Creates a conjunction.
+         * @param terms The terms, at least two
+         */
+        And(List<Node> terms) {
+            this.terms = terms;
+        }
+
+        /**
+         * Gets the terms of the conjunction.
+         * @return The terms
+         */
+        public List<Node> getTerms() {
+            return terms;
+        }
+
+        @Override
+        IntPredicate compile(ImageCatalog catalog) {
+            IntPredicate[] predicates = terms.stream().map(term -> term.compile(catalog)).toArray(IntPredicate[]::new);
+            return row -> {
+                for (IntPredicate predicate : predicates) {
+                    if (!predicate.test(row)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        @Override
+        boolean uses(Field field) {
+            return terms.stream().anyMatch(term -> term.uses(field));
+        }
+
+        @Override
+        long estimate(ImageCatalog catalog) {
+            long best = Long.MAX_VALUE;
+            for (Node term : terms) {
+                best = Math.min(best, term.estimate(catalog));
+            }
+            return best;
+        }
+
+        @Override
+        int[] candidates(ImageCatalog catalog) {
+            Node best = terms.get(0);
+            long bestEstimate = best.estimate(catalog);
+            for (Node term : terms) {
+                long estimate = term.estimate(catalog);
+                if (estimate < bestEstimate) {
+                    best = term;
+                    bestEstimate = estimate;
+                }
+            }
+            return best.candidates(catalog);
+        }
+    }
+
+    /**
+     * Rows matching any term.
+     */
+    public static class Or extends Node {
+        private final List<Node> terms;
+
+        /**
+         * Creates a disjunction.
+         * @param terms The terms, at least two
+         */
+        Or(List<Node> terms) {
+            this.terms = terms;
+        }
+
+        /**
+         * Gets the terms of the disjunction.
+         * @return The terms
+         */
+        public List<Node> getTerms() {
+            return terms;
+        }
+
+        @Override
+        IntPredicate compile(ImageCatalog catalog) {
+            IntPredicate[] predicates = terms.stream().map(term -> term.compile(catalog)).toArray(IntPredicate[]::new);
+            return row -> {
+                for (IntPredicate predicate : predicates) {
+                    if (predicate.test(row)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        @Override
+        boolean uses(Field field) {
+            return terms.stream().anyMatch(term -> term.uses(field));
+        }
+
+        @Override
+        long estimate(ImageCatalog catalog) {
+            long total = 0;
+            for (Node term : terms) {
+                long estimate = term.estimate(catalog);
+                if (estimate == Long.MAX_VALUE) {
+                    return Long.MAX_VALUE;
+                }
+                total += estimate;
+            }
+            return total;
+        }
+
+        @Override
+        int[] candidates(ImageCatalog catalog) {
+            List<int[]> lists = new ArrayList<>();
+            for (Node term : terms) {
+                int[] candidates = term.candidates(catalog);
+                if (candidates == null) {
+                    return null;
+                }
+                lists.add(candidates);
+            }
+            return union(lists);
+        }
+    }
+
+    /**
+     * Rows not matching a term.
+     */
+    public static class Not extends Node {
+        private final Node term;
+
+        /**
+         * Creates a negation.
+         * @param term The negated term
+         */
+        Not(Node term) {
+            this.term = term;
+        }
+
+        /**
+         * Gets the negated term.
+         * @return The term
+         */
+        public Node getTerm() {
+            return term;
+        }
+
+        @Override
+        IntPredicate compile(ImageCatalog catalog) {
+            return term.compile(catalog).negate();
+        }
+
+        @Override
+        boolean uses(Field field) {
+            return term.uses(field);
+        }
+    }
+
+    /**
+     * Rows whose numeric field lies in a closed range of values, or outside it when negated.
+     */
+    public static class Range extends Node {
+        private final Field field;
+        private final long min;
+        private final long max;
+        private final boolean negated;
+
+        /**
+         * Creates a range comparison.
+         * @param field The numeric field
+         * @param min Smallest accepted value
+         * @param max Largest accepted value
+         * @param negated true to accept the known values outside the range instead
+         */
+        Range(Field field, long min, long max, boolean negated) {
+            this.field = field;
+            this.min = min;
+            this.max = max;
+            this.negated = negated;
+        }
+
+        /**
+         * Gets the compared field.
+         * @return The field
+         */
+        public Field getField() {
+            return field;
+        }
+
+        /**
+         * Gets the smallest accepted value.
+         * @return The lower bound, inclusive
+         */
+        public long getMin() {
+            return min;
+        }
+
+        /**
+         * Gets the largest accepted value.
+         * @return The upper bound, inclusive
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Checks whether the range is negated.
+         * @return true if the values outside the range are accepted
+         */
+        public boolean isNegated() {
+            return negated;
+        }
+
+        @Override
+        IntPredicate compile(ImageCatalog catalog) {
+            IntToLongFunction column = field.column(catalog);
+            long low = min;
+            long high = max;
+            if (negated) {
+                return row -> {
+                    long value = column.applyAsLong(row);
+                    return value != UNKNOWN && (value < low || value > high);
+                };
+            }
+            return row -> {
+                long value = column.applyAsLong(row);
+                return value >= low && value <= high;
+            };
+        }
+
+        @Override
+        boolean uses(Field field) {
+            return this.field == field;
+        }
+
+        @Override
+        long estimate(ImageCatalog catalog) {
+            SortedColumnIndex index = catalog.getIndex(field);
+            if (negated) {
+                return index.estimate(UNKNOWN + 1, min - 1)
+                        + (max < Long.MAX_VALUE ? index.estimate(max + 1, Long.MAX_VALUE) : 0);
+            }
+            return index.estimate(min, max);
+        }
+
+        @Override
+        int[] candidates(ImageCatalog catalog) {
+            SortedColumnIndex index = catalog.getIndex(field);
+            if (negated) {
+                List<int[]> lists = new ArrayList<>();
+                if (min > UNKNOWN + 1) {
+                    lists.add(sorted(index.rowsInRange(UNKNOWN + 1, min - 1)));
+                }
+                if (max < Long.MAX_VALUE) {
+                    lists.add(sorted(index.rowsInRange(max + 1, Long.MAX_VALUE)));
+                }
+                return union(lists);
+            }
+            return sorted(index.rowsInRange(min, max));
+        }
+
+        /**
+         * Sorts rows returned in value order into row order.
+         * @param rows The rows
+         * @return The same array, sorted
+         */
+        private static int[] sorted(int[] rows) {
+            Arrays.sort(rows);
+            return rows;
+        }
+    }
+
+    /**
+     * Rows whose name equals or contains a text, ignoring case.
+     */
+    public static class NameMatch extends Node {
+        private final String text;
+        private final boolean contains;
+        private final boolean negated;
+
+        /**
+         * Creates a name comparison.
+         * @param text The text to compare with
+         * @param contains true to match names containing the text, false to match whole names
+         * @param negated true to accept the names that do not match
+         */
+        NameMatch(String text, boolean contains, boolean negated) {
+            this.text = text.toLowerCase(Locale.ROOT);
+            this.contains = contains;
+            this.negated = negated;
+        }
+
+        @Override
+        IntPredicate compile(ImageCatalog catalog) {
+            String needle = text;
+            boolean partial = contains;
+            boolean invert = negated;
+            return row -> {
+                String name = catalog.getName(row).toLowerCase(Locale.ROOT);
+                return (partial ? name.contains(needle) : name.equals(needle)) != invert;
+            };
+        }
+    }
+
+    /**
+     * Recursive-descent parser of the query syntax.
+     */
+    private static class Parser {
+        private final String text;
+        private int position;
+        private int tokenStart;
+
+        /**
+         * Creates a parser.
+         * @param text The query text
+         */
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Parses a disjunction: {@code and (OR and)*}.
+         * @return The node
+         * @throws ParseException if the text is not valid
+         */
+        Node parseOr() throws ParseException {
+            List<Node> terms = new ArrayList<>();
+            terms.add(parseAnd());
+            while (acceptKeyword("OR")) {
+                terms.add(parseAnd());
+            }
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        /**
+         * Parses a conjunction: {@code unary (AND unary)*}.
+         * @return The node
+         * @throws ParseException if the text is not valid
+         */
+        Node parseAnd() throws ParseException {
+            List<Node> terms = new ArrayList<>();
+            terms.add(parseUnary());
+            while (acceptKeyword("AND")) {
+                terms.add(parseUnary());
+            }
+            return terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        /**
+         * Parses a negation, a parenthesized query or a comparison.
+         * @return The node
+         * @throws ParseException if the text is not valid
+         */
+        Node parseUnary() throws ParseException {
+            if (acceptKeyword("NOT")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Node inner = parseOr();
+                if (!accept(")")) {
+                    throw error("Falta cerrar el paréntesis");
+                }
+                return inner;
+            }
+            return parseComparison();
+        }
+
+        /**
+         * Parses a comparison: {@code field operator value}.
+         * @return The node
+         * @throws ParseException if the text is not valid
+         */
+        Node parseComparison() throws ParseException {
+            String fieldName = nextWord();
+            int fieldStart = tokenStart;
+            Field field = fieldName != null ? Field.byName(fieldName) : null;
+            if (field == null) {
+                throw new ParseException(fieldName == null ? "Se esperaba un campo"
+                        : "Campo desconocido: " + fieldName, fieldStart);
+            }
+
+            skipSpaces();
+            tokenStart = position;
+            String operator = null;
+            for (String candidate : new String[] { ">=", "<=", "!=", ">", "<", "=", "~" }) {
+                if (text.startsWith(candidate, position)) {
+                    operator = candidate;
+                    position += candidate.length();
+                    break;
+                }
+            }
+            if (operator == null) {
+                throw error("Se esperaba un operador (<, <=, =, !=, >=, >, ~)");
+            }
+            int operatorStart = tokenStart;
+
+            String value = nextValue();
+            if (value == null) {
+                throw error("Se esperaba un valor");
+            }
+
+            if (field == Field.NAME) {
+                if (operator.equals("~") || operator.equals("=") || operator.equals("!=")) {
+                    return new NameMatch(value, operator.equals("~"), operator.equals("!="));
+                }
+                throw new ParseException("El nombre solo admite ~, = y !=", operatorStart);
+            }
+            if (operator.equals("~")) {
+                throw new ParseException("El operador ~ solo se aplica al nombre", operatorStart);
+            }
+            long[] interval = field.isDate() ? parseDate(value) : parseNumber(field, value);
+            return toRange(field, operator, interval[0], interval[1]);
+        }
+
+        /**
+         * Turns a comparison with a value standing for the interval [from, to) into a range of accepted values.
+         * @param field The field
+         * @param operator The operator
+         * @param from Start of the value interval, inclusive
+         * @param to End of the value interval, exclusive
+         * @return The range node
+         */
+        private static Range toRange(Field field, String operator, long from, long to) {
+            switch (operator) {
+            case ">":
+                return new Range(field, to, Long.MAX_VALUE, false);
+            case ">=":
+                return new Range(field, from, Long.MAX_VALUE, false);
+            case "<":
+                return new Range(field, UNKNOWN + 1, from - 1, false);
+            case "<=":
+                return new Range(field, UNKNOWN + 1, to - 1, false);
+            case "!=":
+                return new Range(field, from, to - 1, true);
+            default:
+                return new Range(field, from, to - 1, false);
+            }
+        }
+
+        /**
+         * Parses a number with an optional unit.
+         * @param field The field the number is compared with
+         * @param value The value text
+         * @return The interval [value, value + 1)
+         * @throws ParseException if the value is not a valid number for the field
+         */
+        private long[] parseNumber(Field field, String value) throws ParseException {
+            String upper = value.toUpperCase(Locale.ROOT);
+            int digits = 0;
+            while (digits < upper.length() && (Character.isDigit(upper.charAt(digits)) || upper.charAt(digits) == '.')) {
+                digits++;
+            }
+            String unit = upper.substring(digits);
+            double multiplier;
+            if (unit.isEmpty()) {
+                multiplier = 1;
+            } else if (field == Field.SIZE && unit.equals("B")) {
+                multiplier = 1;
+            } else if (field == Field.SIZE && unit.equals("KB")) {
+                multiplier = 1024;
+            } else if (field == Field.SIZE && unit.equals("MB")) {
+                multiplier = 1024 * 1024;
+            } else if (field == Field.SIZE && unit.equals("GB")) {
+                multiplier = 1024L * 1024 * 1024;
+            } else if (field == Field.PIXELS && unit.equals("MP")) {
+                multiplier = 1_000_000;
+            } else {
+                throw new ParseException("Unidad no válida para " + field.names[0] + ": " + unit, tokenStart);
+            }
+            try {
+                long number = Math.round(Double.parseDouble(upper.substring(0, digits)) * multiplier);
+                return new long[] { number, number + 1 };
+            } catch (NumberFormatException e) {
+                throw new ParseException("Número no válido: " + value, tokenStart);
+            }
+        }
+
+        /**
+         * Parses a date or date-time.
+         * @param value The value text
+         * @return The interval of epoch milliseconds the value stands for
+         * @throws ParseException if the value is not a valid date
+         */
+        private long[] parseDate(String value) throws ParseException {
+            try {
+                String normalized = value.replace('T', ' ');
+                if (normalized.matches("\\d{4}")) {
+                    LocalDate start = LocalDate.of(Integer.parseInt(normalized), 1, 1);
+                    return interval(start.atStartOfDay(), start.plusYears(1).atStartOfDay());
+                }
+                if (normalized.matches("\\d{4}-\\d{2}")) {
+                    YearMonth month = YearMonth.parse(normalized);
+                    return interval(month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay());
+                }
+                if (normalized.matches("\\d{4}-\\d{2}-\\d{2}")) {
+                    LocalDate day = LocalDate.parse(normalized);
+                    return interval(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+                }
+                if (normalized.matches("\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}")) {
+                    LocalDateTime minute = LocalDateTime.parse(normalized.replace(' ', 'T'));
+                    return interval(minute, minute.plusMinutes(1));
+                }
+                LocalDateTime second = LocalDateTime.parse(normalized.replace(' ', 'T'));
+                return interval(second, second.plusSeconds(1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new ParseException("Fecha no válida: " + value, tokenStart);
+            }
+        }
+
+        /**
+         * Converts a period to epoch milliseconds.
+         * @param start Start of the period, inclusive
+         * @param end End of the period, exclusive
+         * @return The interval in epoch milliseconds
+         */
+        private static long[] interval(LocalDateTime start, LocalDateTime end) {
+            return new long[] { ImageCatalog.toEpochMilli(start), ImageCatalog.toEpochMilli(end) };
+        }
+
+        /**
+         * Reads a value: a quoted text or a word.
+         * @return The value, or null at the end of the text
+         * @throws ParseException if a quoted text is not closed
+         */
+        private String nextValue() throws ParseException {
+            skipSpaces();
+            tokenStart = position;
+            if (position < text.length() && text.charAt(position) == '"') {
+                int end = text.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw error("Falta cerrar las comillas");
+                }
+                String value = text.substring(position + 1, end);
+                position = end + 1;
+                return value;
+            }
+            return nextWord();
+        }
+
+        /**
+         * Reads a word: a run of characters other than spaces, quotes, parentheses and operators.
+         * @return The word, or null if there is none at the current position
+         */
+        private String nextWord() {
+            skipSpaces();
+            tokenStart = position;
+            while (position < text.length() && isWordChar(text.charAt(position))) {
+                position++;
+            }
+            return position > tokenStart ? text.substring(tokenStart, position) : null;
+        }
+
+        /**
+         * Gets the next word without consuming it.
+         * @return The word, a single symbol, or null at the end of the text
+         */
+        String peek() {
+            skipSpaces();
+            if (position >= text.length()) {
+                return null;
+            }
+            int end = position;
+            while (end < text.length() && isWordChar(text.charAt(end))) {
+                end++;
+            }
+            return end > position ? text.substring(position, end) : text.substring(position, position + 1);
+        }
+
+        /**
+         * Consumes a keyword if it comes next.
+         * @param keyword The keyword, matched ignoring case
+         * @return true if it was consumed
+         */
+        private boolean acceptKeyword(String keyword) {
+            String next = peek();
+            if (next != null && next.equalsIgnoreCase(keyword)) {
+                position += next.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consumes a symbol if it comes next.
+         * @param symbol The symbol
+         * @return true if it was consumed
+         */
+        private boolean accept(String symbol) {
+            skipSpaces();
+            if (text.startsWith(symbol, position)) {
+                position += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Skips whitespace.
+         */
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * Checks whether a character can be part of a word.
+         * @param c The character
+         * @return true for characters other than spaces, quotes, parentheses and operators
+         */
+        private static boolean isWordChar(char c) {
+            return !Character.isWhitespace(c) && "\"()<>=!~".indexOf(c) < 0;
+        }
+
+        /**
+         * Builds a parse error at the current position.
+         * @param message Description of the error
+         * @return The exception
+         */
+        ParseException error(String message) {
+            skipSpaces();
+            return new ParseException(message + " (posición " + (position + 1) + ")", position);
+        }
+    }
+}
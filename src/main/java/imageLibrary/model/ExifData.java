@@ -0,0 +1,52 @@
+package imageLibrary.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * The EXIF fields shown by the application: capture date, camera model and GPS position.
+ * Any of them may be null when the image does not record it.
+ */
+public class ExifData {
+    /** Value for images without any of the fields. */
+    public static final ExifData EMPTY = new ExifData(null, null, null);
+
+    private final LocalDateTime captureDate;
+    private final String cameraModel;
+    private final String gpsCoordinates;
+
+    /**
+     * Creates a set of EXIF fields.
+     * @param captureDate Capture date, or null
+     * @param cameraModel Camera model, or null
+     * @param gpsCoordinates Latitude and longitude in decimal degrees, or null
+     */
+    public ExifData(LocalDateTime captureDate, String cameraModel, String gpsCoordinates) {
+        this.captureDate = captureDate;
+        this.cameraModel = cameraModel;
+        this.gpsCoordinates = gpsCoordinates;
+    }
+
+    /**
+     * Returns the capture date (DateTimeOriginal, or DateTime when it is missing).
+     * @return The capture date, or null
+     */
+    public LocalDateTime getCaptureDate() {
+        return captureDate;
+    }
+
+    /**
+     * Returns the camera model.
+     * @return The camera model, or null
+     */
+    public String getCameraModel() {
+        return cameraModel;
+    }
+
+    /**
+     * Returns the GPS position as "latitude, longitude" in decimal degrees.
+     * @return The coordinates, or null
+     */
+    public String getGpsCoordinates() {
+        return gpsCoordinates;
+    }
+}
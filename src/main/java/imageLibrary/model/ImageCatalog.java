@@ -0,0 +1,410 @@
+package imageLibrary.model;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column-oriented store of the images shown by the application.
+ * Every attribute lives in its own primitive array indexed by row, folder paths are
+ * dictionary-encoded and names are packed into a shared character pool, so an image costs
+ * a few dozen bytes instead of an object graph and scans over one attribute walk contiguous
+ * memory. Rows are found by file through an open-addressing hash index, and by value
+ * through {@link SortedColumnIndex}es built on first use and kept up to date on every change.
+ * The catalog is not thread-safe; the UI only touches it from the event dispatch thread.
+ */
+public class ImageCatalog {
+    /** Value of {@link #getCaptureEpoch(int)} for images without a capture date. */
+    public static final long UNKNOWN_DATE = Long.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int count;
+    private int[] widths = new int[INITIAL_CAPACITY];
+    private int[] heights = new int[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+    private long[] captureEpochs = new long[INITIAL_CAPACITY];
+    private int[] folderIds = new int[INITIAL_CAPACITY];
+    private int[] nameStarts = new int[INITIAL_CAPACITY];
+    private int[] nameLengths = new int[INITIAL_CAPACITY];
+
+    private char[] namePool = new char[INITIAL_CAPACITY * 16];
+    private int namePoolSize;
+
+    private final List<String> folders = new ArrayList<>();
+    private final Map<String, Integer> folderDictionary = new HashMap<>();
+
+    // Open-addressing index: row + 1 per used slot, 0 for a free slot
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    private final Map<CatalogQuery.Field, SortedColumnIndex> valueIndexes = new EnumMap<>(CatalogQuery.Field.class);
+
+    /**
+     * Gets the number of images in the catalog.
+     * @return The row count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Adds an image analyzed by {@link imageLibrary.analyzer.ImageAnalyzer}, or updates its row
+     * if the file is already in the catalog.
+     * The capture date is only copied if the EXIF fields were already read; it is never read here.
+     * @param info The image data
+     * @return The row of the image
+     */
+    public int add(ImageInfo info) {
+        LocalDateTime captureDate = info.isExifLoaded() ? info.getCaptureDate() : null;
+        long captureEpoch = captureDate != null ? toEpochMilli(captureDate) : UNKNOWN_DATE;
+        return add(info.getPath(), info.getSizeBytes(), toEpochMilli(info.getModificationDate()),
+                info.getWidth(), info.getHeight(), captureEpoch);
+    }
+
+    /**
+     * Adds an image, or updates its row if the file is already in the catalog.
+     * @param path Location of the image file
+     * @param sizeBytes File size in bytes
+     * @param modified Last modification time in epoch milliseconds
+     * @param width Width in pixels, 0 if unknown
+     * @param height Height in pixels, 0 if unknown
+     * @param captureEpoch Capture date in epoch milliseconds, or {@link #UNKNOWN_DATE}
+     * @return The row of the image
+     */
+    public int add(Path path, long sizeBytes, long modified, int width, int height, long captureEpoch) {
+        Path parent = path.toAbsolutePath().getParent();
+        int folderId = folderId(parent != null ? parent.toString() : "");
+        String name = path.getFileName().toString();
+
+        int row = find(folderId, name);
+        if (row < 0) {
+            row = count;
+            ensureCapacity(count + 1);
+            folderIds[row] = folderId;
+            storeName(row, name);
+            count++;
+            insertIntoIndex(row);
+        }
+        sizes[row] = sizeBytes;
+        lastModified[row] = modified;
+        widths[row] = width;
+        heights[row] = height;
+        captureEpochs[row] = captureEpoch;
+        reindex(row);
+        return row;
+    }
+
+    /**
+     * Finds the row of an image file.
+     * @param file The image file
+     * @return The row, or -1 if the file is not in the catalog
+     */
+    public int indexOf(File file) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        Integer folderId = folderDictionary.get(parent != null ? parent.getPath() : "");
+        return folderId != null ? find(folderId, file.getName()) : -1;
+    }
+
+    /**
+     * Removes every image from the catalog, keeping the allocated arrays.
+     */
+    public void clear() {
+        count = 0;
+        namePoolSize = 0;
+        folders.clear();
+        folderDictionary.clear();
+        Arrays.fill(slots, 0);
+        for (SortedColumnIndex index : valueIndexes.values()) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Gets the file name of an image.
+     * @param row The row of the image
+     * @return The file name including extension
+     */
+    public String getName(int row) {
+        return new String(namePool, nameStarts[row], nameLengths[row]);
+    }
+
+    /**
+     * Gets the folder path of an image.
+     * @param row The row of the image
+     * @return The absolute path of the folder containing the image
+     */
+    public String getFolder(int row) {
+        return folders.get(folderIds[row]);
+    }
+
+    /**
+     * Gets the file of an image.
+     * @param row The row of the image
+     * @return The image file
+     */
+    public File getFile(int row) {
+        return new File(getFolder(row), getName(row));
+    }
+
+    /**
+     * Gets the width of an image.
+     * @param row The row of the image
+     * @return Width in pixels, 0 if unknown
+     */
+    public int getWidth(int row) {
+        return widths[row];
+    }
+
+    /**
+     * Gets the height of an image.
+     * @param row The row of the image
+     * @return Height in pixels, 0 if unknown
+     */
+    public int getHeight(int row) {
+        return heights[row];
+    }
+
+    /**
+     * Gets the file size of an image.
+     * @param row The row of the image
+     * @return Size in bytes
+     */
+    public long getSize(int row) {
+        return sizes[row];
+    }
+
+    /**
+     * Gets the last modification time of an image file.
+     * @param row The row of the image
+     * @return Modification time in epoch milliseconds
+     */
+    public long getLastModified(int row) {
+        return lastModified[row];
+    }
+
+    /**
+     * Gets the capture date of an image.
+     * @param row The row of the image
+     * @return Capture date in epoch milliseconds, or {@link #UNKNOWN_DATE}
+     */
+    public long getCaptureEpoch(int row) {
+        return captureEpochs[row];
+    }
+
+    /**
+     * Sets the dimensions of an image once they are known.
+     * @param row The row of the image
+     * @param width Width in pixels
+     * @param height Height in pixels
+     */
+    public void setDimensions(int row, int width, int height) {
+        widths[row] = width;
+        heights[row] = height;
+        reindex(row);
+    }
+
+    /**
+     * Sets the last modification time of an image file.
+     * @param row The row of the image
+     * @param modified Modification time in epoch milliseconds
+     */
+    public void setLastModified(int row, long modified) {
+        lastModified[row] = modified;
+        reindex(row);
+    }
+
+    /**
+     * Sets the capture date of an image.
+     * @param row The row of the image
+     * @param captureEpoch Capture date in epoch milliseconds, or {@link #UNKNOWN_DATE}
+     */
+    public void setCaptureEpoch(int row, long captureEpoch) {
+        captureEpochs[row] = captureEpoch;
+        reindex(row);
+    }
+
+    /**
+     * Sets the size of an image file.
+     * @param row The row of the image
+     * @param sizeBytes Size in bytes
+     */
+    public void setSize(int row, long sizeBytes) {
+        sizes[row] = sizeBytes;
+        reindex(row);
+    }
+
+    /**
+     * Renames an image, keeping its row.
+     * Renames are rare, so the lookup index is simply rebuilt.
+     * @param row The row of the image
+     * @param name The new file name
+     */
+    public void setName(int row, String name) {
+        storeName(row, name);
+        Arrays.fill(slots, 0);
+        for (int i = 0; i < count; i++) {
+            insertIntoIndex(i);
+        }
+    }
+
+    /**
+     * Gets the sorted index of a numeric field, building it the first time it is asked for.
+     * The index follows every later change to the catalog.
+     * @param field A numeric field, see {@link CatalogQuery.Field#column}
+     * @return The index of the field
+     */
+    public SortedColumnIndex getIndex(CatalogQuery.Field field) {
+        SortedColumnIndex index = valueIndexes.get(field);
+        if (index == null) {
+            index = new SortedColumnIndex(field.column(this), count);
+            valueIndexes.put(field, index);
+        }
+        return index;
+    }
+
+    /**
+     * Converts a local date-time to epoch milliseconds in the system time zone.
+     * @param dateTime The date-time to convert
+     * @return The epoch milliseconds
+     */
+    public static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Brings the built sorted indexes up to date with a changed row.
+     * @param row The row that was added or changed
+     */
+    private void reindex(int row) {
+        for (SortedColumnIndex index : valueIndexes.values()) {
+            index.update(row);
+        }
+    }
+
+    /**
+     * Gets or assigns the dictionary id of a folder.
+     * @param folder The absolute folder path
+     * @return The folder id
+     */
+    private int folderId(String folder) {
+        Integer id = folderDictionary.get(folder);
+        if (id == null) {
+            id = folders.size();
+            folders.add(folder);
+            folderDictionary.put(folder, id);
+        }
+        return id;
+    }
+
+    /**
+     * Appends a name to the character pool and points a row at it.
+     * @param row The row of the image
+     * @param name The file name
+     */
+    private void storeName(int row, String name) {
+        int length = name.length();
+        if (namePoolSize + length > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + length));
+        }
+        name.getChars(0, length, namePool, namePoolSize);
+        nameStarts[row] = namePoolSize;
+        nameLengths[row] = length;
+        namePoolSize += length;
+    }
+
+    /**
+     * Looks up the row of a name inside a folder.
+     * @param folderId The folder id
+     * @param name The file name
+     * @return The row, or -1 if not found
+     */
+    private int find(int folderId, String name) {
+        int mask = slots.length - 1;
+        for (int slot = hash(folderId, name) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = slots[slot] - 1;
+            if (folderIds[row] == folderId && nameEquals(row, name)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a row to the lookup index, growing it to keep the load factor under one half.
+     * @param row The row to index
+     */
+    private void insertIntoIndex(int row) {
+        if (count * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < count; i++) {
+                if (i != row) {
+                    insertIntoIndex(i);
+                }
+            }
+        }
+        int mask = slots.length - 1;
+        int slot = hash(folderIds[row], getName(row)) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    /**
+     * Checks whether the stored name of a row equals a string, without allocating.
+     * @param row The row of the image
+     * @param name The name to compare
+     * @return true if both names are equal
+     */
+    private boolean nameEquals(int row, String name) {
+        int length = nameLengths[row];
+        if (length != name.length()) {
+            return false;
+        }
+        int start = nameStarts[row];
+        for (int i = 0; i < length; i++) {
+            if (namePool[start + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes a folder id and name pair.
+     * @param folderId The folder id
+     * @param name The file name
+     * @return A well-mixed hash code
+     */
+    private static int hash(int folderId, String name) {
+        int h = name.hashCode() * 31 + folderId;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Grows every column so that it can hold at least the given number of rows.
+     * @param capacity The required number of rows
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= widths.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, widths.length * 2);
+        widths = Arrays.copyOf(widths, newCapacity);
+        heights = Arrays.copyOf(heights, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        lastModified = Arrays.copyOf(lastModified, newCapacity);
+        captureEpochs = Arrays.copyOf(captureEpochs, newCapacity);
+        folderIds = Arrays.copyOf(folderIds, newCapacity);
+        nameStarts = Arrays.copyOf(nameStarts, newCapacity);
+        nameLengths = Arrays.copyOf(nameLengths, newCapacity);
+    }
+}
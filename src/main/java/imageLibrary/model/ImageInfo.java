@@ -3,20 +3,18 @@ package imageLibrary.model;
 import java.io.File;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import org.apache.commons.imaging.Imaging;
-import org.apache.commons.imaging.common.ImageMetadata;
-import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
-import org.apache.commons.imaging.formats.tiff.TiffField;
-import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
-import org.apache.commons.imaging.formats.tiff.constants.TiffTagConstants;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.util.FileAttributeCache;
+import imageLibrary.util.XmpSidecar;
 
 /**
  * Class representing image data and basic file information.
- * Includes EXIF metadata when available.
+ * Includes EXIF metadata when available. The EXIF fields are read lazily on first access
+ * and memoized; access is thread-safe, so background prefetchers may warm them.
  */
 public class ImageInfo {
 
@@ -26,12 +24,11 @@ public class ImageInfo {
     private int height;
     private LocalDateTime modificationDate;
     private long sizeBytes;
-    private LocalDateTime captureDate;
-    private String cameraModel;
-    private String gpsCoordinates;
+    private long lastModifiedMillis;
+    private volatile ExifData exif;
 
     /**
-     * Creates an ImageInfo object with basic and EXIF metadata from an image file.
+     * Creates an ImageInfo object with basic metadata from an image file.
      * @param file Image file to analyze
      * @param width Image width in pixels
      * @param height Image height in pixels
@@ -41,28 +38,75 @@ public class ImageInfo {
         this.path = file.toPath();
         this.width = width;
         this.height = height;
+        this.lastModifiedMillis = FileAttributeCache.lastModified(file);
         this.modificationDate = LocalDateTime.ofInstant(
-            new Date(file.lastModified()).toInstant(), 
+            new Date(lastModifiedMillis).toInstant(), 
             ZoneId.systemDefault()
         );
-        this.sizeBytes = file.length();
-        try {
-            final ImageMetadata metadata = Imaging.getMetadata(file);
-            
-            if (metadata instanceof JpegImageMetadata) {
-                JpegImageMetadata jpegMetadata = (JpegImageMetadata) metadata;
-                TiffImageMetadata exif = jpegMetadata.getExif();
-
-                TiffField dateField = exif.findField(TiffTagConstants.TIFF_TAG_DATE_TIME);
-                if (dateField != null) {
-                    String dateStr = dateField.getStringValue();
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
-                    this.captureDate = LocalDateTime.parse(dateStr, formatter);
+        this.sizeBytes = FileAttributeCache.size(file);
+    }
+
+    /**
+     * Creates an ImageInfo object from data that has already been read, without touching the file.
+     * @param path Location of the image file
+     * @param attributes File attributes read from the file system
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param exif EXIF fields already read, or null to read them on first access
+     */
+    public ImageInfo(Path path, BasicFileAttributes attributes, int width, int height, ExifData exif) {
+        this.name = path.getFileName().toString();
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+        this.modificationDate = LocalDateTime.ofInstant(
+            attributes.lastModifiedTime().toInstant(), 
+            ZoneId.systemDefault()
+        );
+        this.sizeBytes = attributes.size();
+        this.exif = exif;
+    }
+
+    /**
+     * Gets the EXIF fields, reading them from the file on first access.
+     * Files already parsed at the same modification time are not read again (see {@link ExifReader#get}),
+     * and fields set in the XMP sidecar take precedence (see {@link XmpSidecar#overlay}).
+     * @return The EXIF fields, never null
+     */
+    private ExifData exif() {
+        ExifData result = exif;
+        if (result == null) {
+            synchronized (this) {
+                result = exif;
+                if (result == null) {
+                    try {
+                        result = XmpSidecar.overlay(path.toFile(), ExifReader.get(path.toFile(), lastModifiedMillis));
+                    } catch (Exception e) {
+                        System.err.println("Error al leer metadatos de " + name + ": " + e.getMessage());
+                        result = ExifData.EMPTY;
+                    }
+                    exif = result;
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error al leer metadatos de " + file.getName() + ": " + e.getMessage());
         }
+        return result;
+    }
+
+    /**
+     * Reads the EXIF fields now, so that later getters do not touch the file.
+     * Safe to call from any thread.
+     */
+    public void prefetchExif() {
+        exif();
+    }
+
+    /**
+     * Checks whether the EXIF fields have already been read.
+     * @return true if the EXIF getters will not touch the file
+     */
+    public boolean isExifLoaded() {
+        return exif != null;
     }
 
     /**
@@ -113,6 +157,33 @@ public class ImageInfo {
         return modificationDate;
     }
 
+    /**
+     * Returns the capture date recorded in the EXIF metadata.
+     * Reads the EXIF fields on first access.
+     * @return The capture date, or null if the image has none
+     */
+    public LocalDateTime getCaptureDate() {
+        return exif().getCaptureDate();
+    }
+
+    /**
+     * Returns the camera model recorded in the EXIF metadata.
+     * Reads the EXIF fields on first access.
+     * @return The camera model, or null if the image has none
+     */
+    public String getCameraModel() {
+        return exif().getCameraModel();
+    }
+
+    /**
+     * Returns the GPS position recorded in the EXIF metadata.
+     * Reads the EXIF fields on first access.
+     * @return "latitude, longitude" in decimal degrees, or null if the image has none
+     */
+    public String getGpsCoordinates() {
+        return exif().getGpsCoordinates();
+    }
+
     /**
      * Returns the file size in bytes.
      * @return Size of the file in bytes
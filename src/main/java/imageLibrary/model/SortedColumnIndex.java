@@ -0,0 +1,357 @@
+package imageLibrary.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Secondary index of the rows of a catalog sorted by the value of one numeric column,
+ * answering range queries in O(log n + k).
+ * <p>
+ * Entries are kept as parallel primitive arrays sorted by value. Changed and new rows go into a
+ * small pending buffer instead of being moved inside the sorted arrays; their old sorted entry is
+ * simply skipped until the buffer grows past an eighth of the index and is merged in. Range queries
+ * merge both parts, so they see every change as soon as it is made. Each row is indexed exactly once.
+ * The index is not thread-safe; like the catalog, it is only used from the event dispatch thread.
+ */
+public class SortedColumnIndex {
+    private static final int MIN_PENDING = 1024;
+    private static final int INSERTION_SORT_THRESHOLD = 24;
+
+    private final IntToLongFunction column;
+
+    // Sorted part: values and rows ordered by value
+    private long[] keys = new long[0];
+    private int[] rows = new int[0];
+    private int size;
+
+    // Rows changed since the last merge, sorted on demand
+    private long[] pendingKeys = new long[64];
+    private int[] pendingRows = new int[64];
+    private int pendingCount;
+    private boolean pendingSorted = true;
+
+    // Per row: the indexed value and the position in the pending buffer, or -1 if in the sorted part
+    private long[] current = new long[64];
+    private int[] pendingSlot = new int[64];
+    private int tracked;
+
+    /**
+     * Creates an index and fills it with the existing rows.
+     * @param column Reads the indexed value of a row
+     * @param rowCount Number of rows already in the catalog
+     */
+    public SortedColumnIndex(IntToLongFunction column, int rowCount) {
+        this.column = column;
+        growRows(rowCount);
+        keys = new long[rowCount];
+        rows = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            long key = column.applyAsLong(row);
+            keys[row] = key;
+            rows[row] = row;
+            current[row] = key;
+            pendingSlot[row] = -1;
+        }
+        sort(keys, rows, 0, rowCount);
+        size = rowCount;
+        tracked = rowCount;
+    }
+
+    /**
+     * Gets the number of indexed rows.
+     * @return The row count
+     */
+    public int size() {
+        return tracked;
+    }
+
+    /**
+     * Indexes a row that was added or whose value may have changed.
+     * Rows are numbered consecutively, so indexing a new row also indexes any row before it.
+     * @param row The row
+     */
+    public void update(int row) {
+        while (tracked <= row) {
+            growRows(tracked + 1);
+            int added = tracked++;
+            long key = column.applyAsLong(added);
+            current[added] = key;
+            pendingSlot[added] = -1;
+            addPending(added, key);
+        }
+        long key = column.applyAsLong(row);
+        if (current[row] == key) {
+            return;
+        }
+        current[row] = key;
+        int slot = pendingSlot[row];
+        if (slot >= 0) {
+            pendingKeys[slot] = key;
+            pendingSorted = false;
+        } else {
+            addPending(row, key);
+        }
+    }
+
+    /**
+     * Removes every row from the index.
+     */
+    public void clear() {
+        size = 0;
+        pendingCount = 0;
+        pendingSorted = true;
+        tracked = 0;
+    }
+
+    /**
+     * Visits the rows whose value lies in a range, in ascending order of value.
+     * @param min Smallest value, inclusive
+     * @param max Largest value, inclusive
+     * @param action Called with each matching row
+     */
+    public void forEachInRange(long min, long max, IntConsumer action) {
+        sortPending();
+        int i = lowerBound(keys, size, min);
+        int j = lowerBound(pendingKeys, pendingCount, min);
+        while (true) {
+            while (i < size && pendingSlot[rows[i]] >= 0) {
+                i++; // superseded by a pending entry
+            }
+            boolean sorted = i < size && keys[i] <= max;
+            boolean pending = j < pendingCount && pendingKeys[j] <= max;
+            if (sorted && (!pending || keys[i] <= pendingKeys[j])) {
+                action.accept(rows[i++]);
+            } else if (pending) {
+                action.accept(pendingRows[j++]);
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the rows whose value lies in a range.
+     * @param min Smallest value, inclusive
+     * @param max Largest value, inclusive
+     * @return The matching rows, in ascending order of value
+     */
+    public int[] rowsInRange(long min, long max) {
+        int[] result = new int[(int) Math.min(tracked, estimate(min, max))];
+        int[] count = new int[1];
+        forEachInRange(min, max, row -> result[count[0]++] = row);
+        return count[0] == result.length ? result : Arrays.copyOf(result, count[0]);
+    }
+
+    /**
+     * Estimates the number of rows whose value lies in a range with two binary searches per part.
+     * The estimate never falls below the exact count; it may count rows that changed since the last merge twice.
+     * @param min Smallest value, inclusive
+     * @param max Largest value, inclusive
+     * @return The upper bound of the number of matching rows
+     */
+    public long estimate(long min, long max) {
+        if (min > max) {
+            return 0;
+        }
+        sortPending();
+        long sorted = upperBound(keys, size, max) - lowerBound(keys, size, min);
+        return sorted + upperBound(pendingKeys, pendingCount, max) - lowerBound(pendingKeys, pendingCount, min);
+    }
+
+    /**
+     * Adds an entry to the pending buffer, merging the buffer when it grows too large.
+     * @param row The row
+     * @param key The value of the row
+     */
+    private void addPending(int row, long key) {
+        if (pendingCount == pendingKeys.length) {
+            pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+            pendingRows = Arrays.copyOf(pendingRows, pendingCount * 2);
+        }
+        pendingKeys[pendingCount] = key;
+        pendingRows[pendingCount] = row;
+        pendingSlot[row] = pendingCount++;
+        pendingSorted = false;
+        if (pendingCount > Math.max(MIN_PENDING, size / 8)) {
+            merge();
+        }
+    }
+
+    /**
+     * Merges the pending buffer into the sorted part, dropping the superseded entries.
+     */
+    private void merge() {
+        sortPending();
+        int live = tracked;
+        long[] mergedKeys = new long[live];
+        int[] mergedRows = new int[live];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (true) {
+            while (i < size && pendingSlot[rows[i]] >= 0) {
+                i++;
+            }
+            if (i < size && (j == pendingCount || keys[i] <= pendingKeys[j])) {
+                mergedKeys[count] = keys[i];
+                mergedRows[count++] = rows[i++];
+            } else if (j < pendingCount) {
+                mergedKeys[count] = pendingKeys[j];
+                mergedRows[count++] = pendingRows[j++];
+            } else {
+                break;
+            }
+        }
+        for (int p = 0; p < pendingCount; p++) {
+            pendingSlot[pendingRows[p]] = -1;
+        }
+        keys = mergedKeys;
+        rows = mergedRows;
+        size = count;
+        pendingCount = 0;
+        pendingSorted = true;
+    }
+
+    /**
+     * Sorts the pending buffer if it changed since it was last sorted.
+     */
+    private void sortPending() {
+        if (pendingSorted) {
+            return;
+        }
+        sort(pendingKeys, pendingRows, 0, pendingCount);
+        for (int p = 0; p < pendingCount; p++) {
+            pendingSlot[pendingRows[p]] = p;
+        }
+        pendingSorted = true;
+    }
+
+    /**
+     * Grows the per-row arrays so that they can hold at least the given number of rows.
+     * @param capacity The required number of rows
+     */
+    private void growRows(int capacity) {
+        if (capacity <= current.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, current.length * 2);
+        current = Arrays.copyOf(current, newCapacity);
+        pendingSlot = Arrays.copyOf(pendingSlot, newCapacity);
+    }
+
+    /**
+     * Finds the first position whose value is not below a bound.
+     * @param values Sorted values
+     * @param length Number of values in use
+     * @param bound The bound
+     * @return The position, or length if every value is below the bound
+     */
+    private static int lowerBound(long[] values, int length, long bound) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first position whose value is above a bound.
+     * @param values Sorted values
+     * @param length Number of values in use
+     * @param bound The bound
+     * @return The position, or length if no value is above the bound
+     */
+    private static int upperBound(long[] values, int length, long bound) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] <= bound) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sorts a range of values, moving the rows along with them.
+     * Quicksort with a median-of-three pivot, finishing small ranges with insertion sort.
+     * @param values The values
+     * @param rows The rows, in the same order as the values
+     * @param from First position, inclusive
+     * @param to Last position, exclusive
+     */
+    private static void sort(long[] values, int[] rows, int from, int to) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < values[from]) {
+                swap(values, rows, middle, from);
+            }
+            if (values[to - 1] < values[from]) {
+                swap(values, rows, to - 1, from);
+            }
+            if (values[to - 1] < values[middle]) {
+                swap(values, rows, to - 1, middle);
+            }
+            long pivot = values[middle];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(values, rows, i++, j--);
+                }
+            }
+            // Recurse into the smaller side to bound the stack depth
+            if (j - from < to - i) {
+                sort(values, rows, from, j + 1);
+                from = i;
+            } else {
+                sort(values, rows, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            long value = values[i];
+            int row = rows[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j + 1] = values[j];
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            values[j + 1] = value;
+            rows[j + 1] = row;
+        }
+    }
+
+    /**
+     * Swaps two entries.
+     * @param values The values
+     * @param rows The rows
+     * @param a First position
+     * @param b Second position
+     */
+    private static void swap(long[] values, int[] rows, int a, int b) {
+        long value = values[a];
+        values[a] = values[b];
+        values[b] = value;
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+    }
+}
@@ -0,0 +1,232 @@
+package imageLibrary.ui;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import javax.swing.table.AbstractTableModel;
+import imageLibrary.model.ImageCatalog;
+
+/**
+ * Table model that reads its cells straight from an {@link ImageCatalog}.
+ * Nothing is copied into rows: sizes and dates are formatted only for the cells being painted.
+ * The model can show every catalog row or just a subset of them (a filtered view).
+ */
+public class CatalogTableModel extends AbstractTableModel {
+    static final int COL_NOMBRE = 0;
+    static final int COL_ANCHO = 1;
+    static final int COL_ALTO = 2;
+    static final int COL_TAMAÑO = 3;
+    static final int COL_FECHA = 4;
+
+    private static final String[] COLUMN_NAMES = { "Nombre", "Ancho", "Alto", "Tamaño", "Modificacion" };
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final ImageCatalog catalog;
+    private int[] view;
+    // Inverse of the view: table row of each catalog row, -1 for rows filtered out
+    private int[] tableRows;
+    private CellEditListener editListener;
+
+    /**
+     * Creates a model showing every row of a catalog.
+     * @param catalog The catalog holding the image data
+     */
+    public CatalogTableModel(ImageCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Gets the catalog behind the model.
+     * @return The image catalog
+     */
+    public ImageCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Sets the listener that applies the edits made in the table.
+     * @param listener The listener to notify of cell edits
+     */
+    public void setCellEditListener(CellEditListener listener) {
+        this.editListener = listener;
+    }
+
+    /**
+     * Restricts the table to some catalog rows.
+     * @param rows Catalog rows to show, in display order
+     */
+    public void setView(int[] rows) {
+        int length = 0;
+        for (int row : rows) {
+            length = Math.max(length, row + 1);
+        }
+        int[] inverse = new int[length];
+        Arrays.fill(inverse, -1);
+        for (int i = 0; i < rows.length; i++) {
+            inverse[rows[i]] = i;
+        }
+        view = rows;
+        tableRows = inverse;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Shows every catalog row again.
+     */
+    public void clearView() {
+        if (view != null) {
+            view = null;
+            tableRows = null;
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Converts a table row to its catalog row.
+     * @param row The table row
+     * @return The catalog row
+     */
+    public int toCatalogRow(int row) {
+        return view != null ? view[row] : row;
+    }
+
+    /**
+     * Converts a catalog row to its table row.
+     * @param catalogRow The catalog row
+     * @return The table row, or -1 if the row is filtered out
+     */
+    public int toTableRow(int catalogRow) {
+        if (catalogRow < 0) {
+            return -1;
+        }
+        if (view == null) {
+            return catalogRow < catalog.size() ? catalogRow : -1;
+        }
+        // Rows appended to the catalog after the view was set are not in it
+        return catalogRow < tableRows.length ? tableRows[catalogRow] : -1;
+    }
+
+    /**
+     * Notifies the table that a row was appended to the catalog.
+     * @param catalogRow The new catalog row
+     */
+    public void catalogRowAdded(int catalogRow) {
+        if (view == null) {
+            fireTableRowsInserted(catalogRow, catalogRow);
+        }
+    }
+
+    /**
+     * Notifies the table that a catalog row changed.
+     * @param catalogRow The changed catalog row
+     */
+    public void catalogRowUpdated(int catalogRow) {
+        int row = toTableRow(catalogRow);
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return view != null ? view.length : catalog.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        if (columnIndex == COL_ANCHO || columnIndex == COL_ALTO) {
+            return Integer.class;
+        }
+        return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return column == COL_NOMBRE || column == COL_FECHA;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int catalogRow = toCatalogRow(row);
+        switch (column) {
+        case COL_NOMBRE:
+            return catalog.getName(catalogRow);
+        case COL_ANCHO:
+            int width = catalog.getWidth(catalogRow);
+            return width > 0 ? width : null;
+        case COL_ALTO:
+            int height = catalog.getHeight(catalogRow);
+            return height > 0 ? height : null;
+        case COL_TAMAÑO:
+            return formatFileSize(catalog.getSize(catalogRow));
+        case COL_FECHA:
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(catalog.getLastModified(catalogRow)),
+                    ZoneId.systemDefault()).format(DATE_TIME_FORMATTER);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Hands an edit to the listener; the catalog is only changed if the listener applies it.
+     * @param value The edited value
+     * @param row The table row
+     * @param column The table column
+     */
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        if (editListener == null || value == null) {
+            return;
+        }
+        int catalogRow = toCatalogRow(row);
+        if (column == COL_NOMBRE && !value.equals(catalog.getName(catalogRow))) {
+            editListener.onNameEdited(catalogRow, value.toString());
+        } else if (column == COL_FECHA && !value.equals(getValueAt(row, column))) {
+            editListener.onDateEdited(catalogRow, value.toString());
+        }
+    }
+
+    /**
+     * Formats file size in human-readable format.
+     * @param size The size in bytes
+     * @return Formatted size string
+     */
+    private static String formatFileSize(long size) {
+        if (size < 1024)
+            return size + " B";
+        int exp = (int) (Math.log(size) / Math.log(1024));
+        char pre = "KMGTPE".charAt(exp - 1);
+        return String.format("%.1f %sB", size / Math.pow(1024, exp), pre);
+    }
+
+    /**
+     * Interface for applying the edits made in the table.
+     */
+    public interface CellEditListener {
+        /**
+         * Called when the name cell of a row is edited.
+         * @param catalogRow The catalog row of the image
+         * @param newName The name typed by the user
+         */
+        void onNameEdited(int catalogRow, String newName);
+
+        /**
+         * Called when the date cell of a row is edited.
+         * @param catalogRow The catalog row of the image
+         * @param dateText The date typed by the user
+         */
+        void onDateEdited(int catalogRow, String dateText);
+    }
+}
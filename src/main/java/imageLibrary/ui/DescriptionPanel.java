@@ -4,6 +4,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import imageLibrary.util.MetadataEditor;
+import imageLibrary.util.XmpSidecar;
 
 /**
  * GUI panel for displaying and editing image descriptions.
@@ -51,22 +52,16 @@ public class DescriptionPanel extends JPanel {
     }
 
     /**
-     * Saves the current description to the image EXIF metadata.
-     * Uses a temporary file to avoid data corruption.
+     * Saves the current description to the image metadata, or to its XMP sidecar in sidecar mode.
+     * The image is replaced atomically, so a failed write does not corrupt it.
      */
     private void saveDescription() {
         if (currentImage != null) {
             String desc = descriptionArea.getText().trim();
             try {
-                File tempFile = File.createTempFile("temp_image", ".jpg");
-                MetadataEditor.writeDescription(currentImage, tempFile, desc.getBytes("UTF-8"));
-
-                if (currentImage.delete() && tempFile.renameTo(currentImage)) {
-                    JOptionPane.showMessageDialog(this, "Descripción guardada en EXIF.");
-                } else {
-                    JOptionPane.showMessageDialog(this, "No se pudo actualizar el archivo de imagen.",
-                            "Error", JOptionPane.ERROR_MESSAGE); 
-                }
+                MetadataEditor.saveDescription(currentImage, desc);
+                JOptionPane.showMessageDialog(this, XmpSidecar.fileFor(currentImage).isFile()
+                        ? "Descripción guardada en el archivo XMP." : "Descripción guardada en EXIF.");
             } catch (Exception e) {
                 e.printStackTrace();
                 JOptionPane.showMessageDialog(this, "Error al guardar la descripción EXIF: " + e.getMessage(),
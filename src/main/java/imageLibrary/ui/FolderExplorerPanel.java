@@ -1,14 +1,27 @@
 package imageLibrary.ui;
 
+import imageLibrary.analyzer.FormatSniffer;
+import imageLibrary.analyzer.ImageAnalyzer;
+import imageLibrary.analyzer.ScanOptions;
+import imageLibrary.util.FileAttributeCache;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.tree.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A panel that displays a folder and image file explorer using a tree view.
@@ -169,6 +182,7 @@ public class FolderExplorerPanel extends JPanel {
 
         try {
             ImageIO.write(paintDialog.getImage(), "jpg", file);
+            FileAttributeCache.invalidate(file);
             
             DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
             Enumeration<?> e = root.depthFirstEnumeration();
@@ -231,35 +245,75 @@ public class FolderExplorerPanel extends JPanel {
     }
 
     /**
-     * Recursively adds subdirectories and valid files to the tree node.
+     * Adds the subdirectories and files below a directory to the tree node.
+     * The tree is read with {@link ImageAnalyzer#walkTree}, which lists the subdirectories in
+     * parallel, follows symbolic links and walks a folder reached twice through a link cycle only
+     * once; the nodes are then built from what the walk collected, sorted by name. Whether a
+     * directory holds only images is only needed when showing folders only, and is then told from
+     * the cached formats or the extensions, so the files are not opened here.
      * @param parentNode The node to which children should be added
      * @param directory The directory to scan
      */
     private void addDirectories(DefaultMutableTreeNode parentNode, File directory) {
-        File[] files = directory.listFiles();
-        if (files != null) {
-            boolean containsOnlyImages = true;
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    containsOnlyImages = false;
-                    break;
+        Path root = directory.toPath();
+        Map<Path, List<Path>> children = new ConcurrentHashMap<>();
+        Set<Path> subdirectories = ConcurrentHashMap.newKeySet();
+        Set<Path> mixedDirectories = ConcurrentHashMap.newKeySet();
+        ScanOptions options = new ScanOptions();
+        options.setFollowLinks(true);
+        try {
+            ImageAnalyzer.walkTree(root, options, new ImageAnalyzer.TreeVisitor() {
+                @Override
+                public void visitDirectory(Path path, BasicFileAttributes attributes) {
+                    children.computeIfAbsent(path, key -> Collections.synchronizedList(new ArrayList<>()));
+                    if (!path.equals(root)) {
+                        subdirectories.add(path);
+                        mixedDirectories.add(path.getParent());
+                        children.computeIfAbsent(path.getParent(), key -> Collections.synchronizedList(new ArrayList<>()))
+                                .add(path);
+                    }
                 }
-                if (!isImageFile(file)) {
-                    containsOnlyImages = false;
-                    break;
+
+                @Override
+                public void visitFile(Path file, BasicFileAttributes attributes) {
+                    children.computeIfAbsent(file.getParent(), key -> Collections.synchronizedList(new ArrayList<>()))
+                            .add(file);
+                    if (showFoldersOnly
+                            && FormatSniffer.guess(file, attributes.lastModifiedTime().toMillis()) == null) {
+                        mixedDirectories.add(file.getParent());
+                    }
                 }
-            }
+            });
+        } catch (IOException e) {
+            System.err.println("Error al listar carpeta: " + directory.getName());
+        }
+        addChildren(parentNode, root, children, subdirectories, mixedDirectories);
+    }
 
-            for (File file : files) {
-                if (!showFoldersOnly || file.isDirectory() || containsOnlyImages) {
-                    FileNode childNode = new FileNode(file.getName(), file.getAbsolutePath());
-                    DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(childNode);
-                    parentNode.add(treeNode);
-                    if (file.isDirectory()) {
-                        addDirectories(treeNode, file);
-                        if (childNode.isExpanded()) {
-                            folderExplorer.expandPath(new TreePath(treeNode.getPath()));
-                        }
+    /**
+     * Adds the entries collected for a directory to its node, descending into subdirectories.
+     * @param parentNode The node of the directory
+     * @param directory The directory
+     * @param children Entries collected for each directory
+     * @param subdirectories Entries that are directories
+     * @param mixedDirectories Directories holding something other than images
+     */
+    private void addChildren(DefaultMutableTreeNode parentNode, Path directory, Map<Path, List<Path>> children,
+            Set<Path> subdirectories, Set<Path> mixedDirectories) {
+        List<Path> entries = children.getOrDefault(directory, Collections.emptyList());
+        entries.sort(Comparator.comparing(Path::getFileName));
+        boolean containsOnlyImages = !mixedDirectories.contains(directory);
+        for (Path entry : entries) {
+            boolean isDirectory = subdirectories.contains(entry);
+            if (!showFoldersOnly || isDirectory || containsOnlyImages) {
+                File file = entry.toFile();
+                FileNode childNode = new FileNode(file.getName(), file.getAbsolutePath());
+                DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(childNode);
+                parentNode.add(treeNode);
+                if (isDirectory) {
+                    addChildren(treeNode, entry, children, subdirectories, mixedDirectories);
+                    if (childNode.isExpanded()) {
+                        folderExplorer.expandPath(new TreePath(treeNode.getPath()));
                     }
                 }
             }
@@ -275,19 +329,12 @@ public class FolderExplorerPanel extends JPanel {
     }
 
     /**
-     * Checks if a file is an image based on its extension.
+     * Checks if a file is an image, by its content when the file exists.
      * @param file The file to check
      * @return true if it is an image file, false otherwise
      */
     public static boolean isImageFile(File file) {
-        String[] imageExtensions = { "jpg", "jpeg", "png", "gif", "bmp", "tiff", "webp" };
-        String fileName = file.getName().toLowerCase();
-        for (String ext : imageExtensions) {
-            if (fileName.endsWith(ext)) {
-                return true;
-            }
-        }
-        return false;
+        return FormatSniffer.isImageFile(file);
     }
 
     /**
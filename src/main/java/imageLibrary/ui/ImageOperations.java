@@ -5,6 +5,7 @@ import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import javax.imageio.ImageIO;
+import imageLibrary.analyzer.DecodeAdmission;
 
 /**
  * Provides basic image manipulation operations including loading, saving and resizing.
@@ -13,13 +14,14 @@ import javax.imageio.ImageIO;
 public class ImageOperations {
     
     /**
-     * Loads an image from the specified file.
+     * Loads an image from the specified file at full resolution.
+     * The decode goes through the global memory admission control.
      * @param file The image file to load
      * @return BufferedImage containing the loaded image
-     * @throws Exception If the image cannot be read
+     * @throws Exception If the image cannot be read or does not fit in memory
      */
     public static BufferedImage loadImage(File file) throws Exception {
-        return ImageIO.read(file);
+        return DecodeAdmission.decode(file);
     }
 
     /**
@@ -5,16 +5,17 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import javax.imageio.ImageIO;
 import javax.swing.event.ChangeListener;
 import javax.swing.event.ChangeEvent;
+import imageLibrary.analyzer.DecodeAdmission;
+import imageLibrary.util.ContentIdentity;
+import imageLibrary.util.DescriptionIndex;
+import imageLibrary.util.DescriptionStore;
+import imageLibrary.util.FileAttributeCache;
 
 /**
  * Panel for previewing and editing images with various operations including:
@@ -69,11 +70,17 @@ public class ImagePreviewPanel extends JPanel {
     public JTextArea descriptionArea;
     private JButton saveDescriptionButton;
     public Map<String, String> imageDescriptions = new HashMap<>();
+    private DescriptionStore descriptionStore;
+    private DescriptionIndex descriptionIndex;
+    private File descriptionLogFile;
+    private File descriptionIndexFile;
     public File currentImage;
     private Point cropStartPoint;
     private Rectangle cropRectangle;
     private boolean isCropping = false;
     private ImageModifiedListener imageModifiedListener;
+    private SwingWorker<BufferedImage, Void> loadWorker;
+    private boolean reducedImage = false;
 
     /**
      * Initializes the preview panel with all UI components.
@@ -142,21 +149,31 @@ public class ImagePreviewPanel extends JPanel {
         originalImage = null;
         currentImage = file;
 
+        if (loadWorker != null) {
+            loadWorker.cancel(true);
+            loadWorker = null;
+        }
+
         if (file == null || !file.exists()) {
             imagePreviewPanel.repaint();
             return;
         }
 
-        new SwingWorker<BufferedImage, Void>() {
+        loadWorker = new SwingWorker<BufferedImage, Void>() {
             @Override
             protected BufferedImage doInBackground() throws Exception {
-                return ImageIO.read(file);
+                return DecodeAdmission.decode(file, true);
             }
 
             @Override
             protected void done() {
+                // A newer selection replaced this one while it was loading
+                if (isCancelled() || file != currentImage) {
+                    return;
+                }
                 try {
                     originalImage = get();
+                    reducedImage = originalImage != null && DecodeAdmission.getSubsampling(originalImage) > 1;
                     calculateInitialZoom();
                     loadDescriptionForImage(file);
                     imagePreviewPanel.repaint();
@@ -166,7 +183,8 @@ public class ImagePreviewPanel extends JPanel {
                         "Error", JOptionPane.ERROR_MESSAGE);
                 }
             }
-        }.execute();
+        };
+        loadWorker.execute();
     }
 
     /**
@@ -217,11 +235,29 @@ public class ImagePreviewPanel extends JPanel {
 
     /**
      * Saves the current image description.
+     * The description is keyed by the content identity of the image when it is known, so it
+     * follows the image across renames and moves, and by its path otherwise.
+     * With a description store open, the description is on disk when this returns.
      */
     public void saveDescription() {
         if (currentImage != null) {
             String desc = descriptionArea.getText().trim();
-            imageDescriptions.put(currentImage.getAbsolutePath(), desc);
+            String key = ContentIdentity.keyFor(currentImage);
+            if (descriptionStore != null) {
+                try {
+                    descriptionStore.put(key, desc);
+                    if (!key.equals(currentImage.getAbsolutePath())) {
+                        descriptionStore.remove(currentImage.getAbsolutePath());
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error guardando descripción: " + e.getMessage());
+                    JOptionPane.showMessageDialog(this, "Error al guardar la descripción: " + e.getMessage(),
+                            "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+            } else {
+                imageDescriptions.put(key, desc);
+            }
             JOptionPane.showMessageDialog(this, "Descripción guardada.");
         }
     }
@@ -231,10 +267,94 @@ public class ImagePreviewPanel extends JPanel {
      * @param imageFile The image file to load description for
      */
     public void loadDescriptionForImage(File imageFile) {
-        String desc = imageDescriptions.get(imageFile.getAbsolutePath());
+        String contentKey = ContentIdentity.contentKey(imageFile);
+        String desc = contentKey != null ? imageDescriptions.get(contentKey) : null;
+        if (desc == null) {
+            desc = imageDescriptions.get(imageFile.getAbsolutePath());
+        }
         descriptionArea.setText(desc != null ? desc : "");
     }
 
+    /**
+     * Makes the preview follow an image the application renamed.
+     * @param oldFile The old file
+     * @param newFile The new file
+     */
+    public void imageRenamed(File oldFile, File newFile) {
+        if (oldFile.equals(currentImage)) {
+            currentImage = newFile;
+        }
+    }
+
+    /**
+     * Moves the description of an image the application renamed.
+     * Descriptions keyed by content identity already follow the image; this moves one still keyed by path.
+     * Called on the write-behind I/O thread as part of the rename, so it must not touch the UI.
+     * @param oldFile The old file
+     * @param newFile The new file
+     */
+    public void moveDescription(File oldFile, File newFile) {
+        if (descriptionStore == null) {
+            return;
+        }
+        String desc = descriptionStore.get(oldFile.getAbsolutePath());
+        if (desc == null) {
+            return;
+        }
+        try {
+            descriptionStore.put(ContentIdentity.keyFor(newFile), desc);
+            descriptionStore.remove(oldFile.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Error moviendo la descripción de " + oldFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves a description keyed by content to the new content of an image the application rewrote.
+     * Identical copies of the old content keep their description.
+     * @param oldKey The content key before the write
+     * @param newKey The content key after the write
+     * @throws IOException If the description store cannot be written
+     */
+    private void moveContentDescription(String oldKey, String newKey) throws IOException {
+        String desc = imageDescriptions.get(oldKey);
+        if (desc == null || oldKey.equals(newKey)) {
+            return;
+        }
+        boolean shared = ContentIdentity.isShared(oldKey);
+        if (descriptionStore != null) {
+            descriptionStore.put(newKey, desc);
+            if (!shared) {
+                descriptionStore.remove(oldKey);
+            }
+        } else {
+            imageDescriptions.put(newKey, desc);
+            if (!shared) {
+                imageDescriptions.remove(oldKey);
+            }
+        }
+    }
+
+    /**
+     * Re-keys a description saved by path once the content identity of its image is known.
+     * Called on a hashing thread; a description already stored for that content is kept.
+     * @param imageFile The image file
+     * @param contentKey The content key of the image
+     */
+    private void adoptDescription(File imageFile, String contentKey) {
+        String path = imageFile.getAbsolutePath();
+        String desc = descriptionStore.get(path);
+        if (desc == null || descriptionStore.get(contentKey) != null) {
+            return;
+        }
+        try {
+            descriptionStore.put(contentKey, desc);
+            descriptionStore.remove(path);
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Error moviendo la descripción de " + imageFile.getName() + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Adds zoom control buttons to a panel.
      * @param panel The panel to add buttons to
@@ -599,6 +719,13 @@ public class ImagePreviewPanel extends JPanel {
             return;
         }
         
+        if (reducedImage) {
+            JOptionPane.showMessageDialog(this,
+                    "La imagen se cargó a resolución reducida por falta de memoria y no puede guardarse",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        
         int option = JOptionPane.showConfirmDialog(this, 
                 "¿Guardar cambios en la imagen original?", 
                 "Guardar cambios", 
@@ -607,7 +734,12 @@ public class ImagePreviewPanel extends JPanel {
         if (option == JOptionPane.YES_OPTION) {
             try {
                 String format = currentImage.getName().toLowerCase().endsWith(".png") ? "png" : "jpg";
+                String oldKey = ContentIdentity.contentKey(currentImage);
                 ImageIO.write(originalImage, format, currentImage);
+                FileAttributeCache.invalidate(currentImage);
+                if (oldKey != null) {
+                    moveContentDescription(oldKey, ContentIdentity.rehash(currentImage));
+                }
                 
                 if (imageModifiedListener != null) {
                     imageModifiedListener.onImageModified(currentImage);
@@ -642,50 +774,43 @@ public class ImagePreviewPanel extends JPanel {
     }
     
     /**
-     * Saves image descriptions to a file.
-     * @param file The file to save to
-     * @throws IOException If there's an error writing the file
+     * Opens the description store and its full-text index, and shows its descriptions.
+     * Descriptions saved before the store was opened are written to it.
+     * @param logFile The log file of the store
+     * @param legacyFile The serialized description map of older versions, migrated on first use; may be null
+     * @param indexFile The file the full-text index is kept in
+     * @throws IOException If the store cannot be opened
      */
-    public void saveDescriptionsToFile(File file) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(imageDescriptions);
+    public void openDescriptionStore(File logFile, File legacyFile, File indexFile) throws IOException {
+        DescriptionStore store = DescriptionStore.open(logFile, legacyFile);
+        descriptionIndex = DescriptionIndex.open(indexFile, logFile, store);
+        for (Map.Entry<String, String> entry : imageDescriptions.entrySet()) {
+            store.put(entry.getKey(), entry.getValue());
         }
+        descriptionStore = store;
+        descriptionLogFile = logFile;
+        descriptionIndexFile = indexFile;
+        imageDescriptions = store.asMap();
+        ContentIdentity.addListener(this::adoptDescription);
     }
 
     /**
-     * Loads image descriptions from a file.
-     * @param file The file to load from
-     * @throws IOException If there's an error reading the file
-     * @throws ClassNotFoundException If the serialized data is invalid
+     * Gets the full-text index of the descriptions.
+     * @return The index, or null if the description store is not open
      */
-    public void loadDescriptionsFromFile(File file) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            imageDescriptions = (Map<String, String>) ois.readObject();
-        }
-    }
-    /**
-     * Saves descriptions to disk (alias for saveDescriptionsToFile).
-     * @param saveFile The file to save to
-     * @throws IOException If there's an error writing the file
-     */
-    public void saveDescriptionsToDisk(File saveFile) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(saveFile))) {
-            oos.writeObject(imageDescriptions);
-        }
+    public DescriptionIndex getDescriptionIndex() {
+        return descriptionIndex;
     }
 
     /**
-     * Loads descriptions from disk (alias for loadDescriptionsFromFile).
-     * @param saveFile The file to load from
-     * @throws IOException If there's an error reading the file
-     * @throws ClassNotFoundException If the serialized data is invalid
+     * Closes the description store and saves its full-text index.
+     * Every saved description is already on disk.
+     * @throws IOException If the store cannot be closed or the index cannot be saved
      */
-    @SuppressWarnings("unchecked")
-    public void loadDescriptionsFromDisk(File saveFile) throws IOException, ClassNotFoundException {
-        if (saveFile.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(saveFile))) {
-                imageDescriptions.putAll((Map<String, String>) ois.readObject());
-            }
+    public void closeDescriptionStore() throws IOException {
+        if (descriptionStore != null) {
+            descriptionStore.close();
+            descriptionIndex.save(descriptionIndexFile, descriptionLogFile);
         }
     }
 }
\ No newline at end of file
@@ -1,20 +1,42 @@
 package imageLibrary.ui;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.JTableHeader;
 import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
-import javax.swing.event.TableModelEvent;
+import java.util.List;
+import java.util.concurrent.Future;
+import imageLibrary.model.CatalogQuery;
+import imageLibrary.model.ImageCatalog;
 import imageLibrary.model.ImageInfo;
+import imageLibrary.util.BatchMetadataEditor;
+import imageLibrary.util.ContentIdentity;
+import imageLibrary.util.DescriptionIndex;
+import imageLibrary.util.FileAttributeCache;
 import imageLibrary.util.MetadataEditor;
+import imageLibrary.util.WriteBehindQueue;
+import imageLibrary.util.XmpSidecar;
+import imageLibrary.analyzer.DecoderRegistry;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.analyzer.FormatSniffer;
 import imageLibrary.analyzer.ImageAnalyzer;
 
 /**
@@ -23,18 +45,39 @@ import imageLibrary.analyzer.ImageAnalyzer;
  */
 public class ImageTablePanel extends JPanel {
     private JTable imageTable;
-    private DefaultTableModel tableModel;
+    private final ImageCatalog catalog = new ImageCatalog();
+    private CatalogTableModel tableModel;
     private File currentFolder;
     private ImageSelectionListener selectionListener;
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-    private static final int COL_NOMBRE = 0;
-    private static final int COL_ANCHO = 1;
-    private static final int COL_ALTO = 2;
-    private static final int COL_TAMAÑO = 3;
-    private static final int COL_FECHA = 4;
-
-    private Map<Integer, String> originalNames = new HashMap<>();
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private String pendingSelection;
+    private SwingWorker<Void, ImageInfo> analysisWorker;
+    private volatile int analysisGeneration;
+    // Content hashing queued by the analysis of the current folder, guarded by itself
+    private final List<Future<?>> hashTasks = new ArrayList<>();
+    private final WriteBehindQueue writeQueue = new WriteBehindQueue("table-writer");
+    private final Map<File, DateRollback> pendingDateEdits = new HashMap<>();
+    private JTextField searchField;
+    private DescriptionIndex descriptionIndex;
+    private DescriptionIndex.Matches searchMatches;
+    private CatalogQuery rowQuery;
+    // Coalesces the view refreshes requested while results stream in
+    private final javax.swing.Timer viewRefresh = new javax.swing.Timer(VIEW_REFRESH_DELAY, e -> updateView());
+    private volatile boolean prefetchCaptureDates;
+    // Images whose EXIF fields were not read with the analysis, read when a query needs their capture date
+    private final Map<File, ImageInfo> lazyExif = new HashMap<>();
+    private final Properties folderQueries = new Properties();
+    private File folderQueriesFile;
+
+    private static final int VIEW_REFRESH_DELAY = 150;
+    private static final String QUERY_HELP = "<html>Consulta de filtrado, por ejemplo:<br>"
+            + "<tt>width&gt;4000 AND date&gt;=2024-01-01 AND (name~\"IMG_\" OR size&lt;2MB)</tt><br><br>"
+            + "Campos: width/ancho, height/alto, pixels/pixeles (MP), size/tamaño (B, KB, MB, GB),<br>"
+            + "date/fecha, modified/modificado, captured/captura, name/nombre<br>"
+            + "Operadores: &lt; &lt;= = != &gt;= &gt; y ~ (el nombre contiene), combinados con AND, OR, NOT y paréntesis<br>"
+            + "Fechas: yyyy, yyyy-MM, yyyy-MM-dd o \"yyyy-MM-dd HH:mm\"<br><br>"
+            + "Deja la consulta vacía para quitar el filtro.</html>";
 
     /**
      * Constructs the image table panel with default configuration.
@@ -43,20 +86,8 @@ public class ImageTablePanel extends JPanel {
         setLayout(new BorderLayout());
         setBorder(BorderFactory.createTitledBorder("Listado de imágenes"));
 
-        tableModel = new DefaultTableModel(new String[] { "Nombre", "Ancho", "Alto", "Tamaño", "Modificacion" }, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == COL_NOMBRE || column == COL_FECHA;
-            }
-
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 1 || columnIndex == 2) {
-                    return Integer.class;
-                }
-                return String.class;
-            }
-        };
+        tableModel = new CatalogTableModel(catalog);
+        viewRefresh.setRepeats(false);
 
         imageTable = new JTable(tableModel) {
             @Override
@@ -72,6 +103,7 @@ public class ImageTablePanel extends JPanel {
         setupTableAppearance();
         setupSelectionListener();
         setupNameEditListener();
+        setupSearchField();
         add(new JScrollPane(imageTable), BorderLayout.CENTER);
 
         imageTable.getColumnModel().getColumn(0).setPreferredWidth(110);
@@ -81,6 +113,53 @@ public class ImageTablePanel extends JPanel {
         imageTable.getColumnModel().getColumn(4).setPreferredWidth(110);
     }
 
+    /**
+     * Creates the description search box above the table.
+     * The table is filtered on every keystroke.
+     */
+    private void setupSearchField() {
+        searchField = new JTextField();
+        searchField.setToolTipText("Palabras de la descripción o \"frase exacta\"");
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                applyDescriptionSearch();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                applyDescriptionSearch();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                applyDescriptionSearch();
+            }
+        });
+
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.add(new JLabel("Buscar descripción:"), BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        add(searchPanel, BorderLayout.NORTH);
+    }
+
+    /**
+     * Sets the index searched by the search box.
+     * @param index The full-text index of the descriptions; null disables the search
+     */
+    public void setDescriptionIndex(DescriptionIndex index) {
+        this.descriptionIndex = index;
+        applyDescriptionSearch();
+    }
+
+    /**
+     * Shows only the images of the folder whose description matches the search box.
+     */
+    private void applyDescriptionSearch() {
+        searchMatches = descriptionIndex != null ? descriptionIndex.search(searchField.getText()) : null;
+        updateView();
+    }
+
     /**
      * Configures the visual appearance of the table.
      */
@@ -110,9 +189,7 @@ public class ImageTablePanel extends JPanel {
             if (!e.getValueIsAdjusting() && selectionListener != null && currentFolder != null) {
                 int row = imageTable.getSelectedRow();
                 if (row >= 0 && row < tableModel.getRowCount()) {
-                    String imageName = (String) tableModel.getValueAt(row, 0);
-                    File imageFile = new File(currentFolder, imageName);
-                    selectionListener.onImageSelected(imageFile);
+                    selectionListener.onImageSelected(catalog.getFile(tableModel.toCatalogRow(row)));
                 }
             }
         });
@@ -122,28 +199,18 @@ public class ImageTablePanel extends JPanel {
      * Sets up the listener for name and date edits.
      */
     private void setupNameEditListener() {
-        tableModel.addTableModelListener(e -> {
-            if (e.getType() == TableModelEvent.UPDATE) {
-                int row = e.getFirstRow();
-                int column = e.getColumn();
-
-                // Validate row index and folder
-                if (row < 0 || row >= tableModel.getRowCount() || currentFolder == null)
-                    return;
-
-                String originalName = originalNames.get(row);
-                String newTableName = (String) tableModel.getValueAt(row, COL_NOMBRE);
-                String dateText = (String) tableModel.getValueAt(row, COL_FECHA);
-
-                // Handle name change
-                if (column == COL_NOMBRE && !originalName.equals(newTableName)) {
-                    handleNameChange(row, originalName, newTableName);
-                    return;
+        tableModel.setCellEditListener(new CatalogTableModel.CellEditListener() {
+            @Override
+            public void onNameEdited(int catalogRow, String newName) {
+                if (currentFolder != null) {
+                    handleNameChange(catalogRow, newName);
                 }
+            }
 
-                // Handle date change
-                if (column == COL_FECHA) {
-                    handleDateChange(originalName, dateText);
+            @Override
+            public void onDateEdited(int catalogRow, String dateText) {
+                if (currentFolder != null) {
+                    handleDateChange(catalogRow, dateText);
                 }
             }
         });
@@ -151,11 +218,13 @@ public class ImageTablePanel extends JPanel {
 
     /**
      * Handles image file renaming.
-     * @param row The table row being edited
-     * @param originalName The original file name
+     * The row shows the new name at once; the file and its XMP sidecar, if any, are renamed on the
+     * write-behind queue, and the row gets its old name back if either rename fails.
+     * @param row The catalog row being edited
      * @param newName The new file name
      */
-    private void handleNameChange(int row, String originalName, String newName) {
+    private void handleNameChange(int row, String newName) {
+        String originalName = catalog.getName(row);
         String extension = "";
         int dotIndex = originalName.lastIndexOf('.');
         if (dotIndex > 0) {
@@ -168,7 +237,15 @@ public class ImageTablePanel extends JPanel {
         File originalFile = new File(currentFolder, originalName);
         File newFile = new File(currentFolder, finalNewName);
 
-        try {
+        if (catalog.indexOf(newFile) >= 0) {
+            JOptionPane.showMessageDialog(this, "Error al renombrar archivo: Ya existe un archivo con ese nombre",
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        catalog.setName(row, finalNewName);
+        tableModel.catalogRowUpdated(row);
+
+        writeQueue.submit(() -> {
             if (!originalFile.exists()) {
                 throw new IOException("El archivo original no existe");
             }
@@ -177,307 +254,641 @@ public class ImageTablePanel extends JPanel {
             }
 
             boolean renamed = originalFile.renameTo(newFile);
+            FileAttributeCache.invalidate(originalFile);
+            FileAttributeCache.invalidate(newFile);
 
-            if (renamed) {
-                originalNames.put(row, finalNewName);
-                
-                if (selectionListener != null) {
-                    selectionListener.onImageRenamed(originalFile, newFile);
+            if (!renamed) {
+                throw new IOException("No se pudo renombrar el archivo");
+            }
+            try {
+                XmpSidecar.move(originalFile, newFile);
+            } catch (IOException e) {
+                // Keep the image and its sidecar together: undo the rename
+                boolean restored = newFile.renameTo(originalFile);
+                FileAttributeCache.invalidate(originalFile);
+                FileAttributeCache.invalidate(newFile);
+                if (!restored) {
+                    System.err.println("No se pudo deshacer el renombrado de " + originalFile.getName());
                 }
-                
+                throw e;
+            }
+            ContentIdentity.moved(originalFile, newFile);
+            ExifReader.moved(originalFile, newFile);
+            FormatSniffer.moved(originalFile.toPath(), newFile.toPath());
+            if (selectionListener != null) {
+                selectionListener.onImageFileMoved(originalFile, newFile);
+            }
+        }, new WriteBehindQueue.Listener() {
+            @Override
+            public void onWritten() {
                 SwingUtilities.invokeLater(() -> {
-                    if (row < tableModel.getRowCount()) {
-                        tableModel.setValueAt(finalNewName, row, COL_NOMBRE);
+                    if (selectionListener != null) {
+                        selectionListener.onImageRenamed(originalFile, newFile);
                     }
                 });
-            } else {
-                throw new IOException("No se pudo renombrar el archivo");
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error al renombrar archivo: " + ex.getMessage(), "Error",
-                    JOptionPane.ERROR_MESSAGE);
 
-            SwingUtilities.invokeLater(() -> {
-                tableModel.setValueAt(originalName, row, COL_NOMBRE);
-            });
-        }
+            @Override
+            public void onFailed(Exception error) {
+                SwingUtilities.invokeLater(() -> {
+                    int current = catalog.indexOf(newFile);
+                    if (current >= 0) {
+                        catalog.setName(current, originalName);
+                        tableModel.catalogRowUpdated(current);
+                    }
+                    JOptionPane.showMessageDialog(ImageTablePanel.this,
+                            "Error al renombrar archivo: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
+            }
+        });
     }
 
     /**
      * Handles modification date changes.
-     * @param fileName The name of the file being modified
+     * The row shows the new date at once and the EXIF capture date and file date are written
+     * on the write-behind queue, where quick successive edits of the same file become one write.
+     * If the write fails, the row goes back to the last date that was written.
+     * @param row The catalog row being edited
      * @param dateText The new date text
      */
-    private void handleDateChange(String fileName, String dateText) {
-        File originalFile = new File(currentFolder, fileName);
-        File tempFile = new File(currentFolder, "temp_" + fileName);
-        File finalFile = new File(currentFolder, fileName);
-
+    private void handleDateChange(int row, String dateText) {
+        LocalDateTime newDate;
         try {
-            LocalDateTime newDate = LocalDateTime.parse(dateText,
-                    DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-
-            MetadataEditor.updateMetadata(originalFile, tempFile, newDate, -1, -1);
+            newDate = LocalDateTime.parse(dateText, DATE_TIME_FORMATTER);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Fecha no válida: " + dateText, "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
 
-            if (!originalFile.delete()) {
-                throw new IOException("No se pudo eliminar el archivo original");
+        File file = catalog.getFile(row);
+        long epoch = ImageCatalog.toEpochMilli(newDate);
+        DateRollback rollback = pendingDateEdits.computeIfAbsent(file,
+                f -> new DateRollback(catalog.getLastModified(row), catalog.getCaptureEpoch(row)));
+        catalog.setLastModified(row, epoch);
+        catalog.setCaptureEpoch(row, epoch);
+        tableModel.catalogRowUpdated(row);
+
+        boolean merged = writeQueue.submit(file, "date", () -> {
+            MetadataEditor.updateCaptureDate(file, newDate);
+            file.setLastModified(epoch);
+            FileAttributeCache.invalidate(file);
+        }, new WriteBehindQueue.Listener() {
+            @Override
+            public void onWritten() {
+                SwingUtilities.invokeLater(() -> {
+                    rollback.modified = epoch;
+                    rollback.capture = epoch;
+                    if (rollback.inFlight == 1) {
+                        showDate(file, epoch, epoch);
+                    }
+                    finishDateEdit(file, rollback);
+                });
             }
 
-            if (!tempFile.renameTo(finalFile)) {
-                throw new IOException("No se pudo renombrar el archivo temporal");
+            @Override
+            public void onFailed(Exception error) {
+                SwingUtilities.invokeLater(() -> {
+                    showDate(file, rollback.modified, rollback.capture);
+                    finishDateEdit(file, rollback);
+                    JOptionPane.showMessageDialog(ImageTablePanel.this,
+                            "Error actualizando metadatos: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                });
             }
+        });
+        if (!merged) {
+            rollback.inFlight++;
+        }
+    }
 
-            finalFile.setLastModified(
-                    newDate.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli());
+    /**
+     * Sets the dates shown in the row of a file, if the file is still listed.
+     * @param file The image file
+     * @param modified Modification time in epoch milliseconds
+     * @param capture Capture date in epoch milliseconds
+     */
+    private void showDate(File file, long modified, long capture) {
+        int row = catalog.indexOf(file);
+        if (row >= 0) {
+            catalog.setLastModified(row, modified);
+            catalog.setCaptureEpoch(row, capture);
+            tableModel.catalogRowUpdated(row);
+        }
+    }
 
-            updateWithFolder(currentFolder);
-            selectImage(finalFile.getName());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error actualizando metadatos: " + ex.getMessage(), "Error",
-                    JOptionPane.ERROR_MESSAGE);
-            updateWithFolder(currentFolder);
+    /**
+     * Forgets the rollback state of a file once none of its date writes is in flight.
+     * @param file The image file
+     * @param rollback The rollback state of the finished write
+     */
+    private void finishDateEdit(File file, DateRollback rollback) {
+        if (--rollback.inFlight == 0) {
+            pendingDateEdits.remove(file, rollback);
+        }
+    }
+
+    /**
+     * Waits for the queued renames and date writes to reach the disk.
+     * Called when the application closes, before the stores the renames update are closed.
+     */
+    public void flushPendingWrites() {
+        try {
+            if (!writeQueue.shutdown(30)) {
+                System.err.println("Quedaron escrituras pendientes sin completar");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
     /**
      * Updates the table with images from the specified folder.
+     * Rows are added as soon as the folder is listed; dimensions are filled in
+     * while the analyzer works through the files. An analysis still running for a
+     * previous folder is cancelled and its pending results are dropped.
+     * The filter query remembered for the folder is applied again.
      * @param folder The folder containing images to display
      */
     public void updateWithFolder(File folder) {
         currentFolder = folder;
-        tableModel.setRowCount(0);
-        originalNames.clear();
+        catalog.clear();
+        lazyExif.clear();
+        searchField.setText("");
+        tableModel.clearView();
+        tableModel.fireTableDataChanged();
+        String savedQuery = folder != null ? folderQueries.getProperty(folder.getAbsolutePath()) : null;
+        CatalogQuery query = null;
+        if (savedQuery != null) {
+            try {
+                query = CatalogQuery.parse(savedQuery);
+            } catch (ParseException e) {
+                System.err.println("Filtro guardado no válido para " + folder + ": " + e.getMessage());
+            }
+        }
+        setQuery(query);
+        pendingSelection = null;
+
+        int generation = ++analysisGeneration;
+        if (analysisWorker != null) {
+            analysisWorker.cancel(true);
+            analysisWorker = null;
+        }
+        synchronized (hashTasks) {
+            for (Future<?> task : hashTasks) {
+                task.cancel(true);
+            }
+            hashTasks.clear();
+        }
 
         if (folder != null && folder.isDirectory()) {
-            SwingWorker<ArrayList<ImageInfo>, Void> worker = new SwingWorker<ArrayList<ImageInfo>, Void>() {
+            FileAttributeCache.watch(folder.toPath());
+            SwingWorker<Void, ImageInfo> worker = new SwingWorker<Void, ImageInfo>() {
                 @Override
-                protected ArrayList<ImageInfo> doInBackground() throws Exception {
-                    return (ArrayList<ImageInfo>) ImageAnalyzer.analyzeFolder(folder);
+                protected Void doInBackground() throws Exception {
+                    List<ImageInfo> listed = ImageAnalyzer.listImages(folder);
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    List<File> samples = new ArrayList<>();
+                    for (ImageInfo img : listed) {
+                        samples.add(img.getFile());
+                    }
+                    DecoderRegistry.warmUpInBackground(samples);
+                    List<Future<?>> hashing = ContentIdentity.computeInBackground(samples);
+                    synchronized (hashTasks) {
+                        if (generation == analysisGeneration) {
+                            hashTasks.addAll(hashing);
+                        } else {
+                            // Another folder was opened meanwhile
+                            hashing.forEach(task -> task.cancel(true));
+                        }
+                    }
+                    listed.sort(Comparator.comparing(ImageInfo::getModificationDate));
+                    publish(listed.toArray(new ImageInfo[0]));
+
+                    ImageAnalyzer.analyzeFolder(folder, info -> {
+                        if (!isCancelled()) {
+                            if (prefetchCaptureDates) {
+                                info.prefetchExif();
+                            }
+                            publish(info);
+                        }
+                    });
+                    return null;
+                }
+
+                @Override
+                protected void process(List<ImageInfo> chunks) {
+                    if (isCancelled() || generation != analysisGeneration) {
+                        return;
+                    }
+                    for (ImageInfo img : chunks) {
+                        addOrUpdateRow(img);
+                    }
+                    if (rowQuery != null || searchMatches != null) {
+                        scheduleViewUpdate();
+                    }
                 }
 
                 @Override
                 protected void done() {
+                    if (isCancelled() || generation != analysisGeneration) {
+                        return;
+                    }
+                    analysisWorker = null;
+                    if (viewRefresh.isRunning()) {
+                        updateView();
+                    }
                     try {
-                        ArrayList<ImageInfo> images = get();
-                        images.sort(Comparator.comparing(img -> img.getFile().lastModified()));
-                        int rowIndex = 0;
-                        for (ImageInfo img : images) {
-                            String fechaModificacion = dateFormat.format(new Date(img.getFile().lastModified()));
-                            tableModel.addRow(new Object[] { img.getName(), img.getWidth(), img.getHeight(),
-                                    img.getFormattedSize(), fechaModificacion });
-                            originalNames.put(rowIndex, img.getName());
-                            rowIndex++;
-                        }
+                        get();
                     } catch (Exception e) {
                         JOptionPane.showMessageDialog(ImageTablePanel.this,
                                 "Error analizando carpeta: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                     }
                 }
             };
+            analysisWorker = worker;
             worker.execute();
         }
     }
 
+    /**
+     * Adds a row for an image, or fills in the dimensions and capture date of the row already listing it.
+     * Images with unknown dimensions (0) are shown with empty width and height. The capture date
+     * is taken only from EXIF fields already read, which the analysis worker prefetches so that
+     * queries on capture dates see every analyzed image; a date edit still being written wins.
+     * @param img The image data to show
+     */
+    private void addOrUpdateRow(ImageInfo img) {
+        int row = catalog.indexOf(img.getFile());
+
+        if (row < 0) {
+            row = catalog.add(img);
+            tableModel.catalogRowAdded(row);
+            if (img.getName().equals(pendingSelection)) {
+                selectImage(img.getName());
+            }
+        } else {
+            if (img.getWidth() > 0) {
+                catalog.setDimensions(row, img.getWidth(), img.getHeight());
+            }
+            if (img.isExifLoaded() && !pendingDateEdits.containsKey(img.getFile())) {
+                LocalDateTime captureDate = img.getCaptureDate();
+                catalog.setCaptureEpoch(row, captureDate != null
+                        ? ImageCatalog.toEpochMilli(captureDate) : ImageCatalog.UNKNOWN_DATE);
+            }
+            tableModel.catalogRowUpdated(row);
+        }
+        if (img.isExifLoaded()) {
+            lazyExif.remove(img.getFile());
+        } else {
+            lazyExif.put(img.getFile(), img);
+        }
+    }
+
+    /**
+     * Reads in the background the EXIF fields the analysis left unread, so that a query on
+     * the capture date sees every image. Rows are updated as the fields arrive.
+     */
+    private void prefetchLazyExif() {
+        if (lazyExif.isEmpty()) {
+            return;
+        }
+        List<ImageInfo> pending = new ArrayList<>(lazyExif.values());
+        int generation = analysisGeneration;
+        new SwingWorker<Void, ImageInfo>() {
+            @Override
+            protected Void doInBackground() {
+                for (ImageInfo info : pending) {
+                    if (generation != analysisGeneration) {
+                        break;
+                    }
+                    info.prefetchExif();
+                    publish(info);
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(List<ImageInfo> chunks) {
+                if (generation != analysisGeneration) {
+                    return;
+                }
+                for (ImageInfo img : chunks) {
+                    // Skip images renamed or moved meanwhile
+                    if (catalog.indexOf(img.getFile()) >= 0) {
+                        addOrUpdateRow(img);
+                    }
+                }
+                scheduleViewUpdate();
+            }
+        }.execute();
+    }
+
     /**
      * Selects an image in the table by name.
+     * If the image is not listed yet, it is selected as soon as its row is added.
      * @param imageName The name of the image to select
      */
     public void selectImage(String imageName) {
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            if (tableModel.getValueAt(i, 0).equals(imageName)) {
-                imageTable.setRowSelectionInterval(i, i);
-                imageTable.scrollRectToVisible(imageTable.getCellRect(i, 0, true));
-                break;
-            }
+        int row = currentFolder != null ? tableModel.toTableRow(catalog.indexOf(new File(currentFolder, imageName))) : -1;
+        if (row >= 0) {
+            pendingSelection = null;
+            imageTable.setRowSelectionInterval(row, row);
+            imageTable.scrollRectToVisible(imageTable.getCellRect(row, 0, true));
+            return;
         }
+        pendingSelection = imageName;
     }
 
     /**
      * Analyzes and displays information about images in the current folder.
+     * The images are listed in modification order straight from the catalog's sorted index,
+     * so the folder is neither read again nor sorted.
      */
     public void analyzeImages() {
         if (currentFolder == null)
             return;
 
-        File[] files = currentFolder.listFiles((dir, name) -> isImageFile(new File(dir, name)));
-        if (files != null) {
-            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
-            StringBuilder result = new StringBuilder("Imágenes ordenadas por fecha:\n");
-
-            for (File f : files) {
-                result.append(f.getName()).append(" - ").append(dateFormat.format(new Date(f.lastModified())))
-                        .append("\n");
-            }
-            JOptionPane.showMessageDialog(this, result.toString());
-        }
+        StringBuilder result = new StringBuilder("Imágenes ordenadas por fecha:\n");
+        catalog.getIndex(CatalogQuery.Field.MODIFIED).forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, row -> {
+            LocalDateTime modified = LocalDateTime.ofInstant(Instant.ofEpochMilli(catalog.getLastModified(row)),
+                    ZoneId.systemDefault());
+            result.append(catalog.getName(row)).append(" - ").append(modified.format(DATE_TIME_FORMATTER))
+                    .append("\n");
+        });
+        JOptionPane.showMessageDialog(this, result.toString());
     }
 
     /**
-     * Shows a dialog for filtering images by various criteria.
+     * Shows a dialog for changing the metadata of many images at once:
+     * shifting or setting the capture date, or removing the GPS position.
+     * Works on the selected images or on the whole folder tree, in the background.
      */
-    public void applyFiltersDialog() {
+    public void batchMetadataDialog() {
         if (currentFolder == null) {
             JOptionPane.showMessageDialog(this, "Carga primero una carpeta con imágenes.");
             return;
         }
 
-        String[] filterFields = { "Fecha (yyyy-MM-dd)", "Tamaño en bytes", "Ancho (px)", "Alto (px)",
-                "Fecha Modificación" };
-        String selectedField = (String) JOptionPane.showInputDialog(this, "Selecciona el campo a filtrar:",
-                "Filtrar imágenes", JOptionPane.QUESTION_MESSAGE, null, filterFields, filterFields[0]);
-        if (selectedField == null)
+        String[] scopes = { "Imágenes seleccionadas", "Carpeta y subcarpetas" };
+        String scope = (String) JOptionPane.showInputDialog(this, "Selecciona las imágenes a modificar:",
+                "Edición en lote", JOptionPane.QUESTION_MESSAGE, null, scopes, scopes[0]);
+        if (scope == null)
             return;
 
-        String[] filterTypes = { "Mayor que", "Menor que", "Igual a" };
-        String selectedType = (String) JOptionPane.showInputDialog(this, "Selecciona el tipo de filtro:",
-                "Tipo de filtro", JOptionPane.QUESTION_MESSAGE, null, filterTypes, filterTypes[0]);
-        if (selectedType == null)
+        String[] operations = { "Desplazar fecha de captura", "Establecer fecha de captura", "Eliminar GPS",
+                "Incrustar XMP pendientes" };
+        String selectedOperation = (String) JOptionPane.showInputDialog(this, "Selecciona la operación:",
+                "Edición en lote", JOptionPane.QUESTION_MESSAGE, null, operations, operations[0]);
+        if (selectedOperation == null)
             return;
 
-        String inputValue = JOptionPane.showInputDialog(this,
-                "Introduce el valor para filtrar (" + selectedField + "):");
-        if (inputValue == null || inputValue.trim().isEmpty())
+        BatchMetadataEditor.Operation operation;
+        try {
+            switch (selectedOperation) {
+            case "Desplazar fecha de captura":
+                String shift = JOptionPane.showInputDialog(this, "Desplazamiento (+/-HH:mm, p. ej. -01:30):");
+                if (shift == null || shift.trim().isEmpty())
+                    return;
+                operation = BatchMetadataEditor.shiftDate(parseShift(shift.trim()));
+                break;
+            case "Establecer fecha de captura":
+                String date = JOptionPane.showInputDialog(this, "Fecha de captura (yyyy-MM-dd HH:mm:ss):");
+                if (date == null || date.trim().isEmpty())
+                    return;
+                operation = BatchMetadataEditor.setDate(LocalDateTime.parse(date.trim(), DATE_TIME_FORMATTER));
+                break;
+            case "Incrustar XMP pendientes":
+                operation = BatchMetadataEditor.embedSidecars();
+                break;
+            default:
+                operation = BatchMetadataEditor.stripGps();
+                break;
+            }
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Valor no válido: " + ex.getMessage(), "Error",
+                    JOptionPane.ERROR_MESSAGE);
             return;
-        inputValue = inputValue.trim();
+        }
 
-        File[] files = currentFolder.listFiles((dir, name) -> isImageFile(new File(dir, name)));
-        if (files == null)
-            files = new File[0];
+        File folder = currentFolder;
+        List<File> selectedFiles = scope.equals(scopes[0]) ? getSelectedFiles() : null;
+        if (selectedFiles != null && selectedFiles.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No hay imágenes seleccionadas.");
+            return;
+        }
 
-        ArrayList<File> filteredFiles = new ArrayList<>();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        ProgressMonitor monitor = new ProgressMonitor(this, selectedOperation, "", 0, 100);
+        SwingWorker<BatchMetadataEditor.BatchResult, Void> worker = new SwingWorker<BatchMetadataEditor.BatchResult, Void>() {
+            @Override
+            protected BatchMetadataEditor.BatchResult doInBackground() throws Exception {
+                BatchMetadataEditor.ProgressListener progress = (done, total, file, error) -> setProgress(done * 100 / total);
+                int poolSize = Runtime.getRuntime().availableProcessors();
+                return selectedFiles != null ? BatchMetadataEditor.run(selectedFiles, operation, poolSize, progress)
+                        : BatchMetadataEditor.run(folder.toPath(), operation, poolSize, progress);
+            }
 
-        for (File f : files) {
-            try {
-                switch (selectedField) {
-                case "Fecha (yyyy-MM-dd)":
-                    Date fileDate = new Date(f.lastModified());
-                    java.util.Date inputDate = sdf.parse(inputValue);
-                    if (applyDateFilter(fileDate, inputDate, selectedType)) {
-                        filteredFiles.add(f);
+            @Override
+            protected void done() {
+                monitor.close();
+                if (isCancelled()) {
+                    JOptionPane.showMessageDialog(ImageTablePanel.this, "Edición en lote cancelada.");
+                } else {
+                    try {
+                        JOptionPane.showMessageDialog(ImageTablePanel.this, "Edición en lote: " + get());
+                    } catch (Exception e) {
+                        JOptionPane.showMessageDialog(ImageTablePanel.this, "Error en la edición en lote: "
+                                + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
                     }
-                    break;
+                }
+                if (folder.equals(currentFolder)) {
+                    updateWithFolder(folder);
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                monitor.setProgress((Integer) e.getNewValue());
+            }
+            if (monitor.isCanceled()) {
+                worker.cancel(true);
+            }
+        });
+        worker.execute();
+    }
 
-                case "Fecha Modificación":
-                    Date modDate = new Date(f.lastModified());
-                    java.util.Date filterDate = dateFormat.parse(inputValue);
-                    if (applyDateFilter(modDate, filterDate, selectedType)) {
-                        filteredFiles.add(f);
-                    }
-                    break;
+    /**
+     * Parses a time shift such as "+02:00" or "-00:45".
+     * @param text The shift in [+|-]HH:mm format
+     * @return The shift as a duration
+     */
+    private static Duration parseShift(String text) {
+        boolean negative = text.startsWith("-");
+        String[] parts = text.replaceFirst("^[+-]", "").split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException(text);
+        }
+        Duration shift = Duration.ofHours(Long.parseLong(parts[0])).plusMinutes(Long.parseLong(parts[1]));
+        return negative ? shift.negated() : shift;
+    }
 
-                case "Tamaño en bytes":
-                    long size = f.length();
-                    long sizeInput = Long.parseLong(inputValue);
-                    if (applyNumericFilter(size, sizeInput, selectedType)) {
-                        filteredFiles.add(f);
-                    }
-                    break;
-
-                case "Ancho (px)":
-                    BufferedImage imgW = ImageIO.read(f);
-                    if (imgW != null) {
-                        int width = imgW.getWidth();
-                        int widthInput = Integer.parseInt(inputValue);
-                        if (applyNumericFilter(width, widthInput, selectedType)) {
-                            filteredFiles.add(f);
-                        }
-                    }
-                    break;
-
-                case "Alto (px)":
-                    BufferedImage imgH = ImageIO.read(f);
-                    if (imgH != null) {
-                        int height = imgH.getHeight();
-                        int heightInput = Integer.parseInt(inputValue);
-                        if (applyNumericFilter(height, heightInput, selectedType)) {
-                            filteredFiles.add(f);
-                        }
-                    }
-                    break;
-                }
-            } catch (Exception ex) {
-                // Silently ignore errors for individual files
+    /**
+     * Gets the files of the rows selected in the table.
+     * @return The selected image files, in table order
+     */
+    public List<File> getSelectedFiles() {
+        List<File> files = new ArrayList<>();
+        for (int row : imageTable.getSelectedRows()) {
+            files.add(catalog.getFile(tableModel.toCatalogRow(row)));
+        }
+        return files;
+    }
+
+    /**
+     * Shows a dialog for filtering images with a query such as
+     * {@code width>4000 AND date>=2024-01-01 AND (name~"IMG_" OR size<2MB)}.
+     * The query is parsed once and evaluated on the catalog, so applying it reads no file; images
+     * whose dimensions are not known yet are left out of width and height comparisons until they are.
+     * The query is remembered for the folder and applied again the next time it is opened.
+     */
+    public void applyFiltersDialog() {
+        if (currentFolder == null) {
+            JOptionPane.showMessageDialog(this, "Carga primero una carpeta con imágenes.");
+            return;
+        }
+
+        String text = rowQuery != null ? rowQuery.getText() : folderQueries.getProperty(currentFolder.getAbsolutePath(), "");
+        while (true) {
+            text = (String) JOptionPane.showInputDialog(this, QUERY_HELP, "Filtrar imágenes",
+                    JOptionPane.QUESTION_MESSAGE, null, null, text);
+            if (text == null)
+                return;
+            if (text.trim().isEmpty()) {
+                clearFilters();
+                return;
+            }
+            try {
+                setQuery(CatalogQuery.parse(text.trim()));
+                break;
+            } catch (ParseException ex) {
+                JOptionPane.showMessageDialog(this, "Consulta no válida: " + ex.getMessage(),
+                        "Error", JOptionPane.ERROR_MESSAGE);
             }
         }
+        folderQueries.setProperty(currentFolder.getAbsolutePath(), rowQuery.getText());
+        saveFolderQueries();
+    }
 
-        updateTableWithFilteredFiles(filteredFiles);
+    /**
+     * Removes the filter applied with {@link #applyFiltersDialog()} and forgets it for the current folder.
+     * The description search stays.
+     */
+    public void clearFilters() {
+        setQuery(null);
+        if (currentFolder != null && folderQueries.remove(currentFolder.getAbsolutePath()) != null) {
+            saveFolderQueries();
+        }
     }
 
     /**
-     * Applies date filter comparison.
-     * @param fileDate The file's date
-     * @param filterDate The filter date
-     * @param filterType The type of comparison
-     * @return true if the file matches the filter
+     * Sets the query that filters the rows and shows it in the panel title.
+     * @param query The query, or null to show every row
      */
-    private boolean applyDateFilter(Date fileDate, Date filterDate, String filterType) {
-        switch (filterType) {
-        case "Mayor que":
-            return fileDate.after(filterDate);
-        case "Menor que":
-            return fileDate.before(filterDate);
-        case "Igual a":
-            SimpleDateFormat dayFormat = new SimpleDateFormat("yyyy-MM-dd");
-            return dayFormat.format(fileDate).equals(dayFormat.format(filterDate));
-        default:
-            return false;
+    private void setQuery(CatalogQuery query) {
+        rowQuery = query;
+        prefetchCaptureDates = query != null
+                && (query.uses(CatalogQuery.Field.CAPTURED) || query.uses(CatalogQuery.Field.DATE));
+        if (prefetchCaptureDates) {
+            prefetchLazyExif();
         }
+        setBorder(BorderFactory.createTitledBorder(query != null
+                ? "Listado de imágenes (filtro: " + query.getText() + ")" : "Listado de imágenes"));
+        updateView();
     }
 
     /**
-     * Applies numeric filter comparison.
-     * @param value The value to check
-     * @param filterValue The filter value
-     * @param filterType The type of comparison
-     * @return true if the value matches the filter
+     * Sets the file where the query of each folder is remembered and loads it.
+     * @param file The properties file; it is created when the first query is saved
      */
-    private boolean applyNumericFilter(long value, long filterValue, String filterType) {
-        switch (filterType) {
-        case "Mayor que":
-            return value > filterValue;
-        case "Menor que":
-            return value < filterValue;
-        case "Igual a":
-            return value == filterValue;
-        default:
-            return false;
+    public void setFolderQueriesFile(File file) {
+        folderQueriesFile = file;
+        folderQueries.clear();
+        if (!file.isFile()) {
+            return;
+        }
+        try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            folderQueries.load(in);
+        } catch (IOException e) {
+            System.err.println("Error cargando los filtros guardados: " + e.getMessage());
         }
     }
 
     /**
-     * Updates the table with filtered files.
-     * @param filteredFiles The list of files to display
+     * Writes the remembered folder queries, replacing the previous file atomically.
      */
-    private void updateTableWithFilteredFiles(ArrayList<File> filteredFiles) {
-        tableModel.setRowCount(0);
-        for (File f : filteredFiles) {
+    private void saveFolderQueries() {
+        if (folderQueriesFile == null) {
+            return;
+        }
+        Path target = folderQueriesFile.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                folderQueries.store(out, "Filtros por carpeta");
+            }
             try {
-                BufferedImage img = ImageIO.read(f);
-                if (img != null) {
-                    String modificationDate = dateFormat.format(new Date(f.lastModified()));
-                    tableModel.addRow(new Object[] { f.getName(), img.getWidth(), img.getHeight(),
-                            formatFileSize(f.length()), modificationDate });
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Error guardando los filtros: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Refreshes the view shortly, together with any other refresh requested meanwhile, so that
+     * results streaming in chunks do not re-run the filter for each chunk.
+     */
+    private void scheduleViewUpdate() {
+        if (!viewRefresh.isRunning()) {
+            viewRefresh.start();
+        }
+    }
+
+    /**
+     * Shows the catalog rows that pass both the filter and the description search.
+     * Works only on data already in the catalog, so it never touches the disk; large catalogs
+     * are narrowed down with the catalog's sorted indexes and filtered in parallel chunks.
+     * A refresh still scheduled is done by this call.
+     */
+    private void updateView() {
+        viewRefresh.stop();
+        if (rowQuery == null && searchMatches == null) {
+            tableModel.clearView();
+            return;
+        }
+        int[] rows = rowQuery != null ? rowQuery.select(catalog) : CatalogQuery.select(catalog, row -> true);
+        if (searchMatches != null) {
+            int count = 0;
+            for (int row : rows) {
+                if (matchesSearch(row)) {
+                    rows[count++] = row;
                 }
-            } catch (Exception ex) {
-                // Silently ignore errors for individual files
             }
+            rows = Arrays.copyOf(rows, count);
         }
+        tableModel.setView(rows);
     }
 
     /**
-     * Formats file size in human-readable format.
-     * @param size The size in bytes
-     * @return Formatted size string
+     * Checks whether the description of a catalog row matches the current search.
+     * @param row The catalog row
+     * @return true if its description matches
      */
-    private String formatFileSize(long size) {
-        if (size < 1024)
-            return size + " B";
-        int exp = (int) (Math.log(size) / Math.log(1024));
-        char pre = "KMGTPE".charAt(exp - 1);
-        return String.format("%.1f %sB", size / Math.pow(1024, exp), pre);
+    private boolean matchesSearch(int row) {
+        File file = catalog.getFile(row);
+        return searchMatches.contains(ContentIdentity.keyFor(file)) || searchMatches.contains(file.getAbsolutePath());
     }
 
     /**
@@ -513,7 +924,16 @@ public class ImageTablePanel extends JPanel {
         void onImageSelected(File imageFile);
 
         /**
-         * Called when an image is renamed.
+         * Called on the write-behind I/O thread right after an image file is renamed, before the
+         * next queued write runs. Data kept by file is moved here, so it is moved even when the
+         * application closes before the event thread gets to {@link #onImageRenamed}.
+         * @param oldFile The original file
+         * @param newFile The renamed file
+         */
+        void onImageFileMoved(File oldFile, File newFile);
+
+        /**
+         * Called on the event dispatch thread when an image is renamed.
          * @param oldFile The original file
          * @param newFile The renamed file
          */
@@ -521,18 +941,21 @@ public class ImageTablePanel extends JPanel {
     }
 
     /**
-     * Checks if a file is an image by its extension.
-     * @param file The file to check
-     * @return true if the file is an image
+     * Dates a row had before its pending date writes, restored if they fail.
      */
-    private static boolean isImageFile(File file) {
-        String[] imageExtensions = { "jpg", "jpeg", "png", "gif", "bmp", "tiff", "webp" };
-        String fileName = file.getName().toLowerCase();
-        for (String ext : imageExtensions) {
-            if (fileName.endsWith(ext)) {
-                return true;
-            }
+    private static class DateRollback {
+        private long modified;
+        private long capture;
+        private int inFlight;
+
+        /**
+         * Creates the rollback state of a file.
+         * @param modified Modification time last written, in epoch milliseconds
+         * @param capture Capture date last written, in epoch milliseconds
+         */
+        DateRollback(long modified, long capture) {
+            this.modified = modified;
+            this.capture = capture;
         }
-        return false;
     }
-}
\ No newline at end of file
+}
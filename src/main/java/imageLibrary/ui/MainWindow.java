@@ -6,6 +6,9 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
+import imageLibrary.analyzer.DecoderRegistry;
+import imageLibrary.util.ContentIdentity;
+import imageLibrary.util.XmpSidecar;
 
 /**
  * Main application window for the Image Library system.
@@ -16,7 +19,11 @@ import java.io.IOException;
  * Handles file operations, description persistence, and component coordination.
  */
 public class MainWindow extends JFrame {
-    private static final File DESCRIPTIONS_FILE = new File("image_descriptions.dat");
+    private static final File DESCRIPTIONS_FILE = new File("image_descriptions.log");
+    private static final File LEGACY_DESCRIPTIONS_FILE = new File("image_descriptions.dat");
+    private static final File DESCRIPTION_INDEX_FILE = new File("image_descriptions.idx");
+    private static final File IDENTITIES_FILE = new File("image_identities.dat");
+    private static final File FOLDER_QUERIES_FILE = new File("image_queries.properties");
     private ImageTablePanel imageTablePanel;
     private FolderExplorerPanel folderExplorerPanel;
     private ImagePreviewPanel imagePreviewPanel;
@@ -52,7 +59,8 @@ public class MainWindow extends JFrame {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-            	saveDescriptionsOnExit();
+                imageTablePanel.flushPendingWrites();
+                saveDescriptionsOnExit();
                 dispose();
                 System.exit(0);
             }
@@ -87,22 +95,30 @@ public class MainWindow extends JFrame {
     }
     
     /**
-     * Loads image descriptions from disk when application starts.
+     * Opens the image description store when application starts and lets the table search it.
+     * Also loads the content identities computed in earlier sessions and the filters remembered per folder.
      */
     private void loadDescriptionsOnStart() {
+        imageTablePanel.setFolderQueriesFile(FOLDER_QUERIES_FILE);
         try {
-            imagePreviewPanel.loadDescriptionsFromDisk(DESCRIPTIONS_FILE);
+            imagePreviewPanel.openDescriptionStore(DESCRIPTIONS_FILE, LEGACY_DESCRIPTIONS_FILE, DESCRIPTION_INDEX_FILE);
+            imageTablePanel.setDescriptionIndex(imagePreviewPanel.getDescriptionIndex());
+            ContentIdentity.load(IDENTITIES_FILE);
         } catch (Exception e) {
             System.err.println("Error cargando descripciones: " + e.getMessage());
         }
     }
 
     /**
-     * Saves image descriptions to disk when application closes.
+     * Closes the image description store when application closes.
+     * Descriptions are written as they are saved, so only the search index and the content
+     * identities are left to save. Called after the queued renames have finished, since they
+     * move descriptions and identities.
      */
     private void saveDescriptionsOnExit() {
         try {
-            imagePreviewPanel.saveDescriptionsToDisk(DESCRIPTIONS_FILE);
+            imagePreviewPanel.closeDescriptionStore();
+            ContentIdentity.save(IDENTITIES_FILE);
         } catch (IOException ex) {
             System.err.println("Error guardando descripciones: " + ex.getMessage());
         }
@@ -134,9 +150,15 @@ public class MainWindow extends JFrame {
                 imagePreviewPanel.displayImage(imageFile);
             }
             
+            @Override
+            public void onImageFileMoved(File oldFile, File newFile) {
+                imagePreviewPanel.moveDescription(oldFile, newFile);
+            }
+
             @Override
             public void onImageRenamed(File oldFile, File newFile) {
                 folderExplorerPanel.updateImageName(oldFile, newFile);
+                imagePreviewPanel.imageRenamed(oldFile, newFile);
             }
         });
         
@@ -170,11 +192,19 @@ public class MainWindow extends JFrame {
         JMenuItem applyFiltersItem = new JMenuItem("Aplicar Filtros");
         applyFiltersItem.addActionListener(e -> imageTablePanel.applyFiltersDialog());
         
+        JMenuItem clearFiltersItem = new JMenuItem("Quitar Filtros");
+        clearFiltersItem.addActionListener(e -> imageTablePanel.clearFilters());
+        
+        JMenuItem batchMetadataItem = new JMenuItem("Editar metadatos en lote");
+        batchMetadataItem.addActionListener(e -> imageTablePanel.batchMetadataDialog());
+        
         fileMenu.add(loadFolderItem);
         fileMenu.add(createFolderItem);
         fileMenu.add(createImageItem);
         fileMenu.add(analyzeImagesItem);
         fileMenu.add(applyFiltersItem);
+        fileMenu.add(clearFiltersItem);
+        fileMenu.add(batchMetadataItem);
         
         JMenu viewMenu = new JMenu("Vista");
         JMenuItem toggleViewItem = new JMenuItem("Mostrar solo carpetas");
@@ -185,6 +215,20 @@ public class MainWindow extends JFrame {
         });
         viewMenu.add(toggleViewItem);
         
+        JMenuItem decoderStatsItem = new JMenuItem("Estadísticas de decodificación");
+        decoderStatsItem.addActionListener(e -> {
+            JTextArea report = new JTextArea(DecoderRegistry.getReport(), 20, 70);
+            report.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(report), "Decodificadores",
+                    JOptionPane.INFORMATION_MESSAGE);
+        });
+        viewMenu.add(decoderStatsItem);
+        
+        JCheckBoxMenuItem sidecarItem = new JCheckBoxMenuItem("Guardar metadatos en archivos XMP",
+                XmpSidecar.isEnabled());
+        sidecarItem.addActionListener(e -> XmpSidecar.setEnabled(sidecarItem.isSelected()));
+        viewMenu.add(sidecarItem);
+        
         menuBar.add(fileMenu);
         menuBar.add(viewMenu); 
         
@@ -0,0 +1,406 @@
+package imageLibrary.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+import org.apache.commons.imaging.ImageWriteException;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputField;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.analyzer.FormatSniffer;
+import imageLibrary.analyzer.ImageAnalyzer;
+import imageLibrary.analyzer.ImageFormat;
+import imageLibrary.analyzer.ScanOptions;
+import imageLibrary.analyzer.ScanReport;
+import imageLibrary.model.ExifData;
+
+/**
+ * Applies one metadata operation to many JPEG files in parallel.
+ * Supported operations shift the capture date, set it, strip the GPS position, or embed
+ * the XMP sidecars into their images.
+ * Every file goes through the lossless ExifRewriter path, so pixels are never re-encoded,
+ * and is written to a uniquely named temporary file that replaces the original with an atomic move.
+ * The modification time of each file is kept. Date changes go to the XMP sidecar instead
+ * when sidecar mode is on or the image already has one (see {@link XmpSidecar}).
+ */
+public class BatchMetadataEditor {
+
+    private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    /**
+     * Creates an operation that moves the capture date of every file by the same amount.
+     * Files without a capture date are skipped.
+     * @param shift The amount to add to the capture date, negative to move it back
+     * @return The operation
+     */
+    public static Operation shiftDate(Duration shift) {
+        return new DateOperation(date -> date != null ? date.plus(shift) : null);
+    }
+
+    /**
+     * Creates an operation that sets the same capture date on every file.
+     * @param captureDate The capture date to set
+     * @return The operation
+     */
+    public static Operation setDate(LocalDateTime captureDate) {
+        return new DateOperation(date -> captureDate);
+    }
+
+    /**
+     * Creates an operation that removes every GPS field.
+     * Files without GPS fields are skipped.
+     * @return The operation
+     */
+    public static Operation stripGps() {
+        return (file, outputSet, current) -> {
+            TiffOutputDirectory gps = outputSet.getGPSDirectory();
+            if (gps == null || gps.getFields().isEmpty()) {
+                return false;
+            }
+            for (TiffOutputField field : new ArrayList<>(gps.getFields())) {
+                gps.removeField(field.tag);
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Creates an operation that writes the fields of each XMP sidecar into its image and then
+     * deletes the sidecar. Images without a sidecar are skipped.
+     * @return The operation
+     */
+    public static Operation embedSidecars() {
+        return new Operation() {
+            @Override
+            public boolean apply(File file, TiffOutputSet outputSet, ExifData current) throws Exception {
+                XmpSidecar sidecar = XmpSidecar.read(file);
+                if (sidecar == null) {
+                    return false;
+                }
+                if (sidecar.getCaptureDate() != null) {
+                    setCaptureDate(outputSet, sidecar.getCaptureDate());
+                }
+                if (sidecar.getDescription() != null) {
+                    TiffOutputDirectory exifDirectory = outputSet.getOrCreateExifDirectory();
+                    exifDirectory.removeField(ExifTagConstants.EXIF_TAG_DEVICE_SETTING_DESCRIPTION);
+                    exifDirectory.add(ExifTagConstants.EXIF_TAG_DEVICE_SETTING_DESCRIPTION,
+                            sidecar.getDescription().getBytes(StandardCharsets.UTF_8));
+                }
+                return true;
+            }
+
+            @Override
+            public void written(File file) throws IOException {
+                XmpSidecar.delete(file);
+            }
+        };
+    }
+
+    /**
+     * Lists the JPEG files of a folder and all its subfolders.
+     * Subfolders are walked in parallel; entries that cannot be read are reported and skipped.
+     * @param root The folder to walk
+     * @return The JPEG files found, by content rather than by extension, sorted by path
+     * @throws IOException if the folder itself cannot be read
+     */
+    public static List<File> listJpegFiles(Path root) throws IOException {
+        List<File> files = new ArrayList<>();
+        listJpegFiles(root, files);
+        return files;
+    }
+
+    /**
+     * Lists the JPEG files of a folder and all its subfolders.
+     * @param root The folder to walk
+     * @param files Receives the JPEG files found, sorted by path
+     * @return The report of the walk, counting the entries that could not be read
+     * @throws IOException if the folder itself cannot be read
+     */
+    private static ScanReport listJpegFiles(Path root, List<File> files) throws IOException {
+        List<File> found = Collections.synchronizedList(new ArrayList<>());
+        ScanReport report = ImageAnalyzer.walkTree(root, new ScanOptions(), (file, attrs) -> {
+            if (FormatSniffer.detect(file, attrs.lastModifiedTime().toMillis()) == ImageFormat.JPEG) {
+                found.add(file.toFile());
+            }
+        });
+        files.addAll(found);
+        Collections.sort(files);
+        return report;
+    }
+
+    /**
+     * Runs an operation over the JPEG files of a folder and all its subfolders.
+     * Entries that cannot be read while walking the folder are counted as failed files.
+     * @param root The folder to walk
+     * @param operation The operation to apply
+     * @param poolSize Number of files modified at the same time
+     * @param listener Listener notified after each file, from the worker threads; may be null
+     * @return Counts of modified, skipped and failed files
+     * @throws IOException if the folder itself cannot be read
+     * @throws InterruptedException if the batch is cancelled
+     */
+    public static BatchResult run(Path root, Operation operation, int poolSize, ProgressListener listener)
+            throws IOException, InterruptedException {
+        List<File> files = new ArrayList<>();
+        ScanReport report = listJpegFiles(root, files);
+        BatchResult result = run(files, operation, poolSize, listener);
+        result.failed.addAndGet((int) report.getFailures());
+        return result;
+    }
+
+    /**
+     * Runs an operation over a set of files on a worker pool.
+     * Files that are not JPEG, or that the operation has nothing to do on, are skipped.
+     * The thread calling this method waits for the whole batch; interrupting it cancels the
+     * files not started yet.
+     * @param files The files to modify
+     * @param operation The operation to apply
+     * @param poolSize Number of files modified at the same time
+     * @param listener Listener notified after each file, from the worker threads; may be null
+     * @return Counts of modified, skipped and failed files
+     * @throws InterruptedException if the batch is cancelled
+     */
+    public static BatchResult run(List<File> files, Operation operation, int poolSize, ProgressListener listener)
+            throws InterruptedException {
+        BatchResult result = new BatchResult();
+        AtomicInteger done = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, poolSize));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File file : files) {
+                futures.add(executor.submit(() -> {
+                    Exception error = null;
+                    try {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return;
+                        }
+                        if (apply(file, operation)) {
+                            result.modified.incrementAndGet();
+                        } else {
+                            result.skipped.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        error = e;
+                        result.failed.incrementAndGet();
+                        System.err.println("Error al editar metadatos de " + file.getName() + ": " + e.getMessage());
+                    }
+                    if (listener != null) {
+                        listener.onFileProcessed(done.incrementAndGet(), files.size(), file, error);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Errors are counted by the task itself
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * Applies an operation to one file.
+     * @param file The file to modify
+     * @param operation The operation to apply
+     * @return true if the file was modified, false if it was skipped
+     * @throws Exception if the file cannot be read or rewritten
+     */
+    private static boolean apply(File file, Operation operation) throws Exception {
+        if (FormatSniffer.detect(file) != ImageFormat.JPEG) {
+            return false;
+        }
+        long lastModified = FileAttributeCache.lastModified(file);
+        ExifData current = XmpSidecar.overlay(file, ExifReader.get(file, lastModified));
+        if (operation instanceof DateOperation
+                && (XmpSidecar.isEnabled() || FileAttributeCache.isFile(XmpSidecar.fileFor(file)))) {
+            LocalDateTime captureDate = ((DateOperation) operation).change.apply(current.getCaptureDate());
+            if (captureDate == null) {
+                return false;
+            }
+            XmpSidecar.write(file, captureDate, null);
+            ExifReader.forget(file);
+            return true;
+        }
+
+        TiffOutputSet outputSet = null;
+        ImageMetadata metadata = MetadataEditor.readMetadata(file);
+        if (metadata instanceof JpegImageMetadata) {
+            TiffImageMetadata exif = ((JpegImageMetadata) metadata).getExif();
+            if (exif != null) {
+                outputSet = exif.getOutputSet();
+            }
+        }
+        if (outputSet == null) {
+            outputSet = new TiffOutputSet();
+        }
+        if (!operation.apply(file, outputSet, current)) {
+            return false;
+        }
+
+        Path path = file.toPath();
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                new ExifRewriter().updateExifMetadataLossless(file, out, outputSet);
+            }
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(lastModified));
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            ExifReader.forget(file);
+            FileAttributeCache.invalidate(file);
+        }
+        operation.written(file);
+        return true;
+    }
+
+    /**
+     * Replaces the DateTimeOriginal field of an output set.
+     * @param outputSet The metadata to modify
+     * @param captureDate The new capture date
+     * @throws ImageWriteException if the field cannot be written
+     */
+    private static void setCaptureDate(TiffOutputSet outputSet, LocalDateTime captureDate) throws ImageWriteException {
+        TiffOutputDirectory exifDirectory = outputSet.getOrCreateExifDirectory();
+        exifDirectory.removeField(ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL);
+        exifDirectory.add(ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL, captureDate.format(EXIF_DATE_FORMAT));
+    }
+
+    /**
+     * A metadata change applied to each file of a batch.
+     */
+    public interface Operation {
+        /**
+         * Changes the metadata of one file.
+         * @param file The file being modified
+         * @param outputSet The current metadata of the file, to be modified
+         * @param current The EXIF fields currently in the file, with its sidecar merged in
+         * @return true if the file has to be written, false to skip it
+         * @throws Exception if the metadata cannot be read or modified
+         */
+        boolean apply(File file, TiffOutputSet outputSet, ExifData current) throws Exception;
+
+        /**
+         * Called once the file has been rewritten.
+         * @param file The rewritten file
+         * @throws IOException if the follow-up work fails
+         */
+        default void written(File file) throws IOException {
+        }
+    }
+
+    /**
+     * An operation that only changes the capture date, which can also be written to a sidecar.
+     */
+    private static class DateOperation implements Operation {
+        private final UnaryOperator<LocalDateTime> change;
+
+        /**
+         * Creates a date operation.
+         * @param change Computes the new capture date from the current one (which may be null);
+         *        returns null to skip the file
+         */
+        DateOperation(UnaryOperator<LocalDateTime> change) {
+            this.change = change;
+        }
+
+        @Override
+        public boolean apply(File file, TiffOutputSet outputSet, ExifData current) throws Exception {
+            LocalDateTime captureDate = change.apply(current.getCaptureDate());
+            if (captureDate == null) {
+                return false;
+            }
+            setCaptureDate(outputSet, captureDate);
+            return true;
+        }
+    }
+
+    /**
+     * Interface for following the progress of a batch.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each file, whatever the outcome.
+         * @param done Number of files processed so far
+         * @param total Number of files in the batch
+         * @param file The file just processed
+         * @param error The error that made the file fail, or null
+         */
+        void onFileProcessed(int done, int total, File file, Exception error);
+    }
+
+    /**
+     * Outcome of a batch.
+     */
+    public static class BatchResult {
+        private final AtomicInteger modified = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+
+        /**
+         * Gets the number of files rewritten.
+         * @return The modified file count
+         */
+        public int getModified() {
+            return modified.get();
+        }
+
+        /**
+         * Gets the number of files left untouched.
+         * @return The skipped file count
+         */
+        public int getSkipped() {
+            return skipped.get();
+        }
+
+        /**
+         * Gets the number of files that could not be modified, or not even read while listing a folder.
+         * @return The failed file count
+         */
+        public int getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Returns a summary of the batch.
+         * @return The counts in a readable form
+         */
+        @Override
+        public String toString() {
+            return getModified() + " modificadas, " + getSkipped() + " sin cambios, " + getFailed() + " con errores";
+        }
+    }
+}
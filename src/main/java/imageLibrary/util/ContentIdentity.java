@@ -0,0 +1,400 @@
+package imageLibrary.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Identity of an image based on its content, so that data attached to it follows the image when
+ * the file is renamed or moved.
+ * The identity is a fast 64-bit non-cryptographic hash of the file. For JPEG files the metadata
+ * segments (APPn and COM) are left out, so editing the capture date or the EXIF description does
+ * not change it. Hashes are computed on background threads and remembered with the path, size and
+ * modification time of the file; a file is hashed again only when its size or modification time
+ * changes. Identical copies of an image share the same identity, and therefore the same
+ * description: describing one copy describes them all.
+ */
+public class ContentIdentity {
+    private static final String KEY_PREFIX = "content:";
+    private static final int MAGIC = 0x43494431;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+    private static final Set<String> QUEUED = ConcurrentHashMap.newKeySet();
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+    private static final ExecutorService HASHERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1), runnable -> {
+                Thread thread = new Thread(runnable, "content-hasher");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+
+    /**
+     * Gets the key under which data about an image is stored.
+     * @param file The image file
+     * @return The content key if the file has been hashed at its current size and modification time,
+     *         otherwise its absolute path
+     */
+    public static String keyFor(File file) {
+        String contentKey = contentKey(file);
+        return contentKey != null ? contentKey : file.getAbsolutePath();
+    }
+
+    /**
+     * Gets the content key of an image if it is already known. Never reads the file.
+     * @param file The image file
+     * @return The content key, or null if the file has not been hashed at its current state
+     */
+    public static String contentKey(File file) {
+        Entry entry = CACHE.get(file.getAbsolutePath());
+        if (entry == null || entry.size != FileAttributeCache.size(file)
+                || entry.lastModified != FileAttributeCache.lastModified(file)) {
+            return null;
+        }
+        return toKey(entry.hash);
+    }
+
+    /**
+     * Hashes, on background threads, the files whose identity is not known yet.
+     * Listeners are notified, on the hashing threads, as each hash is computed. A file that
+     * changes while it is being hashed is not recorded; it is hashed again on a later request.
+     * @param files The image files
+     * @return One task per file queued for hashing; cancelling a task drops the file from the
+     *         queue, or interrupts its hashing if it already started
+     */
+    public static List<Future<?>> computeInBackground(List<File> files) {
+        List<Future<?>> tasks = new ArrayList<>();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            if (contentKey(file) != null || !QUEUED.add(path)) {
+                continue;
+            }
+            FutureTask<Void> task = new FutureTask<Void>(() -> {
+                try {
+                    long size = FileAttributeCache.size(file);
+                    long lastModified = FileAttributeCache.lastModified(file);
+                    long hash = hash(file);
+                    BasicFileAttributes after = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                    if (after.size() != size || after.lastModifiedTime().toMillis() != lastModified) {
+                        return;
+                    }
+                    CACHE.put(path, new Entry(size, lastModified, hash));
+                    for (Listener listener : LISTENERS) {
+                        listener.onIdentityComputed(file, toKey(hash));
+                    }
+                } catch (ClosedByInterruptException e) {
+                    // The task was cancelled while the file was being read
+                } catch (IOException e) {
+                    System.err.println("Error calculando la huella de " + file.getName() + ": " + e.getMessage());
+                }
+            }, null) {
+                @Override
+                protected void done() {
+                    // Also runs when the task is cancelled before it starts
+                    QUEUED.remove(path);
+                }
+            };
+            HASHERS.execute(task);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    /**
+     * Records that a file was renamed or moved by the application, keeping its identity.
+     * @param from The old file
+     * @param to The new file
+     */
+    public static void moved(File from, File to) {
+        Entry entry = CACHE.remove(from.getAbsolutePath());
+        if (entry != null) {
+            CACHE.put(to.getAbsolutePath(), entry);
+        }
+    }
+
+    /**
+     * Hashes a file the application has just rewritten and records its new identity at once,
+     * so data keyed by the old content can be moved to the new one.
+     * @param file The rewritten file
+     * @return The new content key of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static String rehash(File file) throws IOException {
+        FileAttributeCache.invalidate(file);
+        long size = FileAttributeCache.size(file);
+        long lastModified = FileAttributeCache.lastModified(file);
+        long hash = hash(file);
+        CACHE.put(file.getAbsolutePath(), new Entry(size, lastModified, hash));
+        return toKey(hash);
+    }
+
+    /**
+     * Checks whether any known file still has a given content.
+     * @param contentKey The content key
+     * @return true if some file was last hashed with that content
+     */
+    public static boolean isShared(String contentKey) {
+        for (Entry entry : CACHE.values()) {
+            if (toKey(entry.hash).equals(contentKey)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a listener notified when the identity of a file is computed.
+     * @param listener The listener
+     */
+    public static void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * Computes the content hash of a file, leaving out the metadata segments of JPEG files.
+     * @param file The file
+     * @return The 64-bit hash
+     * @throws IOException if the file cannot be read
+     */
+    public static long hash(File file) throws IOException {
+        Hasher hasher = new Hasher();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long start = pixelDataStart(channel, hasher);
+            for (long position = start; ; ) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    break;
+                }
+                buffer.flip();
+                hasher.update(buffer);
+                position += read;
+            }
+        }
+        return hasher.finish();
+    }
+
+    /**
+     * Loads the identities saved by a previous session.
+     * @param file The file written by {@link #save}
+     * @throws IOException if the file exists but cannot be read
+     */
+    public static void load(File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Formato de huellas no reconocido: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                CACHE.putIfAbsent(path, new Entry(in.readLong(), in.readLong(), in.readLong()));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Archivo de huellas truncado: " + file, e);
+        }
+    }
+
+    /**
+     * Saves the known identities for the next session.
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Map<String, Entry> snapshot = Map.copyOf(CACHE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().size);
+                out.writeLong(entry.getValue().lastModified);
+                out.writeLong(entry.getValue().hash);
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Builds the key of a content hash.
+     * @param hash The hash
+     * @return The key
+     */
+    private static String toKey(long hash) {
+        String hex = Long.toHexString(hash);
+        return KEY_PREFIX + "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Hashes the non-metadata segments of a JPEG file up to its image data.
+     * @param channel The open file
+     * @param hasher The hasher to feed
+     * @return The position where the rest of the file has to be hashed from: the start of the
+     *         scan for a JPEG file, or 0 for any other file
+     * @throws IOException if the file cannot be read
+     */
+    private static long pixelDataStart(FileChannel channel, Hasher hasher) throws IOException {
+        ByteBuffer marker = ByteBuffer.allocate(4);
+        if (channel.read(marker, 0) < 2 || (marker.get(0) & 0xFF) != 0xFF || (marker.get(1) & 0xFF) != 0xD8) {
+            return 0;
+        }
+        long position = 2;
+        while (true) {
+            marker.clear();
+            if (channel.read(marker, position) < 4 || (marker.get(0) & 0xFF) != 0xFF) {
+                return position;
+            }
+            int type = marker.get(1) & 0xFF;
+            if (type == 0xFF) {
+                position++; // fill byte
+                continue;
+            }
+            if (type == 0xDA || type == 0xD9) {
+                return position;
+            }
+            int length = marker.getShort(2) & 0xFFFF;
+            boolean metadata = (type >= 0xE0 && type <= 0xEF) || type == 0xFE;
+            if (!metadata) {
+                ByteBuffer segment = ByteBuffer.allocate(2 + length);
+                channel.read(segment, position);
+                segment.flip();
+                hasher.update(segment);
+            }
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * Interface for following the computation of identities.
+     */
+    public interface Listener {
+        /**
+         * Called on a hashing thread when the identity of a file has been computed.
+         * @param file The image file
+         * @param contentKey The content key of the file
+         */
+        void onIdentityComputed(File file, String contentKey);
+    }
+
+    /**
+     * Hash of a file at a given size and modification time.
+     */
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long hash;
+
+        /**
+         * Creates an entry.
+         * @param size Size of the file in bytes
+         * @param lastModified Modification time of the file in milliseconds
+         * @param hash Content hash of the file
+         */
+        Entry(long size, long lastModified, long hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Streaming 64-bit hash working on 8-byte words, with a murmur-style finalizer.
+     */
+    private static class Hasher {
+        private long state = 0x27D4EB2F165667C5L;
+        private long pending;
+        private int pendingBytes;
+        private long length;
+
+        /**
+         * Adds the remaining bytes of a buffer.
+         * @param buffer The bytes to add
+         */
+        void update(ByteBuffer buffer) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            length += buffer.remaining();
+            while (pendingBytes != 0 && buffer.hasRemaining()) {
+                addByte(buffer.get());
+            }
+            while (buffer.remaining() >= 8) {
+                mix(buffer.getLong());
+            }
+            while (buffer.hasRemaining()) {
+                addByte(buffer.get());
+            }
+        }
+
+        /**
+         * Gets the hash of every byte added.
+         * @return The hash
+         */
+        long finish() {
+            if (pendingBytes != 0) {
+                mix(pending);
+            }
+            long h = state ^ length;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            return h ^ (h >>> 33);
+        }
+
+        /**
+         * Adds a byte that does not complete a word yet.
+         * @param b The byte
+         */
+        private void addByte(byte b) {
+            pending |= (b & 0xFFL) << (8 * pendingBytes);
+            if (++pendingBytes == 8) {
+                mix(pending);
+                pending = 0;
+                pendingBytes = 0;
+            }
+        }
+
+        /**
+         * Mixes one word into the state.
+         * @param word The word
+         */
+        private void mix(long word) {
+            word *= 0x9E3779B97F4A7C15L;
+            word ^= word >>> 29;
+            state = Long.rotateLeft(state ^ word, 27) * 0xBF58476D1CE4E5B9L;
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package imageLibrary.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text inverted index over the descriptions of a {@link DescriptionStore}.
+ * Descriptions are split into lower-case words without accents. Each word has a sorted posting
+ * list of the descriptions that contain it, and each description keeps its sequence of word ids,
+ * so phrases are checked without storing positions in the postings.
+ * The index follows the store as descriptions are saved. It is written next to the store on close,
+ * tagged with the size and modification time of the log; if the log has changed since (after a
+ * crash, for instance), the index is rebuilt from the store when it is opened.
+ */
+public class DescriptionIndex implements DescriptionStore.ChangeListener {
+    private static final int MAGIC = 0x49445831;
+    private static final Pattern CLAUSE = Pattern.compile("\"([^\"]*)\"?|(\\S+)");
+
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private final List<Postings> postings = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final List<String> docKeys = new ArrayList<>();
+    private final List<int[]> docTerms = new ArrayList<>();
+    private int liveDocs;
+
+    /**
+     * Opens the index of a store, loading it from disk if it is up to date and rebuilding it otherwise.
+     * The index then follows the changes of the store.
+     * @param indexFile The file the index is saved to
+     * @param logFile The log file of the store
+     * @param store The open store
+     * @return The index
+     */
+    public static DescriptionIndex open(File indexFile, File logFile, DescriptionStore store) {
+        DescriptionIndex index = new DescriptionIndex();
+        boolean loaded = false;
+        if (indexFile.isFile()) {
+            try {
+                loaded = index.load(indexFile.toPath(), fingerprint(logFile));
+            } catch (IOException e) {
+                System.err.println("Error leyendo el índice de descripciones: " + e.getMessage());
+            }
+        }
+        if (!loaded) {
+            index.clear();
+            for (Map.Entry<String, String> entry : store.asMap().entrySet()) {
+                index.onDescriptionChanged(entry.getKey(), entry.getValue());
+            }
+        }
+        store.addChangeListener(index);
+        return index;
+    }
+
+    /**
+     * Indexes the new description of a key, replacing the previous one.
+     * @param key The key
+     * @param description The new description, or null if it was removed
+     */
+    @Override
+    public synchronized void onDescriptionChanged(String key, String description) {
+        Integer id = docIds.get(key);
+        if (id != null) {
+            unindex(id);
+        }
+        int[] terms = description != null ? termIdsOf(tokenize(description)) : new int[0];
+        if (terms.length == 0) {
+            return;
+        }
+        if (id == null) {
+            id = docKeys.size();
+            docKeys.add(key);
+            docTerms.add(null);
+            docIds.put(key, id);
+        }
+        index(id, terms);
+    }
+
+    /**
+     * Finds the descriptions matching a query.
+     * Every clause must match: a bare word matches the words starting with it, and text in
+     * double quotes matches that exact sequence of words. Case and accents are ignored.
+     * @param query The query, e.g. {@code play "puesta de sol"}
+     * @return The matching descriptions, or null if the query has no words
+     */
+    public synchronized Matches search(String query) {
+        BitSet result = null;
+        Matcher matcher = CLAUSE.matcher(query);
+        while (matcher.find()) {
+            boolean quoted = matcher.group(2) == null;
+            List<String> words = tokenize(quoted ? matcher.group(1) : matcher.group(2));
+            if (words.isEmpty()) {
+                continue;
+            }
+            BitSet clause = !quoted && words.size() == 1 ? prefix(words.get(0)) : phrase(words);
+            if (result == null) {
+                result = clause;
+            } else {
+                result.and(clause);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result != null ? new Matches(result) : null;
+    }
+
+    /**
+     * Gets the number of indexed descriptions.
+     * @return The number of descriptions with at least one word
+     */
+    public synchronized int size() {
+        return liveDocs;
+    }
+
+    /**
+     * Writes the index to disk, tagged with the current state of the log.
+     * Call it once the store is closed, so that the log no longer changes.
+     * @param indexFile The file to write
+     * @param logFile The log file of the store
+     * @throws IOException if the index cannot be written
+     */
+    public synchronized void save(File indexFile, File logFile) throws IOException {
+        long[] fingerprint = fingerprint(logFile);
+        Path target = indexFile.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(fingerprint[0]);
+            out.writeLong(fingerprint[1]);
+
+            // Words no longer used by any description are dropped and the rest renumbered
+            int[] renumbered = new int[postings.size()];
+            List<String> usedTerms = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : termIds.entrySet()) {
+                if (postings.get(entry.getValue()).size > 0) {
+                    renumbered[entry.getValue()] = usedTerms.size();
+                    usedTerms.add(entry.getKey());
+                }
+            }
+            out.writeInt(usedTerms.size());
+            for (String term : usedTerms) {
+                writeString(out, term);
+            }
+
+            out.writeInt(liveDocs);
+            for (int doc = 0; doc < docKeys.size(); doc++) {
+                int[] terms = docTerms.get(doc);
+                if (terms == null) {
+                    continue;
+                }
+                writeString(out, docKeys.get(doc));
+                out.writeInt(terms.length);
+                for (int term : terms) {
+                    out.writeInt(renumbered[term]);
+                }
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Splits a text into indexable words: runs of letters and digits, in lower case and without accents.
+     * @param text The text
+     * @return The words in order
+     */
+    public static List<String> tokenize(String text) {
+        String normalized = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFD);
+        List<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Checks whether a text is plain ASCII, which needs no accent removal.
+     * @param text The text
+     * @return true if every character is ASCII
+     */
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a saved index if it was saved for the current state of the log.
+     * @param file The index file
+     * @param fingerprint Size and modification time of the log
+     * @return true if the index was loaded, false if it is out of date
+     * @throws IOException if the file cannot be read
+     */
+    private synchronized boolean load(Path file, long[] fingerprint) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (in.getInt() != MAGIC || in.getLong() != fingerprint[0] || in.getLong() != fingerprint[1]) {
+                return false;
+            }
+            int termCount = in.getInt();
+            for (int i = 0; i < termCount; i++) {
+                termIds.put(readString(in), i);
+                postings.add(new Postings());
+            }
+            int docCount = in.getInt();
+            for (int doc = 0; doc < docCount; doc++) {
+                String key = readString(in);
+                int[] terms = new int[in.getInt()];
+                in.asIntBuffer().get(terms);
+                in.position(in.position() + 4 * terms.length);
+                docKeys.add(key);
+                docTerms.add(null);
+                docIds.put(key, doc);
+                index(doc, terms);
+            }
+            return true;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Índice de descripciones truncado: " + file, e);
+        }
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     * @param out The stream to write to
+     * @param value The string
+     * @throws IOException if the string cannot be written
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     * @param in The buffer, positioned at the string
+     * @return The string
+     */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    /**
+     * Empties the index.
+     */
+    private synchronized void clear() {
+        termIds.clear();
+        postings.clear();
+        docIds.clear();
+        docKeys.clear();
+        docTerms.clear();
+        liveDocs = 0;
+    }
+
+    /**
+     * Adds a description to the postings of its words.
+     * @param doc The description id
+     * @param terms The word ids of the description, in order
+     */
+    private void index(int doc, int[] terms) {
+        docTerms.set(doc, terms);
+        for (int term : distinct(terms)) {
+            postings.get(term).add(doc);
+        }
+        liveDocs++;
+    }
+
+    /**
+     * Removes a description from the postings of its words.
+     * @param doc The description id
+     */
+    private void unindex(int doc) {
+        int[] terms = docTerms.get(doc);
+        if (terms == null) {
+            return;
+        }
+        for (int term : distinct(terms)) {
+            postings.get(term).remove(doc);
+        }
+        docTerms.set(doc, null);
+        liveDocs--;
+    }
+
+    /**
+     * Gets the ids of some words, adding the words not yet in the index.
+     * @param words The words
+     * @return The word ids, in the same order
+     */
+    private int[] termIdsOf(List<String> words) {
+        int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = termIds.computeIfAbsent(words.get(i), word -> {
+                postings.add(new Postings());
+                return postings.size() - 1;
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the descriptions with a word starting with a prefix.
+     * @param prefix The prefix, already tokenized
+     * @return The matching description ids
+     */
+    private BitSet prefix(String prefix) {
+        BitSet docs = new BitSet(docKeys.size());
+        for (int term : termIds.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            postings.get(term).addTo(docs);
+        }
+        return docs;
+    }
+
+    /**
+     * Finds the descriptions containing a sequence of words.
+     * @param words The words, already tokenized
+     * @return The matching description ids
+     */
+    private BitSet phrase(List<String> words) {
+        int[] ids = new int[words.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Integer id = termIds.get(words.get(i));
+            if (id == null) {
+                return new BitSet();
+            }
+            ids[i] = id;
+        }
+
+        // Intersect the postings, rarest first, then check the word order of the survivors
+        Postings[] lists = new Postings[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            lists[i] = postings.get(ids[i]);
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] candidates = Arrays.copyOf(lists[0].docs, lists[0].size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            count = lists[i].retainAll(candidates, count);
+        }
+
+        BitSet docs = new BitSet(docKeys.size());
+        for (int i = 0; i < count; i++) {
+            if (ids.length == 1 || containsSequence(docTerms.get(candidates[i]), ids)) {
+                docs.set(candidates[i]);
+            }
+        }
+        return docs;
+    }
+
+    /**
+     * Checks whether a description contains a sequence of words.
+     * @param terms The word ids of the description
+     * @param sequence The word ids to look for
+     * @return true if the sequence appears in order and without gaps
+     */
+    private static boolean containsSequence(int[] terms, int[] sequence) {
+        for (int start = 0; start + sequence.length <= terms.length; start++) {
+            int i = 0;
+            while (i < sequence.length && terms[start + i] == sequence[i]) {
+                i++;
+            }
+            if (i == sequence.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes repeated word ids. Descriptions are short, so a quadratic scan is the fastest way.
+     * @param terms The word ids of a description
+     * @return Each id once
+     */
+    private static int[] distinct(int[] terms) {
+        int[] unique = new int[terms.length];
+        int count = 0;
+        for (int term : terms) {
+            int i = 0;
+            while (i < count && unique[i] != term) {
+                i++;
+            }
+            if (i == count) {
+                unique[count++] = term;
+            }
+        }
+        return count == terms.length ? unique : Arrays.copyOf(unique, count);
+    }
+
+    /**
+     * Gets the size and modification time of the log, which identify its state.
+     * @param logFile The log file
+     * @return The size and the modification time in milliseconds
+     * @throws IOException if the file attributes cannot be read
+     */
+    private static long[] fingerprint(File logFile) throws IOException {
+        Path path = logFile.toPath();
+        return new long[] { Files.size(path), Files.getLastModifiedTime(path).toMillis() };
+    }
+
+    /**
+     * Descriptions matching a search.
+     */
+    public class Matches {
+        private final BitSet docs;
+
+        /**
+         * Creates the result of a search.
+         * @param docs The matching description ids
+         */
+        private Matches(BitSet docs) {
+            this.docs = docs;
+        }
+
+        /**
+         * Checks whether the description of a key matched.
+         * @param key The key, usually the absolute path of the image
+         * @return true if the key has a matching description
+         */
+        public boolean contains(String key) {
+            synchronized (DescriptionIndex.this) {
+                Integer doc = docIds.get(key);
+                return doc != null && docs.get(doc);
+            }
+        }
+
+        /**
+         * Gets the number of matching descriptions.
+         * @return The number of matches
+         */
+        public int size() {
+            return docs.cardinality();
+        }
+    }
+
+    /**
+     * Sorted ids of the descriptions containing a word.
+     */
+    private static class Postings {
+        private int[] docs = new int[2];
+        private int size;
+
+        /**
+         * Adds a description id, keeping the ids sorted.
+         * @param doc The description id
+         */
+        void add(int doc) {
+            int position = size > 0 && docs[size - 1] < doc ? size : Arrays.binarySearch(docs, 0, size, doc);
+            if (position < 0) {
+                position = -position - 1;
+            } else if (position < size) {
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, position, docs, position + 1, size - position);
+            docs[position] = doc;
+            size++;
+        }
+
+        /**
+         * Removes a description id.
+         * @param doc The description id
+         */
+        void remove(int doc) {
+            int position = Arrays.binarySearch(docs, 0, size, doc);
+            if (position >= 0) {
+                System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+                size--;
+            }
+        }
+
+        /**
+         * Keeps the ids of a sorted array that are also in this list.
+         * @param candidates Sorted description ids, compacted in place
+         * @param count Number of valid ids in the array
+         * @return Number of ids kept
+         */
+        int retainAll(int[] candidates, int count) {
+            int kept = 0;
+            int i = 0;
+            for (int c = 0; c < count && i < size; c++) {
+                while (i < size && docs[i] < candidates[c]) {
+                    i++;
+                }
+                if (i < size && docs[i] == candidates[c]) {
+                    candidates[kept++] = candidates[c];
+                }
+            }
+            return kept;
+        }
+
+        /**
+         * Sets the bits of every description id.
+         * @param bits The set to fill
+         */
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(docs[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package imageLibrary.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store for the image descriptions entered in the application.
+ * Every change is appended to a log file as one checksummed record and forced to disk before
+ * returning, so saving costs one small write however many descriptions there are, and an edit
+ * survives a crash. An in-memory hash index maps each key to its current description; it is
+ * rebuilt at startup by reading the log sequentially. A torn record left by a crash at the end of
+ * the log is cut off; a damaged record followed by more data is not, and the store refuses to open
+ * rather than discard the records after it.
+ * When most of the log is made of overwritten records, it is compacted in the background into a
+ * checkpoint holding only the live entries, which then replaces the log.
+ */
+public class DescriptionStore implements Closeable {
+    private static final int MAGIC = 0x49444C31;
+    private static final int HEADER_LENGTH = 4;
+    private static final int RECORD_OVERHEAD = 8;
+    private static final int MAX_RECORD_LENGTH = 64 << 20;
+    private static final byte OP_REMOVE = 0;
+    private static final byte OP_PUT = 1;
+    private static final long COMPACT_MIN_BYTES = 1 << 20;
+
+    private final Path logFile;
+    private final Map<String, String> index = new ConcurrentHashMap<>();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object compactLock = new Object();
+    private final ExecutorService compactor;
+    private FileChannel channel;
+    private long liveBytes;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * Creates a store over a log file; {@link #open} replays it.
+     * @param logFile The log file
+     */
+    private DescriptionStore(Path logFile) {
+        this.logFile = logFile;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "description-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a description store, creating its log file if needed.
+     * If the log does not exist yet but a legacy file (a serialized map of descriptions) does,
+     * its entries are migrated to the log and the legacy file is renamed with a ".migrated" suffix.
+     * @param logFile The log file
+     * @param legacyFile The legacy file to migrate; may be null
+     * @return The open store
+     * @throws IOException if the log cannot be read or created, or the legacy file cannot be migrated
+     */
+    public static DescriptionStore open(File logFile, File legacyFile) throws IOException {
+        DescriptionStore store = new DescriptionStore(logFile.toPath());
+        if (!logFile.exists() && legacyFile != null && legacyFile.isFile()) {
+            store.migrate(legacyFile.toPath());
+        }
+        store.replay();
+        return store;
+    }
+
+    /**
+     * Gets the description of a key.
+     * @param key The key, usually the absolute path of the image
+     * @return The description, or null if there is none
+     */
+    public String get(String key) {
+        return index.get(key);
+    }
+
+    /**
+     * Gets a read-only live view of every description.
+     * @return The descriptions by key
+     */
+    public Map<String, String> asMap() {
+        return Collections.unmodifiableMap(index);
+    }
+
+    /**
+     * Gets the number of descriptions.
+     * @return The number of keys with a description
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Sets the description of a key and forces it to disk.
+     * @param key The key, usually the absolute path of the image
+     * @param description The description
+     * @throws IOException if the record cannot be written; the store is left unchanged
+     */
+    public synchronized void put(String key, String description) throws IOException {
+        ensureOpen();
+        if (description.equals(index.get(key))) {
+            return;
+        }
+        byte[] payload = encode(OP_PUT, key, description);
+        append(payload);
+        update(key, description, RECORD_OVERHEAD + payload.length);
+        fireChanged(key, description);
+        compactIfWasteful();
+    }
+
+    /**
+     * Removes the description of a key and forces the removal to disk.
+     * @param key The key
+     * @throws IOException if the record cannot be written; the store is left unchanged
+     */
+    public synchronized void remove(String key) throws IOException {
+        ensureOpen();
+        if (!index.containsKey(key)) {
+            return;
+        }
+        append(encode(OP_REMOVE, key, null));
+        update(key, null, 0);
+        fireChanged(key, null);
+        compactIfWasteful();
+    }
+
+    /**
+     * Registers a listener notified of every change once it is on disk.
+     * @param listener The listener
+     */
+    public void addChangeListener(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Rewrites the log with only the live entries.
+     * Appends made while the checkpoint is written are copied after it before the swap.
+     * If the swap fails, the original log is opened again and the store stays usable.
+     * @throws IOException if the checkpoint cannot be written or installed
+     */
+    public void compact() throws IOException {
+        synchronized (compactLock) {
+            Map<String, String> snapshot;
+            long snapshotEnd;
+            synchronized (this) {
+                ensureOpen();
+                snapshot = new HashMap<>(index);
+                snapshotEnd = channel.size();
+            }
+
+            Path checkpoint = logFile.resolveSibling(logFile.getFileName() + ".compact");
+            try {
+                writeCheckpoint(snapshot, checkpoint);
+                synchronized (this) {
+                    ensureOpen();
+                    try (FileChannel out = FileChannel.open(checkpoint, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND)) {
+                        long end = channel.size();
+                        for (long position = snapshotEnd; position < end; ) {
+                            position += channel.transferTo(position, end - position, out);
+                        }
+                        out.force(true);
+                    }
+                    channel.close();
+                    try {
+                        move(checkpoint, logFile);
+                    } finally {
+                        channel = FileChannel.open(logFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        channel.position(channel.size());
+                    }
+                }
+            } finally {
+                Files.deleteIfExists(checkpoint);
+            }
+        }
+    }
+
+    /**
+     * Closes the log file. Descriptions already written are on disk.
+     * @throws IOException if the log file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        compactor.shutdown();
+        channel.close();
+    }
+
+    /**
+     * Writes the entries of a legacy serialized map as the initial log.
+     * @param legacyFile The legacy file
+     * @throws IOException if the legacy file cannot be read or the log cannot be written
+     */
+    @SuppressWarnings("unchecked")
+    private void migrate(Path legacyFile) throws IOException {
+        Map<String, String> legacy;
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacyFile)))) {
+            legacy = (Map<String, String>) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Archivo de descripciones no válido: " + legacyFile, e);
+        }
+        Path checkpoint = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        writeCheckpoint(legacy, checkpoint);
+        move(checkpoint, logFile);
+        move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"));
+    }
+
+    /**
+     * Rebuilds the index from the log and opens it for appending.
+     * A torn tail is reported and cut off.
+     * @throws IOException if the log cannot be read, is not a description log or is damaged before its end
+     */
+    private void replay() throws IOException {
+        long valid = Files.exists(logFile) && Files.size(logFile) >= HEADER_LENGTH ? readLog() : 0;
+        channel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (valid == 0) {
+            channel.truncate(0);
+            channel.write(ByteBuffer.allocate(HEADER_LENGTH).putInt(0, MAGIC));
+            channel.force(true);
+        } else if (valid < channel.size()) {
+            System.err.println("Registro de descripciones incompleto, se descartan "
+                    + (channel.size() - valid) + " bytes finales de " + logFile);
+            channel.truncate(valid);
+            channel.force(true);
+        }
+        channel.position(channel.size());
+    }
+
+    /**
+     * Reads every complete record of the log into the index.
+     * A record cut short by the end of the file, a record whose checksum fails and that ends the
+     * file, and a zero-filled tail are torn writes: reading stops there. Any other damaged record
+     * is followed by records that would be lost, so the log is rejected instead.
+     * @return The length of the log up to the last complete record
+     * @throws IOException if the log cannot be read, is not a description log or is damaged before its end
+     */
+    private long readLog() throws IOException {
+        long fileSize = Files.size(logFile);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Formato de registro de descripciones no reconocido: " + logFile);
+            }
+            long valid = HEADER_LENGTH;
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                        if (length == 0 && checksum == 0 && isZeroFilled(in)) {
+                            break;
+                        }
+                        throw damaged(valid);
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    if (valid + RECORD_OVERHEAD + payload.length == fileSize) {
+                        break;
+                    }
+                    throw damaged(valid);
+                }
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                byte op = record.get();
+                String key = decodeString(record);
+                if (op == OP_PUT) {
+                    update(key, decodeString(record), RECORD_OVERHEAD + payload.length);
+                } else {
+                    update(key, null, 0);
+                }
+                valid += RECORD_OVERHEAD + payload.length;
+            }
+            return valid;
+        }
+    }
+
+    /**
+     * Checks whether the rest of a stream holds only zero bytes.
+     * @param in The stream
+     * @return true if every remaining byte is zero
+     * @throws IOException if the stream cannot be read
+     */
+    private static boolean isZeroFilled(DataInputStream in) throws IOException {
+        for (int b = in.read(); b >= 0; b = in.read()) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the error reported for a damaged record that is not at the end of the log.
+     * @param position Position of the record in the log
+     * @return The exception to throw
+     */
+    private IOException damaged(long position) {
+        return new IOException("Registro de descripciones dañado en la posición " + position
+                + ", no se abre para no perder los registros siguientes: " + logFile);
+    }
+
+    /**
+     * Applies a change to the index and to the count of live bytes.
+     * @param key The key
+     * @param description The new description, or null to remove it
+     * @param recordLength Length of the record holding the new description
+     */
+    private void update(String key, String description, long recordLength) {
+        String previous = description != null ? index.put(key, description) : index.remove(key);
+        if (previous != null) {
+            liveBytes -= RECORD_OVERHEAD + encode(OP_PUT, key, previous).length;
+        }
+        liveBytes += recordLength;
+    }
+
+    /**
+     * Appends one record to the log and forces it to disk.
+     * If the write fails, the log is cut back so that later records stay readable.
+     * @param payload The encoded record
+     * @throws IOException if the record cannot be written
+     */
+    private void append(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        long start = channel.position();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException ignored) {
+                // The torn record is cut off by the next replay
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Starts a background compaction when overwritten records take most of the log.
+     * @throws IOException if the size of the log cannot be read
+     */
+    private void compactIfWasteful() throws IOException {
+        long size = channel.size();
+        if (compacting || size < COMPACT_MIN_BYTES || size < 2 * (HEADER_LENGTH + liveBytes)) {
+            return;
+        }
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Error compactando descripciones: " + e.getMessage());
+            } finally {
+                synchronized (this) {
+                    compacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes a log holding exactly the given entries and forces it to disk.
+     * @param entries The descriptions by key
+     * @param file The file to write
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeCheckpoint(Map<String, String> entries, Path file) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16));
+            data.writeInt(MAGIC);
+            CRC32 crc = new CRC32();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                byte[] payload = encode(OP_PUT, entry.getKey(), entry.getValue());
+                crc.reset();
+                crc.update(payload);
+                data.writeInt(payload.length);
+                data.writeInt((int) crc.getValue());
+                data.write(payload);
+            }
+            data.flush();
+            out.force(true);
+        }
+    }
+
+    /**
+     * Encodes the payload of a record.
+     * @param op OP_PUT or OP_REMOVE
+     * @param key The key
+     * @param description The description; ignored for removals
+     * @return The payload bytes
+     */
+    private static byte[] encode(byte op, String key, String description) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = op == OP_PUT ? description.getBytes(StandardCharsets.UTF_8) : null;
+        ByteBuffer payload = ByteBuffer.allocate(1 + 4 + keyBytes.length + (valueBytes != null ? 4 + valueBytes.length : 0));
+        payload.put(op).putInt(keyBytes.length).put(keyBytes);
+        if (valueBytes != null) {
+            payload.putInt(valueBytes.length).put(valueBytes);
+        }
+        return payload.array();
+    }
+
+    /**
+     * Decodes a length-prefixed UTF-8 string of a payload.
+     * @param payload The payload, positioned at the string
+     * @return The string
+     */
+    private static String decodeString(ByteBuffer payload) {
+        int length = payload.getInt();
+        String value = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    /**
+     * Replaces a file atomically when the file system supports it.
+     * @param source The file to move
+     * @param target The file to replace
+     * @throws IOException if the file cannot be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Notifies the listeners of a change.
+     * @param key The key
+     * @param description The new description, or null if it was removed
+     */
+    private void fireChanged(String key, String description) {
+        for (ChangeListener listener : listeners) {
+            listener.onDescriptionChanged(key, description);
+        }
+    }
+
+    /**
+     * Checks that the store has not been closed.
+     * @throws IllegalStateException if the store is closed
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("El almacén de descripciones está cerrado");
+        }
+    }
+
+    /**
+     * Interface for following the changes of a store.
+     */
+    public interface ChangeListener {
+        /**
+         * Called after a description has been set or removed, on the thread that changed it.
+         * @param key The key
+         * @param description The new description, or null if it was removed
+         */
+        void onDescriptionChanged(String key, String description);
+    }
+}
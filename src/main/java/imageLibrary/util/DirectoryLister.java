@@ -0,0 +1,67 @@
+package imageLibrary.util;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+
+/**
+ * Utility class for listing the entries of a directory one at a time.
+ * Entries are handed out while the directory is still being read, together with the
+ * attributes the listing already fetched, so no array of the whole directory is built
+ * and callers need no extra isFile/isDirectory/length calls. The attributes are also
+ * stored in the {@link FileAttributeCache}.
+ */
+public class DirectoryLister {
+
+    /**
+     * Lists the direct children of a directory.
+     * Entries that cannot be read are skipped. Symbolic links are reported with the attributes of
+     * their target, so a link to a directory is listed as a directory; a broken link keeps its own.
+     * Interrupting the calling thread stops the listing.
+     * @param directory The directory to list
+     * @param visitor Receiver of each entry
+     * @throws IOException if the directory cannot be opened
+     */
+    public static void list(Path directory, EntryVisitor visitor) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        // With a depth of 1 no entry is opened, so following links only changes the attributes reported
+        Files.walkFileTree(directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return FileVisitResult.TERMINATE;
+                }
+                FileAttributeCache.put(file, attrs);
+                visitor.visit(file, attrs);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (file.equals(directory)) {
+                    throw e;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Interface for receiving directory entries.
+     */
+    public interface EntryVisitor {
+        /**
+         * Called for each entry of the directory.
+         * @param entry Path of the entry
+         * @param attributes Attributes read by the listing (type, size, modification time)
+         */
+        void visit(Path entry, BasicFileAttributes attributes);
+    }
+}
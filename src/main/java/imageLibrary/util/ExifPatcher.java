@@ -0,0 +1,452 @@
+package imageLibrary.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import org.apache.commons.imaging.ImageReadException;
+import org.apache.commons.imaging.ImageWriteException;
+import org.apache.commons.imaging.common.ImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
+import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
+import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+
+/**
+ * Writes EXIF changes into JPEG files without reading the whole file.
+ * Only the segment headers and the APP1 (EXIF) segment are read. When the change fits in the
+ * existing APP1 segment, plus the zero-filled COM segment this class leaves after it as padding,
+ * the bytes are overwritten in place; changing a date that is already present touches 19 bytes.
+ * Only when the segment has to grow is the file copied, with the image data moved by
+ * {@link FileChannel#transferTo} and the copy swapped in atomically.
+ */
+public class ExifPatcher {
+
+    private static final DateTimeFormatter EXIF_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP0 = 0xE0;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_COM = 0xFE;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MAX_SEGMENT_BYTES = 2 + 65535;
+    // Room left after a rewritten APP1 segment so that later edits can be done in place
+    private static final int PADDING_BYTES = 4096;
+    private static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+    // Empty scan used to run ExifRewriter over the header segments only
+    private static final byte[] EMPTY_SCAN = { (byte) 0xFF, (byte) MARKER_SOS, 0, 8, 1, 1, 0, 0, 0x3F, 0,
+            (byte) 0xFF, (byte) MARKER_EOI };
+
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final int TYPE_ASCII = 2;
+    private static final int EXIF_DATE_LENGTH = 20;
+
+    /**
+     * Sets the capture date (DateTimeOriginal) of a JPEG file.
+     * @param file The JPEG file, modified in place or atomically replaced
+     * @param captureDate The new capture date
+     * @throws IOException if the file is not a JPEG or cannot be read or written
+     * @throws ImageReadException if the existing metadata cannot be parsed
+     * @throws ImageWriteException if the new metadata cannot be written
+     */
+    public static void writeCaptureDate(File file, LocalDateTime captureDate)
+            throws IOException, ImageReadException, ImageWriteException {
+        String exifDate = captureDate.format(EXIF_DATE_FORMAT);
+        Path path = file.toPath();
+        Layout layout;
+        byte[] segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            layout = Layout.scan(channel);
+            if (layout == null) {
+                throw new IOException("No es un archivo JPEG: " + file.getName());
+            }
+            if (layout.app1 != null && patchDate(channel, layout, exifDate)) {
+                return;
+            }
+            segment = buildExifSegment(file, layout, captureDate);
+            if (fitsInPlace(layout, segment)) {
+                writeInPlace(channel, layout, segment);
+                return;
+            }
+        }
+        rewriteWithCopy(path, layout, segment);
+    }
+
+    /**
+     * Overwrites the value of an existing DateTimeOriginal tag.
+     * @param channel The open file
+     * @param layout The segment layout of the file
+     * @param exifDate The new date in EXIF format
+     * @return true if the tag was found and patched, false if it is missing or has an unusual layout
+     * @throws IOException if the file cannot be written
+     */
+    private static boolean patchDate(FileChannel channel, Layout layout, String exifDate) throws IOException {
+        ByteBuffer tiff = layout.tiff();
+        try {
+            if (tiff.get(0) == 'I' && tiff.get(1) == 'I') {
+                tiff.order(ByteOrder.LITTLE_ENDIAN);
+            } else if (tiff.get(0) != 'M' || tiff.get(1) != 'M') {
+                return false;
+            }
+            int exifIfd = findEntry(tiff, tiff.getInt(4), TAG_EXIF_IFD);
+            if (exifIfd < 0) {
+                return false;
+            }
+            int entry = findEntry(tiff, tiff.getInt(exifIfd + 8), TAG_DATE_TIME_ORIGINAL);
+            if (entry < 0 || (tiff.getShort(entry + 2) & 0xFFFF) != TYPE_ASCII
+                    || tiff.getInt(entry + 4) != EXIF_DATE_LENGTH) {
+                return false;
+            }
+            int valueOffset = tiff.getInt(entry + 8);
+            if (valueOffset < 0 || valueOffset + EXIF_DATE_LENGTH > tiff.limit()) {
+                return false;
+            }
+            ByteBuffer value = ByteBuffer.allocate(EXIF_DATE_LENGTH);
+            value.put(exifDate.getBytes(StandardCharsets.US_ASCII)).put((byte) 0).flip();
+            writeFully(channel, value, layout.tiffPosition() + valueOffset);
+            return true;
+        } catch (IndexOutOfBoundsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds an entry in an IFD.
+     * @param tiff The TIFF structure
+     * @param ifd Offset of the IFD
+     * @param tag The tag to look for
+     * @return Offset of the 12-byte entry, or -1 if the IFD does not have the tag
+     */
+    private static int findEntry(ByteBuffer tiff, int ifd, int tag) {
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == tag) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds a complete APP1 segment holding the existing metadata with the new capture date.
+     * ExifRewriter is run on a small JPEG made of the existing APP1 segment and an empty scan,
+     * so the image data is never read.
+     * @param file The JPEG file, for its current metadata
+     * @param layout The segment layout of the file
+     * @param captureDate The new capture date
+     * @return The new segment, marker included
+     * @throws IOException if the segment cannot be built or would exceed the JPEG segment size
+     * @throws ImageReadException if the existing metadata cannot be parsed
+     * @throws ImageWriteException if the new metadata cannot be written
+     */
+    private static byte[] buildExifSegment(File file, Layout layout, LocalDateTime captureDate)
+            throws IOException, ImageReadException, ImageWriteException {
+        TiffOutputSet outputSet = null;
+        ImageMetadata metadata = MetadataEditor.readMetadata(file);
+        if (metadata instanceof JpegImageMetadata) {
+            TiffImageMetadata exif = ((JpegImageMetadata) metadata).getExif();
+            if (exif != null) {
+                outputSet = exif.getOutputSet();
+            }
+        }
+        if (outputSet == null) {
+            outputSet = new TiffOutputSet();
+        }
+        TiffOutputDirectory exifDirectory = outputSet.getOrCreateExifDirectory();
+        exifDirectory.removeField(ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL);
+        exifDirectory.add(ExifTagConstants.EXIF_TAG_DATE_TIME_ORIGINAL, captureDate.format(EXIF_DATE_FORMAT));
+
+        ByteArrayOutputStream source = new ByteArrayOutputStream();
+        source.write(0xFF);
+        source.write(MARKER_SOI);
+        if (layout.app1 != null) {
+            source.write(layout.app1.array(), 0, layout.app1.capacity());
+        }
+        source.write(EMPTY_SCAN);
+
+        ByteArrayOutputStream rewritten = new ByteArrayOutputStream();
+        new ExifRewriter().updateExifMetadataLossless(new ByteArrayInputStream(source.toByteArray()), rewritten,
+                outputSet);
+
+        ByteBuffer result = ByteBuffer.wrap(rewritten.toByteArray());
+        int position = 2;
+        while (position + 4 <= result.limit() && (result.get(position) & 0xFF) == 0xFF) {
+            int type = result.get(position + 1) & 0xFF;
+            int length = result.getShort(position + 2) & 0xFFFF;
+            if (type == MARKER_SOS) {
+                break;
+            }
+            if (type == MARKER_APP1 && isExif(result, position + 4)) {
+                if (2 + length > MAX_SEGMENT_BYTES) {
+                    throw new IOException("Metadatos EXIF demasiado grandes: " + file.getName());
+                }
+                byte[] segment = new byte[2 + length];
+                result.get(position, segment);
+                return segment;
+            }
+            position += 2 + length;
+        }
+        throw new IOException("No se pudieron generar los metadatos EXIF: " + file.getName());
+    }
+
+    /**
+     * Checks whether a new APP1 segment can replace the current one and its padding in place.
+     * @param layout The segment layout of the file
+     * @param segment The new APP1 segment
+     * @return true if the segment fits and the leftover can be filled, see {@link #writeInPlace}
+     */
+    private static boolean fitsInPlace(Layout layout, byte[] segment) {
+        if (layout.app1 == null) {
+            return false;
+        }
+        int region = layout.app1.capacity() + layout.paddingLength;
+        int leftover = region - segment.length;
+        if (leftover <= 0) {
+            return leftover == 0;
+        }
+        // The leftover becomes a COM segment, or is added to the APP1 segment when too small for
+        // a COM header; either way the length of the segment holding it must fit in 16 bits
+        return leftover >= 4 ? leftover <= MAX_SEGMENT_BYTES : region <= MAX_SEGMENT_BYTES;
+    }
+
+    /**
+     * Overwrites the APP1 segment and its padding with a new segment of at most the same size.
+     * A smaller segment is followed by a zero-filled COM segment, or zero-extended when the
+     * leftover is too small for a COM header; TIFF readers ignore the trailing bytes.
+     * @param channel The open file
+     * @param layout The segment layout of the file
+     * @param segment The new APP1 segment
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeInPlace(FileChannel channel, Layout layout, byte[] segment) throws IOException {
+        int region = layout.app1.capacity() + layout.paddingLength;
+        int leftover = region - segment.length;
+        int app1Length = leftover >= 4 ? segment.length : region;
+        ByteBuffer out = ByteBuffer.allocate(region);
+        out.put(segment);
+        out.putShort(2, (short) (app1Length - 2));
+        out.position(app1Length);
+        if (region > app1Length) {
+            out.put((byte) 0xFF).put((byte) MARKER_COM).putShort((short) (region - app1Length - 2));
+        }
+        out.clear();
+        writeFully(channel, out, layout.app1Position);
+        channel.force(false);
+    }
+
+    /**
+     * Writes the file again with a larger APP1 segment followed by padding for later edits.
+     * Everything but the new segment is moved with transferTo; the copy replaces the original atomically.
+     * @param path The JPEG file
+     * @param layout The segment layout of the file
+     * @param segment The new APP1 segment
+     * @throws IOException if the copy cannot be written or moved into place
+     */
+    private static void rewriteWithCopy(Path path, Layout layout, byte[] segment) throws IOException {
+        long cut = layout.app1 != null ? layout.app1Position : layout.insertPosition;
+        long resume = layout.app1 != null ? cut + layout.app1.capacity() + layout.paddingLength : cut;
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                transferFully(in, 0, cut, out);
+                ByteBuffer head = ByteBuffer.allocate(segment.length + PADDING_BYTES);
+                head.put(segment);
+                head.put((byte) 0xFF).put((byte) MARKER_COM).putShort((short) (PADDING_BYTES - 2));
+                head.clear();
+                while (head.hasRemaining()) {
+                    out.write(head);
+                }
+                transferFully(in, resume, in.size() - resume, out);
+                out.force(false);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies a range of one channel to the end of another.
+     * @param in The source channel
+     * @param position Start of the range
+     * @param count Length of the range
+     * @param out The destination channel
+     * @throws IOException if the copy fails
+     */
+    private static void transferFully(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        long done = 0;
+        while (done < count) {
+            long transferred = in.transferTo(position + done, count - done, out);
+            if (transferred <= 0) {
+                throw new IOException("Copia incompleta");
+            }
+            done += transferred;
+        }
+    }
+
+    /**
+     * Writes a whole buffer at a position of the channel.
+     * @param channel The open file
+     * @param buffer The bytes to write
+     * @param position File position to write at
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * Checks for the "Exif\0\0" identifier.
+     * @param data The buffer
+     * @param offset Where the identifier should start
+     * @return true if the identifier is present
+     */
+    private static boolean isExif(ByteBuffer data, int offset) {
+        if (data.limit() < offset + EXIF_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (data.get(offset + i) != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Positions of the segments of a JPEG file that matter for rewriting its EXIF.
+     */
+    private static class Layout {
+        private ByteBuffer app1;
+        private long app1Position = -1;
+        private int paddingLength;
+        private long insertPosition = 2;
+
+        /**
+         * Reads the segment headers of a JPEG file up to its first scan.
+         * @param channel The open file
+         * @return The layout, or null if the file is not a JPEG
+         * @throws IOException if the file cannot be read
+         */
+        static Layout scan(FileChannel channel) throws IOException {
+            ByteBuffer marker = ByteBuffer.allocate(4);
+            if (!readFully(channel, marker, 0) || (marker.get(0) & 0xFF) != 0xFF
+                    || (marker.get(1) & 0xFF) != MARKER_SOI) {
+                return null;
+            }
+            Layout layout = new Layout();
+            long position = 2;
+            boolean first = true;
+            while (readFully(channel, marker, position) && (marker.get(0) & 0xFF) == 0xFF) {
+                int type = marker.get(1) & 0xFF;
+                if (type == MARKER_SOS || type == MARKER_EOI) {
+                    break;
+                }
+                int segmentBytes = 2 + (marker.getShort(2) & 0xFFFF);
+                if (first && type == MARKER_APP0) {
+                    layout.insertPosition = position + segmentBytes;
+                }
+                if (type == MARKER_APP1 && layout.app1 == null) {
+                    ByteBuffer segment = ByteBuffer.allocate(segmentBytes);
+                    if (readFully(channel, segment, position) && isExif(segment, 4)) {
+                        layout.app1 = segment;
+                        layout.app1Position = position;
+                        layout.paddingLength = paddingAfter(channel, position + segmentBytes);
+                    }
+                }
+                first = false;
+                position += segmentBytes;
+            }
+            return layout;
+        }
+
+        /**
+         * Measures the zero-filled COM segment that directly follows a position, if any.
+         * @param channel The open file
+         * @param position Position right after the APP1 segment
+         * @return Size of the padding segment, or 0 if there is none
+         * @throws IOException if the file cannot be read
+         */
+        private static int paddingAfter(FileChannel channel, long position) throws IOException {
+            ByteBuffer marker = ByteBuffer.allocate(4);
+            if (!readFully(channel, marker, position) || (marker.get(0) & 0xFF) != 0xFF
+                    || (marker.get(1) & 0xFF) != MARKER_COM) {
+                return 0;
+            }
+            int segmentBytes = 2 + (marker.getShort(2) & 0xFFFF);
+            if (segmentBytes < 4) {
+                // A length below 2 does not even cover the length field: not a usable segment
+                return 0;
+            }
+            ByteBuffer content = ByteBuffer.allocate(segmentBytes - 4);
+            if (!readFully(channel, content, position + 4)) {
+                return 0;
+            }
+            for (int i = 0; i < content.capacity(); i++) {
+                if (content.get(i) != 0) {
+                    return 0;
+                }
+            }
+            return segmentBytes;
+        }
+
+        /**
+         * Gets the TIFF structure inside the APP1 segment.
+         * @return A big-endian view starting at the TIFF byte order mark
+         */
+        ByteBuffer tiff() {
+            ByteBuffer data = app1.duplicate();
+            data.position(4 + EXIF_HEADER.length);
+            return data.slice().order(ByteOrder.BIG_ENDIAN);
+        }
+
+        /**
+         * Gets the file position of the TIFF structure.
+         * @return Position of the TIFF byte order mark in the file
+         */
+        long tiffPosition() {
+            return app1Position + 4 + EXIF_HEADER.length;
+        }
+    }
+
+    /**
+     * Fills a buffer from a position of the channel.
+     * @param channel The open file
+     * @param buffer The buffer to fill; it is cleared first
+     * @param position File position to read from
+     * @return true if the buffer was filled, false if the file ended first
+     * @throws IOException if the file cannot be read
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package imageLibrary.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared cache of file attributes (type, size, modification time) used by the analyzer,
+ * the table, the filters and the folder tree.
+ * Each file is stat'ed with a single readAttributes call and the result is reused until the
+ * file changes. Listings fill the cache with the attributes they already read, code that
+ * writes a file invalidates it, and watched directories invalidate their entries when
+ * something outside the application changes them. Entries of files in directories that are not
+ * watched are read again once they are older than one second. The least recently used entries
+ * are evicted once 200,000 files are cached.
+ */
+public class FileAttributeCache {
+    private static final int MAX_ENTRIES = 200_000;
+    private static final int MAX_WATCHED_DIRECTORIES = 256;
+    // Nothing tells when a file outside the watched directories changes, so its entry expires
+    private static final long UNWATCHED_TTL_NANOS = 1_000_000_000L;
+    private static final LruCache<Path, CachedAttributes> CACHE = new LruCache<>(MAX_ENTRIES);
+    private static final Map<Path, WatchKey> WATCHED = new ConcurrentHashMap<>();
+    private static WatchService watchService;
+
+    /**
+     * Gets the attributes of a file, reading them only if they are not cached or the cached
+     * entry may be stale: files outside the watched directories are read again once their
+     * entry expires.
+     * @param path The file to look up
+     * @return The file attributes, or null if the file does not exist or cannot be read
+     */
+    public static BasicFileAttributes get(Path path) {
+        CachedAttributes cached = CACHE.get(path);
+        if (cached != null && (isWatched(path) || System.nanoTime() - cached.readAt < UNWATCHED_TTL_NANOS)) {
+            return cached.attributes;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            put(path, attributes);
+            return attributes;
+        } catch (IOException e) {
+            CACHE.remove(path);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the directory of a file is watched, so that its cached entry is invalidated when it changes.
+     * @param path The file
+     * @return true if the parent directory of the file is watched
+     */
+    private static boolean isWatched(Path path) {
+        Path parent = path.getParent();
+        return parent != null && WATCHED.containsKey(parent);
+    }
+
+    /**
+     * Gets the modification time of a file, like {@link File#lastModified()}.
+     * @param file The file to look up
+     * @return The modification time in milliseconds, or 0 if the file does not exist
+     */
+    public static long lastModified(File file) {
+        BasicFileAttributes attributes = get(file.toPath());
+        return attributes != null ? attributes.lastModifiedTime().toMillis() : 0L;
+    }
+
+    /**
+     * Gets the size of a file, like {@link File#length()}.
+     * @param file The file to look up
+     * @return The size in bytes, or 0 if the file does not exist
+     */
+    public static long size(File file) {
+        BasicFileAttributes attributes = get(file.toPath());
+        return attributes != null ? attributes.size() : 0L;
+    }
+
+    /**
+     * Checks if a file exists and is a regular file, like {@link File#isFile()}.
+     * @param file The file to look up
+     * @return true if the file is a regular file
+     */
+    public static boolean isFile(File file) {
+        BasicFileAttributes attributes = get(file.toPath());
+        return attributes != null && attributes.isRegularFile();
+    }
+
+    /**
+     * Stores attributes that were read elsewhere, e.g. by a directory listing.
+     * @param path The file the attributes belong to
+     * @param attributes The attributes read from the file system
+     */
+    public static void put(Path path, BasicFileAttributes attributes) {
+        CACHE.put(path, new CachedAttributes(attributes, System.nanoTime()));
+    }
+
+    /**
+     * Drops the cached attributes of a file. Must be called after the application changes a file.
+     * @param path The file that changed
+     */
+    public static void invalidate(Path path) {
+        CACHE.remove(path);
+    }
+
+    /**
+     * Drops the cached attributes of a file. Must be called after the application changes a file.
+     * @param file The file that changed
+     */
+    public static void invalidate(File file) {
+        invalidate(file.toPath());
+    }
+
+    /**
+     * Watches a directory so that its cached entries are invalidated when they change on disk.
+     * Watching the same directory again has no effect.
+     * @param directory The directory to watch
+     */
+    public static synchronized void watch(Path directory) {
+        if (WATCHED.containsKey(directory)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread watcher = new Thread(FileAttributeCache::processEvents, "file-attribute-watcher");
+                watcher.setDaemon(true);
+                watcher.start();
+            }
+            if (WATCHED.size() >= MAX_WATCHED_DIRECTORIES) {
+                // Entries of the directories no longer watched fall back to expiring
+                WATCHED.values().forEach(WatchKey::cancel);
+                WATCHED.clear();
+            }
+            WATCHED.put(directory, directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY));
+        } catch (IOException e) {
+            System.err.println("No se puede vigilar la carpeta " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidates cached entries as change events arrive. Runs on the watcher thread.
+     */
+    private static void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        CACHE.clear();
+                    } else {
+                        invalidate(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (!key.reset()) {
+                    WATCHED.remove(directory);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher stops with the application
+        }
+    }
+
+    /**
+     * Cache entry holding the attributes of a file and when they were read.
+     */
+    private static class CachedAttributes {
+        private final BasicFileAttributes attributes;
+        private final long readAt;
+
+        /**
+         * Creates a cache entry.
+         * @param attributes The attributes read from the file system
+         * @param readAt Value of {@link System#nanoTime()} when they were read
+         */
+        CachedAttributes(BasicFileAttributes attributes, long readAt) {
+            this.attributes = attributes;
+            this.readAt = readAt;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package imageLibrary.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe map of bounded size used by the per-file caches.
+ * When it is full, adding an entry evicts the least recently used one, so a large library
+ * keeps the entries of the files still being browsed instead of dropping them all at once.
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class LruCache<K, V> {
+    private final Map<K, V> entries;
+
+    /**
+     * Creates an empty cache.
+     * @param maxEntries Maximum number of entries kept
+     * @throws IllegalArgumentException if maxEntries is not positive
+     */
+    public LruCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+        }
+        // Access order: every get moves the entry to the end, so the eldest is the least recently used
+        entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the value of a key, marking it as recently used.
+     * @param key The key
+     * @return The value, or null if the key is not cached
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Stores the value of a key, evicting the least recently used entry if the cache is full.
+     * @param key The key
+     * @param value The value
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes a key.
+     * @param key The key
+     * @return The value it had, or null if the key was not cached
+     */
+    public synchronized V remove(K key) {
+        return entries.remove(key);
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the number of entries.
+     * @return The number of cached keys
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -1,15 +1,22 @@
 package imageLibrary.util;
 
 import org.apache.commons.imaging.*;
+import org.apache.commons.imaging.common.ImageMetadata;
 import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
 import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
 import org.apache.commons.imaging.formats.tiff.TiffField;
 import org.apache.commons.imaging.formats.tiff.constants.ExifTagConstants;
 import org.apache.commons.imaging.formats.tiff.write.TiffOutputDirectory;
 import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
+import imageLibrary.analyzer.DecoderRegistry;
+import imageLibrary.analyzer.ExifReader;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -43,24 +50,69 @@ public class MetadataEditor {
             outputSet.getOrCreateExifDirectory().add(ExifTagConstants.EXIF_TAG_EXIF_IMAGE_LENGTH, (short) height);
         }
 
-        byte[] imageBytes = Files.readAllBytes(original.toPath());
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(destination))) {
+            new ExifRewriter().updateExifMetadataLossless(original, os, outputSet);
+        }
+    }
+
+    /**
+     * Sets the capture date of a JPEG file in place.
+     * Only the EXIF segment is read and, when it does not have to grow, only the changed bytes
+     * are written (see {@link ExifPatcher}). In sidecar mode, or when the image already has a
+     * sidecar, the date is written to the XMP sidecar and the image is not touched.
+     * @param imageFile The JPEG file to modify
+     * @param captureDate The new capture date/time to set
+     * @throws Exception if there's an error reading or writing the image
+     */
+    public static void updateCaptureDate(File imageFile, LocalDateTime captureDate) throws Exception {
+        try {
+            if (usesSidecar(imageFile)) {
+                XmpSidecar.write(imageFile, captureDate, null);
+            } else {
+                ExifPatcher.writeCaptureDate(imageFile, captureDate);
+            }
+        } finally {
+            ExifReader.forget(imageFile);
+            FileAttributeCache.invalidate(imageFile);
+        }
+    }
 
-        try (FileOutputStream fos = new FileOutputStream(destination)) {
-            new ExifRewriter().updateExifMetadataLossless(imageBytes, fos, outputSet);
+    /**
+     * Reads the metadata of an image file.
+     * The fastest metadata reader for the format is used and concurrent reads of the same
+     * file share a single parse.
+     * @param imageFile The image file to read
+     * @return The parsed metadata, or null if the file has none
+     * @throws IOException if there's an error reading the file
+     * @throws ImageReadException if there's an error parsing the metadata
+     */
+    public static ImageMetadata readMetadata(File imageFile) throws IOException, ImageReadException {
+        try {
+            return SingleFlight.execute(imageFile, "metadata", () -> DecoderRegistry.readMetadata(imageFile));
+        } catch (IOException | ImageReadException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
         }
     }
 
     /**
-     * Reads the EXIF description from an image file.
+     * Reads the description of an image file.
+     * A description in the XMP sidecar takes precedence over the EXIF one.
      * @param imageFile The image file to read
      * @return The description text or empty string if none exists
      * @throws IOException if there's an error reading the file
      * @throws ImageReadException if there's an error parsing the metadata
      */
     public static String readDescription(File imageFile) throws IOException, ImageReadException {
+        XmpSidecar sidecar = XmpSidecar.read(imageFile);
+        if (sidecar != null && sidecar.getDescription() != null) {
+            return sidecar.getDescription();
+        }
+
         TiffImageMetadata exif = null;
         try {
-            exif = (TiffImageMetadata) Imaging.getMetadata(imageFile);
+            exif = (TiffImageMetadata) readMetadata(imageFile);
         } catch (ClassCastException e) {
             System.err.println("No EXIF metadata present");
         }
@@ -74,6 +126,46 @@ public class MetadataEditor {
         return "";
     }
 
+    /**
+     * Saves the description of an image.
+     * In sidecar mode, or when the image already has a sidecar, only the XMP sidecar is written.
+     * Otherwise the image is rewritten to a temporary file next to it that replaces the original
+     * with an atomic move, so a failed write never leaves a truncated image behind.
+     * @param imageFile The image file
+     * @param description The description text
+     * @throws Exception if there's an error reading or writing the files
+     */
+    public static void saveDescription(File imageFile, String description) throws Exception {
+        if (usesSidecar(imageFile)) {
+            XmpSidecar.write(imageFile, null, description);
+            return;
+        }
+
+        Path target = imageFile.toPath();
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), ".desc", ".tmp");
+        try {
+            writeDescription(imageFile, temp.toFile(), description.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            ExifReader.forget(imageFile);
+            FileAttributeCache.invalidate(imageFile);
+        }
+    }
+
+    /**
+     * Checks whether edits of an image go to its XMP sidecar.
+     * @param imageFile The image file
+     * @return true in sidecar mode or if the image already has a sidecar
+     */
+    private static boolean usesSidecar(File imageFile) {
+        return XmpSidecar.isEnabled() || FileAttributeCache.isFile(XmpSidecar.fileFor(imageFile));
+    }
+
     /**
      * Writes a description to an image file EXIF metadata.
      * @param originalFile The source image file
@@ -87,7 +179,7 @@ public class MetadataEditor {
             throws IOException, ImageReadException, ImageWriteException {
         TiffImageMetadata exif = null;
         try {
-            exif = (TiffImageMetadata) Imaging.getMetadata(originalFile);
+            exif = (TiffImageMetadata) readMetadata(originalFile);
         } catch (ClassCastException e) {
         	System.err.println("No EXIF metadata present");
         }
@@ -0,0 +1,106 @@
+package imageLibrary.util;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent reads of the same file.
+ * Requests are keyed by (path, modification time, operation): the first caller performs the
+ * read and every caller that arrives while it is still running waits for that same result
+ * instead of repeating the I/O. Nothing is kept once the read finishes, so this is not a cache.
+ */
+public class SingleFlight {
+    private static final Map<Key, CompletableFuture<Object>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Runs a read of a file, or joins the identical read already in progress.
+     * @param <T> The type of the result
+     * @param file The file being read
+     * @param operation Name of the read (e.g. "decode" or "metadata"); results of different
+     *        operations are never shared
+     * @param loader The read to perform if none is in progress
+     * @return The result of the read
+     * @throws Exception the exception thrown by the read, for every caller that shared it
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T execute(File file, String operation, Loader<T> loader) throws Exception {
+        Key key = new Key(file.getAbsoluteFile().toPath(), FileAttributeCache.lastModified(file), operation);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = IN_FLIGHT.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw (Error) cause;
+            }
+        }
+
+        try {
+            T result = loader.load();
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            IN_FLIGHT.remove(key, flight);
+        }
+    }
+
+    /**
+     * A read whose result can be shared between callers.
+     * @param <T> The type of the result
+     */
+    public interface Loader<T> {
+        /**
+         * Performs the read.
+         * @return The result of the read
+         * @throws Exception if the read fails
+         */
+        T load() throws Exception;
+    }
+
+    /**
+     * Identity of a read: the file, its version and the operation performed on it.
+     */
+    private static final class Key {
+        private final Path path;
+        private final long lastModified;
+        private final String operation;
+
+        /**
+         * Creates a key.
+         * @param path Absolute path of the file
+         * @param lastModified Modification time of the file in milliseconds
+         * @param operation Name of the read
+         */
+        Key(Path path, long lastModified, String operation) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return lastModified == other.lastModified && path.equals(other.path) && operation.equals(other.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, lastModified, operation);
+        }
+    }
+}
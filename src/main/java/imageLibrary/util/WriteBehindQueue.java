@@ -0,0 +1,146 @@
+package imageLibrary.util;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs file writes on a single background I/O thread, in submission order.
+ * Writes submitted with a key are coalesced: while a write for the same file and kind is
+ * still waiting, a new one replaces it, so several quick edits become a single write.
+ * Listeners are called on the I/O thread.
+ */
+public class WriteBehindQueue {
+    private final ExecutorService executor;
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a queue with its own I/O thread.
+     * @param threadName Name of the I/O thread
+     */
+    public WriteBehindQueue(String threadName) {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a write that is never coalesced.
+     * @param write The write to perform
+     * @param listener Listener notified of the outcome; may be null
+     */
+    public void submit(Write write, Listener listener) {
+        executor.execute(() -> perform(write, listener));
+    }
+
+    /**
+     * Queues a write, replacing the write of the same kind still waiting for the same file.
+     * @param file The file the write modifies
+     * @param kind Kind of write (e.g. "date"); writes of different kinds are never coalesced
+     * @param write The write to perform
+     * @param listener Listener notified of the outcome; replaces the listener of a coalesced write
+     * @return true if the write was merged into one already waiting, false if it was queued
+     */
+    public boolean submit(File file, String kind, Write write, Listener listener) {
+        String key = kind + ":" + file.getAbsolutePath();
+        PendingWrite next = new PendingWrite(write, listener);
+        synchronized (pending) {
+            PendingWrite waiting = pending.get(key);
+            if (waiting != null) {
+                pending.put(key, next);
+                return true;
+            }
+            pending.put(key, next);
+        }
+        executor.execute(() -> {
+            PendingWrite latest;
+            synchronized (pending) {
+                latest = pending.remove(key);
+            }
+            if (latest != null) {
+                perform(latest.write, latest.listener);
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Waits for the queued writes to finish and stops the I/O thread.
+     * @param timeoutSeconds Maximum time to wait
+     * @return true if every write finished in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeoutSeconds) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Performs a write and reports its outcome.
+     * @param write The write to perform
+     * @param listener Listener notified of the outcome; may be null
+     */
+    private static void perform(Write write, Listener listener) {
+        try {
+            write.run();
+            if (listener != null) {
+                listener.onWritten();
+            }
+        } catch (Exception e) {
+            System.err.println("Error en escritura diferida: " + e.getMessage());
+            if (listener != null) {
+                listener.onFailed(e);
+            }
+        }
+    }
+
+    /**
+     * A write performed on the I/O thread.
+     */
+    public interface Write {
+        /**
+         * Performs the write.
+         * @throws Exception if the write fails
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * Interface for receiving the outcome of a write.
+     */
+    public interface Listener {
+        /**
+         * Called when the write succeeded.
+         */
+        void onWritten();
+
+        /**
+         * Called when the write failed.
+         * @param error The error thrown by the write
+         */
+        void onFailed(Exception error);
+    }
+
+    /**
+     * A write waiting in the queue with its listener.
+     */
+    private static class PendingWrite {
+        private final Write write;
+        private final Listener listener;
+
+        /**
+         * Creates a waiting write.
+         * @param write The write to perform
+         * @param listener Listener notified of the outcome
+         */
+        PendingWrite(Write write, Listener listener) {
+            this.write = write;
+            this.listener = listener;
+        }
+    }
+}
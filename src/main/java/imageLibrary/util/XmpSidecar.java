@@ -0,0 +1,290 @@
+package imageLibrary.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import imageLibrary.model.ExifData;
+
+/**
+ * Metadata kept in a small XMP file next to an image instead of inside it.
+ * The sidecar of "photo.jpg" is "photo.jpg.xmp" and holds the fields edited in the application
+ * (capture date and description). In sidecar mode, edits only write this file, so multi-megabyte
+ * originals are not rewritten; readers merge the sidecar over the embedded metadata, and
+ * {@link BatchMetadataEditor#embedSidecars()} pushes the sidecars into the originals later.
+ */
+public class XmpSidecar {
+    /** Extension appended to the image file name. */
+    public static final String EXTENSION = ".xmp";
+
+    private static final String NS_RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+    private static final String NS_DC = "http://purl.org/dc/elements/1.1/";
+    private static final String NS_EXIF = "http://ns.adobe.com/exif/1.0/";
+
+    // XMP dates as other tools write them: seconds and fraction optional, with or without a time zone
+    // offset. The offset is ignored, as EXIF capture dates are local times.
+    private static final DateTimeFormatter XMP_DATE_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE)
+            .appendLiteral('T')
+            .appendValue(ChronoField.HOUR_OF_DAY, 2)
+            .appendLiteral(':')
+            .appendValue(ChronoField.MINUTE_OF_HOUR, 2)
+            .optionalStart()
+            .appendLiteral(':')
+            .appendValue(ChronoField.SECOND_OF_MINUTE, 2)
+            .optionalStart()
+            .appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true)
+            .optionalEnd()
+            .optionalEnd()
+            .optionalStart()
+            .appendOffsetId()
+            .optionalEnd()
+            .toFormatter();
+
+    private static volatile boolean enabled = Boolean.getBoolean("imageLibrary.sidecar");
+
+    private final LocalDateTime captureDate;
+    private final String description;
+
+    /**
+     * Creates the content of a sidecar.
+     * @param captureDate Capture date, or null to leave the embedded one
+     * @param description Description, or null to leave the embedded one
+     */
+    public XmpSidecar(LocalDateTime captureDate, String description) {
+        this.captureDate = captureDate;
+        this.description = description;
+    }
+
+    /**
+     * Checks whether edits are written to sidecars instead of to the images.
+     * @return true in sidecar mode
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switches sidecar mode on or off. Existing sidecars are still read when it is off.
+     * @param sidecarMode true to write edits to sidecars
+     */
+    public static void setEnabled(boolean sidecarMode) {
+        enabled = sidecarMode;
+    }
+
+    /**
+     * Gets the sidecar file of an image.
+     * @param image The image file
+     * @return The sidecar file, which may not exist
+     */
+    public static File fileFor(File image) {
+        return new File(image.getPath() + EXTENSION);
+    }
+
+    /**
+     * Reads the sidecar of an image.
+     * @param image The image file
+     * @return The sidecar content, or null if the image has no sidecar
+     * @throws IOException if the sidecar exists but cannot be read or parsed
+     */
+    public static XmpSidecar read(File image) throws IOException {
+        File sidecar = fileFor(image);
+        if (!FileAttributeCache.isFile(sidecar)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(sidecar.toPath())) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setExpandEntityReferences(false);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document document = builder.parse(in);
+
+            LocalDateTime date = null;
+            NodeList dates = document.getElementsByTagNameNS(NS_EXIF, "DateTimeOriginal");
+            if (dates.getLength() > 0) {
+                date = LocalDateTime.parse(dates.item(0).getTextContent().trim(), XMP_DATE_FORMAT);
+            }
+            String text = null;
+            NodeList descriptions = document.getElementsByTagNameNS(NS_DC, "description");
+            if (descriptions.getLength() > 0) {
+                NodeList items = ((Element) descriptions.item(0)).getElementsByTagNameNS(NS_RDF, "li");
+                text = items.getLength() > 0 ? items.item(0).getTextContent() : descriptions.item(0).getTextContent();
+            }
+            return new XmpSidecar(date, text);
+        } catch (IOException e) {
+            throw e;
+        } catch (DateTimeParseException e) {
+            throw new IOException("Fecha no válida en " + sidecar.getName(), e);
+        } catch (Exception e) {
+            throw new IOException("XMP no válido: " + sidecar.getName(), e);
+        }
+    }
+
+    /**
+     * Merges fields into the sidecar of an image, creating it if needed.
+     * The file is written to a temporary file first and moved into place atomically.
+     * @param image The image file
+     * @param captureDate New capture date, or null to keep the current one
+     * @param description New description, or null to keep the current one
+     * @throws IOException if the sidecar cannot be read or written
+     */
+    public static void write(File image, LocalDateTime captureDate, String description) throws IOException {
+        XmpSidecar current = read(image);
+        if (current != null) {
+            captureDate = captureDate != null ? captureDate : current.captureDate;
+            description = description != null ? description : current.description;
+        }
+        Path sidecar = fileFor(image).toPath();
+        Path temp = Files.createTempFile(sidecar.toAbsolutePath().getParent(), "." + sidecar.getFileName(), ".tmp");
+        try {
+            Files.writeString(temp, new XmpSidecar(captureDate, description).toXml(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, sidecar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+            FileAttributeCache.invalidate(sidecar);
+        }
+    }
+
+    /**
+     * Moves the sidecar of an image that is being renamed or moved, if it has one.
+     * @param from The old image file
+     * @param to The new image file
+     * @return true if a sidecar was moved, false if the image has none
+     * @throws IOException if the new image already has a sidecar or the sidecar cannot be moved
+     */
+    public static boolean move(File from, File to) throws IOException {
+        Path source = fileFor(from).toPath();
+        Path target = fileFor(to).toPath();
+        try {
+            if (!Files.exists(source)) {
+                return false;
+            }
+            if (Files.exists(target)) {
+                throw new IOException("Ya existe " + target.getFileName());
+            }
+            Files.move(source, target);
+            return true;
+        } finally {
+            FileAttributeCache.invalidate(source);
+            FileAttributeCache.invalidate(target);
+        }
+    }
+
+    /**
+     * Deletes the sidecar of an image, once its fields are embedded.
+     * @param image The image file
+     * @throws IOException if the sidecar cannot be deleted
+     */
+    public static void delete(File image) throws IOException {
+        Path sidecar = fileFor(image).toPath();
+        Files.deleteIfExists(sidecar);
+        FileAttributeCache.invalidate(sidecar);
+    }
+
+    /**
+     * Merges the sidecar of an image over EXIF fields read from the image itself.
+     * An unreadable sidecar is reported and ignored.
+     * @param image The image file
+     * @param embedded The EXIF fields embedded in the image
+     * @return The merged fields
+     */
+    public static ExifData overlay(File image, ExifData embedded) {
+        try {
+            XmpSidecar sidecar = read(image);
+            if (sidecar != null && sidecar.captureDate != null) {
+                return new ExifData(sidecar.captureDate, embedded.getCameraModel(), embedded.getGpsCoordinates());
+            }
+        } catch (IOException e) {
+            System.err.println("Error al leer " + fileFor(image).getName() + ": " + e.getMessage());
+        }
+        return embedded;
+    }
+
+    /**
+     * Gets the capture date stored in the sidecar.
+     * @return The capture date, or null if the sidecar does not set it
+     */
+    public LocalDateTime getCaptureDate() {
+        return captureDate;
+    }
+
+    /**
+     * Gets the description stored in the sidecar.
+     * @return The description, or null if the sidecar does not set it
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Serializes the fields as an XMP packet.
+     * @return The XMP document
+     */
+    private String toXml() {
+        StringWriter xml = new StringWriter();
+        xml.write("<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n");
+        xml.write("<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n");
+        xml.write(" <rdf:RDF xmlns:rdf=\"" + NS_RDF + "\">\n");
+        xml.write("  <rdf:Description rdf:about=\"\" xmlns:dc=\"" + NS_DC + "\" xmlns:exif=\"" + NS_EXIF + "\">\n");
+        if (captureDate != null) {
+            xml.write("   <exif:DateTimeOriginal>" + captureDate + "</exif:DateTimeOriginal>\n");
+        }
+        if (description != null) {
+            xml.write("   <dc:description><rdf:Alt><rdf:li xml:lang=\"x-default\">");
+            escape(description, xml);
+            xml.write("</rdf:li></rdf:Alt></dc:description>\n");
+        }
+        xml.write("  </rdf:Description>\n");
+        xml.write(" </rdf:RDF>\n");
+        xml.write("</x:xmpmeta>\n");
+        xml.write("<?xpacket end=\"w\"?>\n");
+        return xml.toString();
+    }
+
+    /**
+     * Writes text with the XML special characters escaped.
+     * @param text The text to write
+     * @param escaped The destination
+     */
+    private static void escape(String text, StringWriter escaped) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '<':
+                escaped.write("&lt;");
+                break;
+            case '>':
+                escaped.write("&gt;");
+                break;
+            case '&':
+                escaped.write("&amp;");
+                break;
+            case '"':
+                escaped.write("&quot;");
+                break;
+            default:
+                escaped.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.model.ExifData;
+import imageLibrary.util.BatchMetadataEditor;
+import imageLibrary.util.XmpSidecar;
+
+/**
+ * Unit tests for the {@link BatchMetadataEditor} class.
+ * Runs each operation (shift and set the capture date, strip the GPS position, embed the XMP
+ * sidecars) over a small batch and checks the files written, the counts reported, that
+ * modification times are kept and that no temporary file is left behind.
+ */
+public class BatchMetadataEditorTest {
+    private static final LocalDateTime CAPTURED = TestImages.CAPTURED;
+    private static final long MODIFIED = 1_600_000_000_000L;
+
+    /**
+     * Writes a JPEG file, with an EXIF segment holding a camera model, the capture date
+     * {@link #CAPTURED} and a GPS position if requested. Its modification time is set to {@link #MODIFIED}.
+     * @param file The file to write
+     * @param withExif Whether to add the EXIF segment
+     * @throws IOException if the image cannot be written
+     */
+    private void jpeg(File file, boolean withExif) throws IOException {
+        Files.createDirectories(file.toPath().getParent());
+        Files.write(file.toPath(), withExif ? TestImages.jpegWithExif() : TestImages.jpeg());
+        file.setLastModified(MODIFIED);
+    }
+
+    /**
+     * Lists the names of the files left in a folder tree.
+     * @param root The root of the tree
+     * @return The file names, sorted
+     * @throws IOException if the tree cannot be read
+     */
+    private List<String> names(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile).map(path -> path.getFileName().toString()).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Deletes a directory tree.
+     * @param root The root of the tree
+     * @throws IOException if the tree cannot be deleted
+     */
+    private void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Tests that shifting the capture date moves it in the EXIF data, skips images without one,
+     * and that setting it writes every image. Camera model and modification time are kept.
+     * @throws Exception if the images cannot be written or edited
+     */
+    @Test
+    public void testShiftAndSetDate() throws Exception {
+        Path folder = Files.createTempDirectory("batch");
+        File dated = folder.resolve("dated.jpg").toFile();
+        File plain = folder.resolve("plain.jpg").toFile();
+        try {
+            jpeg(dated, true);
+            jpeg(plain, false);
+            List<File> files = List.of(dated, plain);
+
+            BatchMetadataEditor.BatchResult shifted = BatchMetadataEditor.run(files,
+                    BatchMetadataEditor.shiftDate(Duration.ofMinutes(-90)), 2, null);
+            assertEquals(1, shifted.getModified());
+            assertEquals(1, shifted.getSkipped());
+            assertEquals(0, shifted.getFailed());
+            ExifData exif = ExifReader.read(dated);
+            assertEquals(CAPTURED.minusMinutes(90), exif.getCaptureDate());
+            assertEquals(TestImages.CAMERA_MODEL, exif.getCameraModel());
+            assertEquals(MODIFIED, dated.lastModified());
+            assertNull(ExifReader.read(plain).getCaptureDate());
+
+            LocalDateTime newDate = LocalDateTime.of(2000, 1, 2, 3, 4, 5);
+            BatchMetadataEditor.BatchResult set = BatchMetadataEditor.run(files,
+                    BatchMetadataEditor.setDate(newDate), 2, null);
+            assertEquals(2, set.getModified());
+            assertEquals(newDate, ExifReader.read(dated).getCaptureDate());
+            assertEquals(newDate, ExifReader.read(plain).getCaptureDate());
+            assertEquals(MODIFIED, plain.lastModified());
+            assertEquals(List.of("dated.jpg", "plain.jpg"), names(folder));
+        } finally {
+            delete(folder);
+        }
+    }
+
+    /**
+     * Tests that date changes go to the sidecar of an image that already has one, leaving the image untouched.
+     * @throws Exception if the images cannot be written or edited
+     */
+    @Test
+    public void testDateChangesGoToExistingSidecar() throws Exception {
+        Path folder = Files.createTempDirectory("batch");
+        File image = folder.resolve("image.jpg").toFile();
+        try {
+            jpeg(image, true);
+            byte[] before = Files.readAllBytes(image.toPath());
+            XmpSidecar.write(image, LocalDateTime.of(2019, 8, 1, 9, 0), "Playa");
+
+            BatchMetadataEditor.BatchResult result = BatchMetadataEditor.run(List.of(image),
+                    BatchMetadataEditor.shiftDate(Duration.ofDays(1)), 1, null);
+            assertEquals(1, result.getModified());
+            assertArrayEquals(before, Files.readAllBytes(image.toPath()));
+            XmpSidecar sidecar = XmpSidecar.read(image);
+            assertEquals(LocalDateTime.of(2019, 8, 2, 9, 0), sidecar.getCaptureDate());
+            assertEquals("Playa", sidecar.getDescription());
+        } finally {
+            delete(folder);
+        }
+    }
+
+    /**
+     * Tests that the GPS position is removed while the other fields stay, and that a second
+     * run finds nothing to do.
+     * @throws Exception if the images cannot be written or edited
+     */
+    @Test
+    public void testStripGps() throws Exception {
+        Path folder = Files.createTempDirectory("batch");
+        File image = folder.resolve("image.jpg").toFile();
+        try {
+            jpeg(image, true);
+            assertNotNull(ExifReader.read(image).getGpsCoordinates());
+
+            BatchMetadataEditor.BatchResult result = BatchMetadataEditor.run(List.of(image),
+                    BatchMetadataEditor.stripGps(), 1, null);
+            assertEquals(1, result.getModified());
+            ExifData exif = ExifReader.read(image);
+            assertNull(exif.getGpsCoordinates());
+            assertEquals(CAPTURED, exif.getCaptureDate());
+            assertEquals(TestImages.CAMERA_MODEL, exif.getCameraModel());
+            assertEquals(MODIFIED, image.lastModified());
+
+            result = BatchMetadataEditor.run(List.of(image), BatchMetadataEditor.stripGps(), 1, null);
+            assertEquals(0, result.getModified());
+            assertEquals(1, result.getSkipped());
+        } finally {
+            delete(folder);
+        }
+    }
+
+    /**
+     * Tests that the fields of a sidecar are written into its image and the sidecar deleted,
+     * walking a folder tree in which a PNG file named as a JPEG is not listed.
+     * @throws Exception if the images cannot be written or edited
+     */
+    @Test
+    public void testEmbedSidecars() throws Exception {
+        Path folder = Files.createTempDirectory("batch");
+        File described = folder.resolve("Viajes").resolve("described.jpg").toFile();
+        File plain = folder.resolve("plain.jpg").toFile();
+        File fake = folder.resolve("fake.jpg").toFile();
+        try {
+            jpeg(described, true);
+            jpeg(plain, false);
+            ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", fake);
+            LocalDateTime sidecarDate = LocalDateTime.of(2018, 12, 24, 20, 0);
+            XmpSidecar.write(described, sidecarDate, "Cena");
+            assertEquals(List.of(described, plain), BatchMetadataEditor.listJpegFiles(folder));
+
+            BatchMetadataEditor.BatchResult result = BatchMetadataEditor.run(folder,
+                    BatchMetadataEditor.embedSidecars(), 2, null);
+            assertEquals(1, result.getModified());
+            assertEquals(1, result.getSkipped());
+            assertEquals(0, result.getFailed());
+            assertFalse(XmpSidecar.fileFor(described).exists());
+            assertEquals(sidecarDate, ExifReader.read(described).getCaptureDate());
+            assertEquals(MODIFIED, described.lastModified());
+            assertTrue(names(folder).stream().noneMatch(name -> name.endsWith(".tmp")));
+        } finally {
+            delete(folder);
+        }
+    }
+}
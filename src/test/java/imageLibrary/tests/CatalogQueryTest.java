@@ -0,0 +1,202 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.ImageAnalyzer;
+import imageLibrary.model.CatalogQuery;
+import imageLibrary.model.ImageCatalog;
+
+/**
+ * Unit tests for the {@link CatalogQuery} class.
+ * Checks the parser, the evaluation of queries over a catalog, capture dates read from real EXIF
+ * data and the parallel selection of rows.
+ */
+public class CatalogQueryTest {
+
+    /**
+     * Builds a small catalog of test images.
+     * @return The catalog
+     */
+    private ImageCatalog catalog() {
+        ImageCatalog catalog = new ImageCatalog();
+        long january = ImageCatalog.toEpochMilli(LocalDateTime.of(2024, 1, 15, 10, 0));
+        long march = ImageCatalog.toEpochMilli(LocalDateTime.of(2023, 3, 1, 8, 30));
+        catalog.add(Paths.get("fotos", "IMG_0001.jpg"), 1_000_000, march, 6000, 4000, january);
+        catalog.add(Paths.get("fotos", "IMG_0002.jpg"), 5_000_000, march, 4000, 3000, ImageCatalog.UNKNOWN_DATE);
+        catalog.add(Paths.get("fotos", "playa.png"), 3_000_000, january, 5000, 5000, ImageCatalog.UNKNOWN_DATE);
+        catalog.add(Paths.get("fotos", "nueva.jpg"), 500, january, 0, 0, ImageCatalog.UNKNOWN_DATE);
+        return catalog;
+    }
+
+    /**
+     * Runs a query over a catalog.
+     * @param catalog The catalog
+     * @param query The query text
+     * @return The matching rows
+     * @throws ParseException if the query is not valid
+     */
+    private int[] select(ImageCatalog catalog, String query) throws ParseException {
+        return CatalogQuery.select(catalog, CatalogQuery.parse(query).compile(catalog));
+    }
+
+    /**
+     * Tests precedence, parentheses, case-insensitive keywords and the bounds of parsed comparisons.
+     * @throws ParseException if a valid query is rejected
+     */
+    @Test
+    public void testParse() throws ParseException {
+        CatalogQuery query = CatalogQuery.parse("width>4000 and date>=2024-01-01 AND (name~\"IMG_\" OR size<2MB)");
+        assertTrue(query.getRoot() instanceof CatalogQuery.And);
+        CatalogQuery.And and = (CatalogQuery.And) query.getRoot();
+        assertEquals(3, and.getTerms().size());
+        assertTrue(and.getTerms().get(2) instanceof CatalogQuery.Or);
+
+        CatalogQuery.Range width = (CatalogQuery.Range) and.getTerms().get(0);
+        assertEquals(CatalogQuery.Field.WIDTH, width.getField());
+        assertEquals(4001, width.getMin());
+        assertEquals(Long.MAX_VALUE, width.getMax());
+
+        CatalogQuery.Range size = (CatalogQuery.Range) CatalogQuery.parse("tamaño <= 1.5KB").getRoot();
+        assertEquals(1536, size.getMax());
+        CatalogQuery.Range year = (CatalogQuery.Range) CatalogQuery.parse("fecha = 2024").getRoot();
+        assertEquals(ImageCatalog.toEpochMilli(LocalDateTime.of(2024, 1, 1, 0, 0)), year.getMin());
+        assertEquals(ImageCatalog.toEpochMilli(LocalDateTime.of(2025, 1, 1, 0, 0)) - 1, year.getMax());
+        assertTrue(CatalogQuery.parse("NOT pixels > 20MP OR width < 10").getRoot() instanceof CatalogQuery.Or);
+
+        assertTrue(query.uses(CatalogQuery.Field.DATE));
+        assertFalse(query.uses(CatalogQuery.Field.CAPTURED));
+        assertTrue(CatalogQuery.parse("name ~ a OR NOT captura < 2020").uses(CatalogQuery.Field.CAPTURED));
+        assertFalse(CatalogQuery.parse("name ~ a").uses(CatalogQuery.Field.NAME));
+    }
+
+    /**
+     * Tests that invalid queries are rejected with the position of the error.
+     */
+    @Test
+    public void testParseErrors() {
+        assertThrows(ParseException.class, () -> CatalogQuery.parse(""));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("color = rojo"));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("width 4000"));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("size < 2TB"));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("date > 2024-13-01"));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("width ~ 4000"));
+        assertThrows(ParseException.class, () -> CatalogQuery.parse("name ~ \"IMG"));
+        ParseException error = assertThrows(ParseException.class, () -> CatalogQuery.parse("(width > 1 OR height > 1"));
+        assertEquals(24, error.getErrorOffset());
+        error = assertThrows(ParseException.class, () -> CatalogQuery.parse("width > 1 height > 1"));
+        assertEquals(10, error.getErrorOffset());
+    }
+
+    /**
+     * Tests queries over a catalog, including images whose dimensions or capture date are unknown.
+     * @throws ParseException if a valid query is rejected
+     */
+    @Test
+    public void testEvaluate() throws ParseException {
+        ImageCatalog catalog = catalog();
+        assertArrayEquals(new int[] { 0, 2 },
+                select(catalog, "width>4000 AND date>=2024-01-01 AND (name~\"img_\" OR size<4MB)"));
+        assertArrayEquals(new int[] { 0, 1 }, select(catalog, "name ~ IMG_"));
+        assertArrayEquals(new int[] { 2 }, select(catalog, "nombre = PLAYA.PNG"));
+        assertArrayEquals(new int[] { 0, 1, 2 }, select(catalog, "width != 1"));
+        assertArrayEquals(new int[] { 3 }, select(catalog, "NOT width > 0"));
+        assertArrayEquals(new int[] { 0 }, select(catalog, "captured = 2024-01"));
+        assertArrayEquals(new int[] { 0, 2, 3 }, select(catalog, "date = 2024-01-15"));
+        assertArrayEquals(new int[] { 1 }, select(catalog, "modified < 2024 AND pixels <= 12MP"));
+        assertArrayEquals(new int[] { 0 }, select(catalog, "captured = \"2024-01-15 10:00\""));
+    }
+
+    /**
+     * Tests capture date queries on real JPEG files, analyzed and added to the catalog the way
+     * the image table does it, with their EXIF fields read from the header buffer by the analysis.
+     * @throws Exception if the images cannot be written or analyzed
+     */
+    @Test
+    public void testCaptureDateFromExif() throws Exception {
+        Path folder = Files.createTempDirectory("captured");
+        File dated = folder.resolve("dated.jpg").toFile();
+        File plain = folder.resolve("plain.jpg").toFile();
+        try {
+            Files.write(dated.toPath(), TestImages.jpegWithExif());
+            Files.write(plain.toPath(), TestImages.jpeg());
+            dated.setLastModified(ImageCatalog.toEpochMilli(LocalDateTime.of(2024, 2, 1, 12, 0)));
+            plain.setLastModified(ImageCatalog.toEpochMilli(LocalDateTime.of(2021, 7, 1, 12, 0)));
+
+            ImageCatalog catalog = new ImageCatalog();
+            ImageAnalyzer.analyzeFolder(folder.toFile(), info -> {
+                assertTrue(info.isExifLoaded());
+                synchronized (catalog) {
+                    catalog.add(info);
+                }
+            });
+            assertEquals(2, catalog.size());
+            int datedRow = catalog.indexOf(dated);
+            int plainRow = catalog.indexOf(plain);
+            assertEquals(ImageCatalog.toEpochMilli(TestImages.CAPTURED),
+                    catalog.getCaptureEpoch(datedRow));
+            assertEquals(ImageCatalog.UNKNOWN_DATE, catalog.getCaptureEpoch(plainRow));
+
+            assertArrayEquals(new int[] { datedRow }, select(catalog, "captured = 2021-05-04"));
+            assertArrayEquals(new int[] { datedRow }, select(catalog, "captured < 2022"));
+            assertArrayEquals(new int[] { plainRow }, select(catalog, "NOT captured = 2021"));
+            assertArrayEquals(new int[] { plainRow }, select(catalog, "modified < 2024"));
+            assertEquals(2, select(catalog, "date = 2021").length);
+            assertArrayEquals(new int[] { datedRow }, CatalogQuery.parse("fecha = 2021-05").select(catalog));
+        } finally {
+            Files.deleteIfExists(dated.toPath());
+            Files.deleteIfExists(plain.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that queries narrowed down with the sorted indexes find the same rows as a full scan,
+     * also after the catalog changes.
+     * @throws ParseException if a valid query is rejected
+     */
+    @Test
+    public void testIndexedSelect() throws ParseException {
+        ImageCatalog catalog = new ImageCatalog();
+        for (int i = 0; i < 50_000; i++) {
+            catalog.add(Paths.get("fotos", "img" + i + ".jpg"), i * 97 % 10_007, i, i % 500, i % 300, ImageCatalog.UNKNOWN_DATE);
+        }
+        String[] queries = { "size < 100", "width = 7 AND height > 100", "size >= 10000 OR width = 499",
+                "pixels > 0.1MP AND NOT size > 50", "width != 0 AND size <= 2", "name ~ img1 AND size < 200" };
+        for (int round = 0; round < 2; round++) {
+            for (String text : queries) {
+                CatalogQuery query = CatalogQuery.parse(text);
+                assertArrayEquals(CatalogQuery.select(catalog, query.compile(catalog)), query.select(catalog));
+            }
+            for (int row = 0; row < 1000; row++) {
+                catalog.setSize(row * 31, row);
+                catalog.setDimensions(row * 41, 7, 200);
+            }
+        }
+    }
+
+    /**
+     * Tests that a catalog large enough to be filtered in parallel keeps the rows in order.
+     */
+    @Test
+    public void testParallelSelect() {
+        ImageCatalog catalog = new ImageCatalog();
+        for (int i = 0; i < 100_000; i++) {
+            catalog.add(Paths.get("fotos", "img" + i + ".jpg"), i, 0, 100, 100, ImageCatalog.UNKNOWN_DATE);
+        }
+        int[] rows = CatalogQuery.select(catalog, row -> catalog.getSize(row) % 7 == 0);
+        assertEquals(14286, rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(i * 7, rows[i]);
+        }
+    }
+}
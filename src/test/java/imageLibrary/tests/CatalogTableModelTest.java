@@ -0,0 +1,45 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+import imageLibrary.model.ImageCatalog;
+import imageLibrary.ui.CatalogTableModel;
+
+/**
+ * Unit tests for the {@link CatalogTableModel} class.
+ * Checks the conversion between table rows and catalog rows with and without a filtered view.
+ */
+public class CatalogTableModelTest {
+
+    /**
+     * Tests that catalog rows map to their table rows through a filtered view, that rows filtered
+     * out or added after the view was set are not shown, and that clearing the view shows every row.
+     */
+    @Test
+    public void testRowConversion() {
+        ImageCatalog catalog = new ImageCatalog();
+        for (int i = 0; i < 5; i++) {
+            catalog.add(Paths.get("fotos", "IMG_" + i + ".jpg"), 1000, 0, 10, 10, ImageCatalog.UNKNOWN_DATE);
+        }
+        CatalogTableModel model = new CatalogTableModel(catalog);
+        assertEquals(4, model.toTableRow(4));
+
+        model.setView(new int[] { 3, 0, 2 });
+        assertEquals(3, model.getRowCount());
+        assertEquals(0, model.toTableRow(3));
+        assertEquals(1, model.toTableRow(0));
+        assertEquals(2, model.toTableRow(2));
+        assertEquals(-1, model.toTableRow(1));
+        assertEquals(-1, model.toTableRow(4));
+        assertEquals(-1, model.toTableRow(-1));
+        assertEquals(2, model.toCatalogRow(2));
+
+        catalog.add(Paths.get("fotos", "nueva.jpg"), 1000, 0, 10, 10, ImageCatalog.UNKNOWN_DATE);
+        assertEquals(-1, model.toTableRow(5));
+
+        model.clearView();
+        assertEquals(6, model.getRowCount());
+        assertEquals(5, model.toTableRow(5));
+    }
+}
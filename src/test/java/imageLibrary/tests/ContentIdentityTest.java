@@ -0,0 +1,193 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.ContentIdentity;
+
+/**
+ * Unit tests for the {@link ContentIdentity} class.
+ * Checks that JPEG metadata does not change the identity, that it follows a renamed file and
+ * that it is updated when the application rewrites a file, and that cancelled hashing can be requested again.
+ */
+public class ContentIdentityTest {
+
+    /**
+     * Encodes a small JPEG image.
+     * @return The bytes of the JPEG file
+     * @throws IOException if the image cannot be encoded
+     */
+    private byte[] jpeg() throws IOException {
+        return jpeg(0xFF8800);
+    }
+
+    /**
+     * Encodes a small JPEG image with one colored pixel.
+     * @param color The RGB color of the pixel
+     * @return The bytes of the JPEG file
+     * @throws IOException if the image cannot be encoded
+     */
+    private byte[] jpeg(int color) throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(3, 5, color);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Tests that adding a comment segment keeps the hash and changing the image data does not.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testHashIgnoresMetadata() throws IOException {
+        byte[] original = jpeg();
+        byte[] comment = "Playa".getBytes(StandardCharsets.US_ASCII);
+        byte[] commented = new byte[original.length + 4 + comment.length];
+        commented[0] = (byte) 0xFF;
+        commented[1] = (byte) 0xD8;
+        commented[2] = (byte) 0xFF;
+        commented[3] = (byte) 0xFE;
+        commented[4] = 0;
+        commented[5] = (byte) (2 + comment.length);
+        System.arraycopy(comment, 0, commented, 6, comment.length);
+        System.arraycopy(original, 2, commented, 6 + comment.length, original.length - 2);
+        byte[] changed = original.clone();
+        changed[changed.length - 10] ^= 0x55;
+
+        Path folder = Files.createTempDirectory("identity");
+        File a = folder.resolve("a.jpg").toFile();
+        File b = folder.resolve("b.jpg").toFile();
+        File c = folder.resolve("c.jpg").toFile();
+        try {
+            Files.write(a.toPath(), original);
+            Files.write(b.toPath(), commented);
+            Files.write(c.toPath(), changed);
+            assertEquals(ContentIdentity.hash(a), ContentIdentity.hash(b));
+            assertNotEquals(ContentIdentity.hash(a), ContentIdentity.hash(c));
+        } finally {
+            Files.deleteIfExists(a.toPath());
+            Files.deleteIfExists(b.toPath());
+            Files.deleteIfExists(c.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that the key falls back to the path until the hash is computed and follows a rename.
+     * @throws Exception if the files cannot be written or the hash does not arrive in time
+     */
+    @Test
+    public void testKeyFollowsRename() throws Exception {
+        Path folder = Files.createTempDirectory("identity");
+        File original = folder.resolve("original.jpg").toFile();
+        File renamed = folder.resolve("renamed.jpg").toFile();
+        try {
+            Files.write(original.toPath(), jpeg());
+            assertEquals(original.getAbsolutePath(), ContentIdentity.keyFor(original));
+
+            CountDownLatch computed = new CountDownLatch(1);
+            ContentIdentity.addListener((file, key) -> {
+                if (file.equals(original)) {
+                    computed.countDown();
+                }
+            });
+            ContentIdentity.computeInBackground(Collections.singletonList(original));
+            assertTrue(computed.await(10, TimeUnit.SECONDS));
+            String key = ContentIdentity.keyFor(original);
+            assertTrue(key.startsWith("content:"));
+
+            assertTrue(original.renameTo(renamed));
+            ContentIdentity.moved(original, renamed);
+            assertEquals(key, ContentIdentity.keyFor(renamed));
+        } finally {
+            Files.deleteIfExists(original.toPath());
+            Files.deleteIfExists(renamed.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that rehashing a rewritten file gives its new identity at once, and that the old
+     * identity stays shared while an identical copy still has it.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testRehashAfterRewrite() throws IOException {
+        Path folder = Files.createTempDirectory("identity");
+        File first = folder.resolve("first.jpg").toFile();
+        File copy = folder.resolve("copy.jpg").toFile();
+        try {
+            Files.write(first.toPath(), jpeg(0x123456));
+            Files.write(copy.toPath(), jpeg(0x123456));
+            String oldKey = ContentIdentity.rehash(first);
+            assertEquals(oldKey, ContentIdentity.rehash(copy));
+
+            Files.write(first.toPath(), jpeg(0x654321));
+            first.setLastModified(first.lastModified() + 2000);
+            String newKey = ContentIdentity.rehash(first);
+            assertNotEquals(oldKey, newKey);
+            assertEquals(newKey, ContentIdentity.keyFor(first));
+            assertTrue(ContentIdentity.isShared(oldKey));
+
+            Files.write(copy.toPath(), jpeg(0x654321));
+            assertEquals(newKey, ContentIdentity.rehash(copy));
+            assertFalse(ContentIdentity.isShared(oldKey));
+        } finally {
+            Files.deleteIfExists(first.toPath());
+            Files.deleteIfExists(copy.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that cancelled hashing does not leave files stuck in the queue: a later request
+     * hashes every file that was not hashed before the cancellation.
+     * @throws Exception if the files cannot be written or the hashes do not arrive in time
+     */
+    @Test
+    public void testCancelHashing() throws Exception {
+        Path folder = Files.createTempDirectory("identity");
+        List<File> files = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                File file = folder.resolve("image" + i + ".jpg").toFile();
+                Files.write(file.toPath(), jpeg(0x010101 * i));
+                files.add(file);
+            }
+            List<Future<?>> tasks = ContentIdentity.computeInBackground(files);
+            assertEquals(files.size(), tasks.size());
+            tasks.forEach(task -> task.cancel(true));
+
+            for (Future<?> task : ContentIdentity.computeInBackground(files)) {
+                if (!task.isCancelled()) {
+                    task.get(10, TimeUnit.SECONDS);
+                }
+            }
+            for (File file : files) {
+                assertTrue(ContentIdentity.contentKey(file) != null, file.getName());
+            }
+        } finally {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+            Files.deleteIfExists(folder);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.DecodeAdmission;
+
+/**
+ * Unit tests for the {@link DecodeAdmission} class.
+ * Checks the memory budget, the subsampling fallback and the rejection of decompression bombs.
+ */
+public class DecodeAdmissionTest {
+
+    /**
+     * Writes a 200x200 PNG image, which needs about 156 KB once decoded.
+     * @return The temporary file
+     * @throws IOException if the image cannot be written
+     */
+    private File image() throws IOException {
+        File file = File.createTempFile("admission", ".png");
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(10, 10, 0xFF0000);
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    /**
+     * Tests that an image larger than the whole budget is refused at full resolution,
+     * decoded subsampled when allowed, and that the budget is returned afterwards.
+     * @throws IOException if the image cannot be written or decoded
+     */
+    @Test
+    public void testBudgetAndSubsampling() throws IOException {
+        File file = image();
+        try {
+            DecodeAdmission.setBudget(64 * 1024);
+            IOException refused = assertThrows(IOException.class, () -> DecodeAdmission.decode(file));
+            assertTrue(refused.getMessage().contains("demasiado grande"));
+            assertEquals(64 * 1024, DecodeAdmission.getAvailableBytes());
+
+            BufferedImage reduced = DecodeAdmission.decode(file, true);
+            assertEquals(2, DecodeAdmission.getSubsampling(reduced));
+            assertEquals(100, reduced.getWidth());
+            assertEquals(64 * 1024, DecodeAdmission.getAvailableBytes());
+
+            DecodeAdmission.setBudget(1024 * 1024);
+            BufferedImage full = DecodeAdmission.decode(file, true);
+            assertEquals(1, DecodeAdmission.getSubsampling(full));
+            assertEquals(200, full.getWidth());
+            assertEquals(0xFF0000, full.getRGB(10, 10) & 0xFFFFFF);
+            assertEquals(1024 * 1024, DecodeAdmission.getAvailableBytes());
+        } finally {
+            DecodeAdmission.setBudget(Runtime.getRuntime().maxMemory() / 4);
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Tests that a header announcing more than 16384x16384 pixels is refused before any pixel is read.
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testRejectsDecompressionBomb() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' });
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(chunk);
+        header.write("IHDR".getBytes(StandardCharsets.US_ASCII));
+        header.writeInt(20_000);
+        header.writeInt(20_000);
+        header.write(new byte[] { 8, 2, 0, 0, 0 });
+        CRC32 crc = new CRC32();
+        crc.update(chunk.toByteArray());
+        out.writeInt(13);
+        out.write(chunk.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        File file = File.createTempFile("bomb", ".png");
+        try {
+            Files.write(file.toPath(), bytes.toByteArray());
+            IOException refused = assertThrows(IOException.class, () -> DecodeAdmission.decode(file, true));
+            assertTrue(refused.getMessage().contains("rechazada"));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
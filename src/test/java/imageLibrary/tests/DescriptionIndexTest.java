@@ -0,0 +1,79 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.DescriptionIndex;
+import imageLibrary.util.DescriptionStore;
+
+/**
+ * Unit tests for the {@link DescriptionIndex} class.
+ * Checks word and phrase queries, updates made through the store, and reloading a saved index.
+ */
+public class DescriptionIndexTest {
+
+    /**
+     * Tests that words are split, lower-cased and stripped of accents.
+     */
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("cumpleanos", "de", "ana", "2024"),
+                DescriptionIndex.tokenize("Cumpleaños de ANA, 2024!"));
+    }
+
+    /**
+     * Tests prefix and phrase queries, and that the index follows the store.
+     * Then checks that the saved index is loaded again and still follows the store.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testSearch() throws IOException {
+        Path folder = Files.createTempDirectory("index");
+        File log = folder.resolve("descriptions.log").toFile();
+        File indexFile = folder.resolve("descriptions.idx").toFile();
+        try {
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                store.put("/a.jpg", "Puesta de sol en la playa");
+                store.put("/b.jpg", "Sol de mañana en la montaña");
+                DescriptionIndex index = DescriptionIndex.open(indexFile, log, store);
+                store.put("/c.jpg", "Playa de noche");
+
+                assertNull(index.search("  "));
+                DescriptionIndex.Matches matches = index.search("pla");
+                assertEquals(2, matches.size());
+                assertTrue(matches.contains("/a.jpg"));
+                assertTrue(matches.contains("/c.jpg"));
+                assertEquals(1, index.search("\"puesta de sol\"").size());
+                assertEquals(0, index.search("\"sol de puesta\"").size());
+                assertTrue(index.search("MONTAÑA sol").contains("/b.jpg"));
+
+                store.put("/a.jpg", "Atardecer");
+                assertFalse(index.search("playa").contains("/a.jpg"));
+                store.remove("/c.jpg");
+                assertEquals(0, index.search("playa").size());
+
+                store.close();
+                index.save(indexFile, log);
+            }
+
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                DescriptionIndex index = DescriptionIndex.open(indexFile, log, store);
+                assertEquals(2, index.size());
+                assertTrue(index.search("atar").contains("/a.jpg"));
+                store.put("/d.jpg", "Atardecer en el río");
+                assertEquals(2, index.search("\"atardecer\"").size());
+            }
+        } finally {
+            Files.deleteIfExists(log.toPath());
+            Files.deleteIfExists(indexFile.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.DescriptionStore;
+
+/**
+ * Unit tests for the {@link DescriptionStore} class.
+ * Checks that descriptions survive reopening, a torn last record, compaction and the
+ * migration of the old serialized map, and that a log damaged before its end is not opened.
+ */
+public class DescriptionStoreTest {
+
+    /**
+     * Tests that puts and removes are replayed, and that a torn record at the end of the log
+     * is dropped without losing the records before it.
+     * @throws IOException if the log cannot be written
+     */
+    @Test
+    public void testReplay() throws IOException {
+        Path folder = Files.createTempDirectory("descriptions");
+        File log = folder.resolve("descriptions.log").toFile();
+        try {
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                store.put("/a.jpg", "Playa");
+                store.put("/b.jpg", "Montaña");
+                store.put("/a.jpg", "Playa al atardecer");
+                store.remove("/b.jpg");
+                store.put("/c.jpg", "Ciudad");
+            }
+            Files.write(log.toPath(), new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                assertEquals(2, store.size());
+                assertEquals("Playa al atardecer", store.get("/a.jpg"));
+                assertNull(store.get("/b.jpg"));
+                assertEquals("Ciudad", store.get("/c.jpg"));
+                store.put("/d.jpg", "Bosque");
+            }
+
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                assertEquals(3, store.size());
+                assertEquals("Bosque", store.get("/d.jpg"));
+            }
+        } finally {
+            Files.deleteIfExists(log.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that a damaged record is cut off only when nothing follows it: a bad checksum on the
+     * last record or a zero-filled tail is dropped, while a bad checksum or length in the middle
+     * of the log makes opening fail and leaves the file untouched.
+     * @throws IOException if the log cannot be written
+     */
+    @Test
+    public void testDamagedRecords() throws IOException {
+        Path folder = Files.createTempDirectory("descriptions");
+        File log = folder.resolve("descriptions.log").toFile();
+        try {
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                store.put("/a.jpg", "Playa");
+            }
+            long firstEnd = log.length();
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                store.put("/b.jpg", "Montaña");
+                store.put("/c.jpg", "Ciudad");
+            }
+            byte[] intact = Files.readAllBytes(log.toPath());
+
+            byte[] lastDamaged = intact.clone();
+            lastDamaged[lastDamaged.length - 1] ^= 0x20;
+            Files.write(log.toPath(), lastDamaged);
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                assertEquals("Montaña", store.get("/b.jpg"));
+                assertNull(store.get("/c.jpg"));
+            }
+
+            Files.write(log.toPath(), intact);
+            Files.write(log.toPath(), new byte[4096], StandardOpenOption.APPEND);
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                assertEquals(3, store.size());
+            }
+            assertEquals(intact.length, log.length());
+
+            byte[] middleDamaged = intact.clone();
+            middleDamaged[(int) firstEnd + 10] ^= 0x20;
+            Files.write(log.toPath(), middleDamaged);
+            assertThrows(IOException.class, () -> DescriptionStore.open(log, null));
+            assertTrue(Arrays.equals(middleDamaged, Files.readAllBytes(log.toPath())));
+
+            byte[] badLength = intact.clone();
+            badLength[(int) firstEnd] = (byte) 0x7F;
+            Files.write(log.toPath(), badLength);
+            assertThrows(IOException.class, () -> DescriptionStore.open(log, null));
+            assertEquals(intact.length, log.length());
+        } finally {
+            Files.deleteIfExists(log.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that compaction shrinks the log and keeps every live description.
+     * @throws IOException if the log cannot be written
+     */
+    @Test
+    public void testCompact() throws IOException {
+        Path folder = Files.createTempDirectory("descriptions");
+        File log = folder.resolve("descriptions.log").toFile();
+        try {
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                for (int i = 0; i < 200; i++) {
+                    store.put("/img" + (i % 10) + ".jpg", "Versión " + i);
+                }
+                long before = log.length();
+                store.compact();
+                assertTrue(log.length() < before / 10);
+                store.put("/img0.jpg", "Final");
+            }
+
+            try (DescriptionStore store = DescriptionStore.open(log, null)) {
+                assertEquals(10, store.size());
+                assertEquals("Final", store.get("/img0.jpg"));
+                assertEquals("Versión 199", store.get("/img9.jpg"));
+            }
+        } finally {
+            Files.deleteIfExists(log.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that the serialized map of older versions is migrated on first open.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testMigrateLegacyFile() throws IOException {
+        Path folder = Files.createTempDirectory("descriptions");
+        File log = folder.resolve("descriptions.log").toFile();
+        File legacy = folder.resolve("descriptions.dat").toFile();
+        File migrated = folder.resolve("descriptions.dat.migrated").toFile();
+        try {
+            Map<String, String> descriptions = new HashMap<>();
+            descriptions.put("/a.jpg", "Playa");
+            descriptions.put("/b.jpg", "Montaña");
+            try (ObjectOutputStream oos = new ObjectOutputStream(Files.newOutputStream(legacy.toPath()))) {
+                oos.writeObject(descriptions);
+            }
+
+            try (DescriptionStore store = DescriptionStore.open(log, legacy)) {
+                assertEquals(descriptions, store.asMap());
+            }
+            assertFalse(legacy.exists());
+            assertTrue(migrated.exists());
+        } finally {
+            Files.deleteIfExists(log.toPath());
+            Files.deleteIfExists(legacy.toPath());
+            Files.deleteIfExists(migrated.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.model.ExifData;
+import imageLibrary.util.ExifPatcher;
+
+/**
+ * Unit tests for the {@link ExifPatcher} class.
+ * Covers each way a capture date is written: rebuilding the EXIF segment when it grows and
+ * copying the file, rewriting it in place followed by a COM padding segment or zero-extended,
+ * adding it to a file without EXIF data, and skipping a malformed padding segment.
+ */
+public class ExifPatcherTest {
+    private static final LocalDateTime NEW_DATE = LocalDateTime.of(1999, 12, 31, 23, 59, 58);
+    // Start of the APP1 segment in the test images, right after SOI
+    private static final int APP1_POSITION = 2;
+
+    /**
+     * Builds the EXIF test image with its DateTimeOriginal tag renamed to DateTimeDigitized, so
+     * the date cannot be patched in place and the segment has to be rebuilt.
+     * @return The bytes of the JPEG file
+     * @throws IOException if the image cannot be encoded
+     */
+    private byte[] jpegWithoutCaptureDate() throws IOException {
+        byte[] jpeg = TestImages.jpegWithExif();
+        // Little-endian entry header: tag 0x9003, type ASCII
+        for (int i = 0; i + 4 <= jpeg.length; i++) {
+            if (jpeg[i] == 0x03 && jpeg[i + 1] == (byte) 0x90 && jpeg[i + 2] == 2 && jpeg[i + 3] == 0) {
+                jpeg[i] = 0x04;
+                return jpeg;
+            }
+        }
+        throw new IllegalStateException("DateTimeOriginal not found");
+    }
+
+    /**
+     * Gets the size of the APP1 segment of a JPEG file.
+     * @param jpeg The bytes of the JPEG file
+     * @return Size of the segment, marker included
+     */
+    private int app1Bytes(byte[] jpeg) {
+        return 2 + (((jpeg[APP1_POSITION + 2] & 0xFF) << 8) | (jpeg[APP1_POSITION + 3] & 0xFF));
+    }
+
+    /**
+     * Inserts a COM segment right after the APP1 segment.
+     * @param jpeg The bytes of the JPEG file
+     * @param length Value of the length field of the segment
+     * @param contentBytes Number of zero bytes after the length field
+     * @return The bytes of the new JPEG file
+     */
+    private byte[] withComment(byte[] jpeg, int length, int contentBytes) {
+        int end = APP1_POSITION + app1Bytes(jpeg);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, end);
+        out.write(0xFF);
+        out.write(0xFE);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write(new byte[contentBytes], 0, contentBytes);
+        out.write(jpeg, end, jpeg.length - end);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a JPEG file in a new folder.
+     * @param jpeg The bytes of the file
+     * @return The file
+     * @throws IOException if the file cannot be written
+     */
+    private File write(byte[] jpeg) throws IOException {
+        Path folder = Files.createTempDirectory("patch");
+        return Files.write(folder.resolve("image.jpg"), jpeg).toFile();
+    }
+
+    /**
+     * Deletes a test file and its folder, checking that no temporary file was left behind.
+     * @param file The test file
+     * @throws IOException if the folder cannot be listed or deleted
+     */
+    private void delete(File file) throws IOException {
+        Path folder = file.toPath().getParent();
+        try (Stream<Path> files = Files.list(folder)) {
+            assertEquals(1, files.count());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Checks that a file holds the new capture date next to the other test fields and still decodes.
+     * @param file The JPEG file
+     * @throws IOException if the file cannot be read
+     */
+    private void assertPatched(File file) throws IOException {
+        ExifReader.forget(file);
+        ExifData exif = ExifReader.read(file);
+        assertEquals(NEW_DATE, exif.getCaptureDate());
+        assertEquals(TestImages.CAMERA_MODEL, exif.getCameraModel());
+        assertNotNull(ImageIO.read(file));
+    }
+
+    /**
+     * Tests that a segment that grows is written to a copy of the file, followed by padding
+     * that takes the next rebuild in place.
+     * @throws Exception if the test file cannot be written or patched
+     */
+    @Test
+    public void testGrowAndCopy() throws Exception {
+        byte[] jpeg = jpegWithoutCaptureDate();
+        File file = write(jpeg);
+        try {
+            ExifPatcher.writeCaptureDate(file, NEW_DATE);
+            assertPatched(file);
+            byte[] copied = Files.readAllBytes(file.toPath());
+            assertTrue(app1Bytes(copied) > app1Bytes(jpeg));
+            assertEquals(0xFE, copied[APP1_POSITION + app1Bytes(copied) + 1] & 0xFF);
+            assertTrue(copied.length > jpeg.length + 4000);
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Tests that a segment rebuilt into a larger padded region is written in place, with the
+     * leftover kept as a COM segment.
+     * @throws Exception if the test file cannot be written or patched
+     */
+    @Test
+    public void testShrinkWithComment() throws Exception {
+        byte[] jpeg = withComment(jpegWithoutCaptureDate(), 2 + 200, 200);
+        File file = write(jpeg);
+        try {
+            ExifPatcher.writeCaptureDate(file, NEW_DATE);
+            assertPatched(file);
+            byte[] patched = Files.readAllBytes(file.toPath());
+            assertEquals(jpeg.length, patched.length);
+            int end = APP1_POSITION + app1Bytes(patched);
+            assertTrue(end < APP1_POSITION + app1Bytes(jpeg) + 204);
+            assertEquals(0xFE, patched[end + 1] & 0xFF);
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Tests that a leftover too small for a COM header is added to the end of the APP1 segment.
+     * The size of the rebuilt segment is measured first on a copy with plenty of padding.
+     * @throws Exception if the test files cannot be written or patched
+     */
+    @Test
+    public void testZeroExtend() throws Exception {
+        byte[] jpeg = jpegWithoutCaptureDate();
+        File probe = write(withComment(jpeg, 2 + 200, 200));
+        int rebuilt;
+        try {
+            ExifPatcher.writeCaptureDate(probe, NEW_DATE);
+            rebuilt = app1Bytes(Files.readAllBytes(probe.toPath()));
+        } finally {
+            delete(probe);
+        }
+
+        // Padding such that two bytes are left over once the rebuilt segment is written
+        int padding = rebuilt + 2 - app1Bytes(jpeg);
+        byte[] tight = withComment(jpeg, padding - 2, padding - 4);
+        File file = write(tight);
+        try {
+            ExifPatcher.writeCaptureDate(file, NEW_DATE);
+            assertPatched(file);
+            byte[] patched = Files.readAllBytes(file.toPath());
+            assertEquals(tight.length, patched.length);
+            assertEquals(rebuilt + 2, app1Bytes(patched));
+            assertEquals(0xFF, patched[APP1_POSITION + rebuilt + 2] & 0xFF);
+            assertTrue((patched[APP1_POSITION + rebuilt + 3] & 0xFF) != 0xFE);
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Tests that an EXIF segment is added to a JPEG file that has none.
+     * @throws Exception if the test file cannot be written or patched
+     */
+    @Test
+    public void testFileWithoutExif() throws Exception {
+        byte[] jpeg = TestImages.jpeg();
+        File file = write(jpeg);
+        try {
+            assertEquals(null, ExifReader.read(file).getCaptureDate());
+            ExifPatcher.writeCaptureDate(file, NEW_DATE);
+            ExifReader.forget(file);
+            assertEquals(NEW_DATE, ExifReader.read(file).getCaptureDate());
+            assertNotNull(ImageIO.read(file));
+            assertTrue(file.length() > jpeg.length);
+        } finally {
+            delete(file);
+        }
+    }
+
+    /**
+     * Tests that a COM segment too short to hold its own length field after the EXIF segment
+     * is not taken for padding.
+     * @throws Exception if the test file cannot be written or patched
+     */
+    @Test
+    public void testMalformedPadding() throws Exception {
+        for (int length = 0; length < 2; length++) {
+            byte[] jpeg = withComment(TestImages.jpegWithExif(), length, 0);
+            File file = write(jpeg);
+            try {
+                ExifPatcher.writeCaptureDate(file, NEW_DATE);
+                ExifReader.forget(file);
+                assertEquals(NEW_DATE, ExifReader.read(file).getCaptureDate());
+                assertEquals(jpeg.length, file.length());
+            } finally {
+                delete(file);
+            }
+        }
+    }
+}
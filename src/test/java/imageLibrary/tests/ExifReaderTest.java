@@ -0,0 +1,86 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.ExifReader;
+import imageLibrary.model.ExifData;
+import imageLibrary.util.ExifPatcher;
+
+/**
+ * Unit tests for the {@link ExifReader} class.
+ * Uses a hand-built EXIF segment with a camera model, a capture date and a GPS position.
+ * Also checks that dates written by {@link ExifPatcher} are read back.
+ */
+public class ExifReaderTest {
+
+    /**
+     * Tests that the three fields are read from a file and from a header buffer.
+     * @throws IOException if the test file cannot be written
+     */
+    @Test
+    public void testReadFields() throws IOException {
+        byte[] jpeg = TestImages.jpegWithExif();
+        File file = Files.createTempFile("exif", ".jpg").toFile();
+        try {
+            Files.write(file.toPath(), jpeg);
+            for (ExifData exif : new ExifData[] { ExifReader.read(file), ExifReader.read(ByteBuffer.wrap(jpeg)) }) {
+                assertEquals(TestImages.CAPTURED, exif.getCaptureDate());
+                assertEquals(TestImages.CAMERA_MODEL, exif.getCameraModel());
+                assertEquals(TestImages.GPS_COORDINATES, exif.getGpsCoordinates());
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that files without EXIF and truncated segments give empty or partial results, and that
+     * a header buffer ending inside the APP1 segment is told apart from a file without EXIF.
+     * @throws IOException if a test image cannot be encoded
+     */
+    @Test
+    public void testMissingOrTruncatedExif() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", png);
+        assertSame(ExifData.EMPTY, ExifReader.read(ByteBuffer.wrap(png.toByteArray())));
+        assertSame(ExifData.EMPTY, ExifReader.readHeader(ByteBuffer.wrap(png.toByteArray())));
+        assertSame(ExifData.EMPTY, ExifReader.readHeader(ByteBuffer.wrap(TestImages.jpeg())));
+
+        ByteBuffer truncated = ByteBuffer.wrap(TestImages.jpegWithExif());
+        truncated.limit(100);
+        assertNull(ExifReader.read(truncated).getCaptureDate());
+        // The segment goes on past the buffer: whether the file has EXIF is not known yet
+        assertNull(ExifReader.readHeader(truncated));
+    }
+
+    /**
+     * Tests that an existing capture date is rewritten in place and read back.
+     * @throws Exception if the test file cannot be written or patched
+     */
+    @Test
+    public void testCaptureDateRoundTrip() throws Exception {
+        byte[] jpeg = TestImages.jpegWithExif();
+        File file = Files.createTempFile("exif", ".jpg").toFile();
+        try {
+            Files.write(file.toPath(), jpeg);
+            ExifPatcher.writeCaptureDate(file, LocalDateTime.of(1999, 12, 31, 23, 59, 58));
+
+            assertEquals(jpeg.length, file.length());
+            ExifData exif = ExifReader.read(file);
+            assertEquals(LocalDateTime.of(1999, 12, 31, 23, 59, 58), exif.getCaptureDate());
+            assertEquals(TestImages.CAMERA_MODEL, exif.getCameraModel());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.FileAttributeCache;
+
+/**
+ * Unit tests for the {@link FileAttributeCache} class.
+ * Checks that the entries of a folder that is not watched are read again once they expire.
+ */
+public class FileAttributeCacheTest {
+
+    /**
+     * Tests that a file changed outside the application in an unwatched folder shows its new
+     * size after its entry expires, and that a deleted file is no longer reported.
+     * @throws Exception if the test file cannot be written or the test is interrupted
+     */
+    @Test
+    public void testUnwatchedEntriesExpire() throws Exception {
+        Path folder = Files.createTempDirectory("attributes");
+        Path file = folder.resolve("foto.jpg");
+        try {
+            Files.write(file, new byte[10]);
+            assertEquals(10, FileAttributeCache.get(file).size());
+
+            Files.write(file, new byte[20]);
+            Thread.sleep(1100);
+            assertEquals(20, FileAttributeCache.get(file).size());
+
+            Files.delete(file);
+            Thread.sleep(1100);
+            assertNull(FileAttributeCache.get(file));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(folder);
+        }
+    }
+}
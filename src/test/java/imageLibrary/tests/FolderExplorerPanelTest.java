@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import imageLibrary.ui.FileNode;
 import imageLibrary.ui.FolderExplorerPanel;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import javax.swing.tree.*;
 import java.io.File;
 import java.io.IOException;
@@ -84,4 +85,37 @@ public class FolderExplorerPanelTest {
             testDir.delete();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a symbolic link to a folder is shown as a folder, with its content below it.
+     * @throws IOException if the temporary folders cannot be created
+     */
+    @Test
+    public void testSymlinkedFolder() throws IOException {
+        File testDir = Files.createTempDirectory("testLinks").toFile();
+        File target = Files.createTempDirectory("testTarget").toFile();
+        File link = new File(testDir, "enlace");
+        File inside = new File(target, "nota.txt");
+        try {
+            assertTrue(inside.createNewFile());
+            try {
+                Files.createSymbolicLink(link.toPath(), target.toPath());
+            } catch (UnsupportedOperationException | IOException e) {
+                assumeTrue(false, "Symbolic links are not supported here");
+            }
+            FolderExplorerPanel panel = new FolderExplorerPanel();
+            panel.updateTreeWithFolder(testDir);
+
+            DefaultMutableTreeNode root = (DefaultMutableTreeNode) panel.treeModel.getRoot();
+            assertEquals(1, root.getChildCount());
+            DefaultMutableTreeNode linkNode = (DefaultMutableTreeNode) root.getChildAt(0);
+            assertEquals("enlace", ((FileNode) linkNode.getUserObject()).getName());
+            assertEquals(1, linkNode.getChildCount());
+        } finally {
+            link.delete();
+            inside.delete();
+            target.delete();
+            testDir.delete();
+        }
+    }
+}
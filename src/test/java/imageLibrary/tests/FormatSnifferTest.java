@@ -0,0 +1,55 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.FormatSniffer;
+import imageLibrary.analyzer.ImageFormat;
+
+/**
+ * Unit tests for the {@link FormatSniffer} class.
+ * Verifies that files are classified by content rather than by name.
+ */
+public class FormatSnifferTest {
+
+    /**
+     * Tests that a misnamed image is recognized and a fake image is rejected.
+     * @throws IOException if the temporary files cannot be written
+     */
+    @Test
+    public void testContentWinsOverExtension() throws IOException {
+        File dir = Files.createTempDirectory("sniffer").toFile();
+        File png = new File(dir, "photo.jpg");
+        File text = new File(dir, "notes.bmp");
+        try {
+            ImageIO.write(new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), "png", png);
+            Files.writeString(text.toPath(), "just some text");
+
+            assertEquals(ImageFormat.PNG, FormatSniffer.detect(png));
+            assertTrue(FormatSniffer.isImageFile(png));
+            assertNull(FormatSniffer.detect(text));
+            assertFalse(FormatSniffer.isImageFile(text));
+        } finally {
+            png.delete();
+            text.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Tests the extension fallback used for files that do not exist.
+     */
+    @Test
+    public void testExtensionNeedsDot() {
+        assertEquals(ImageFormat.JPEG, ImageFormat.fromExtension("a.JPEG"));
+        assertNull(ImageFormat.fromExtension("jpg"));
+        assertNull(ImageFormat.fromExtension("archive.notbmp"));
+    }
+}
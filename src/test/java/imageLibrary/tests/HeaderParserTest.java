@@ -0,0 +1,58 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.HeaderParser;
+
+/**
+ * Unit tests for the {@link HeaderParser} class.
+ * Checks that dimensions are read from the headers of every supported format.
+ */
+public class HeaderParserTest {
+
+    /**
+     * Encodes a blank image in the given format.
+     * @param format The ImageIO format name
+     * @param width The image width
+     * @param height The image height
+     * @return Buffer with the encoded file
+     * @throws IOException if the image cannot be encoded
+     */
+    private ByteBuffer encode(String format, int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Tests dimension reading for JPEG, PNG, GIF and BMP files.
+     * @throws IOException if a test image cannot be encoded
+     */
+    @Test
+    public void testReadDimensions() throws IOException {
+        assertEquals(new Dimension(321, 123), HeaderParser.readDimensions(encode("jpg", 321, 123)));
+        assertEquals(new Dimension(64, 48), HeaderParser.readDimensions(encode("png", 64, 48)));
+        assertEquals(new Dimension(17, 9), HeaderParser.readDimensions(encode("gif", 17, 9)));
+        assertEquals(new Dimension(30, 20), HeaderParser.readDimensions(encode("bmp", 30, 20)));
+    }
+
+    /**
+     * Tests that unknown or truncated data is rejected.
+     * @throws IOException if a test image cannot be encoded
+     */
+    @Test
+    public void testUnknownOrTruncatedData() throws IOException {
+        assertNull(HeaderParser.readDimensions(ByteBuffer.wrap("not an image".getBytes())));
+
+        ByteBuffer png = encode("png", 10, 10);
+        png.limit(12);
+        assertNull(HeaderParser.readDimensions(png));
+    }
+}
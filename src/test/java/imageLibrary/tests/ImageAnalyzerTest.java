@@ -0,0 +1,195 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import imageLibrary.analyzer.ImageAnalyzer;
+import imageLibrary.analyzer.ScanOptions;
+import imageLibrary.analyzer.ScanReport;
+
+/**
+ * Unit tests for the recursive scan of the {@link ImageAnalyzer} class.
+ * Checks the depth limit, the include and exclude patterns, the symbolic link policy and the scan report.
+ */
+public class ImageAnalyzerTest {
+
+    /**
+     * Writes a small PNG image, creating its folder if needed.
+     * @param file The file to write
+     * @throws IOException if the image cannot be written
+     */
+    private void image(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        ImageIO.write(new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+    }
+
+    /**
+     * Builds a library with images at three levels, a text file and an image in an excluded-looking folder.
+     * @return The root of the library
+     * @throws IOException if the files cannot be written
+     */
+    private Path library() throws IOException {
+        Path root = Files.createTempDirectory("library");
+        image(root.resolve("a.png"));
+        image(root.resolve("Viajes").resolve("b.png"));
+        image(root.resolve("Viajes").resolve("Roma").resolve("c.png"));
+        image(root.resolve("tmp").resolve("d.png"));
+        Files.write(root.resolve("notas.txt"), "no es una imagen".getBytes());
+        return root;
+    }
+
+    /**
+     * Deletes a directory tree without following links.
+     * @param root The root of the tree
+     * @throws IOException if the tree cannot be deleted
+     */
+    private void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Scans a tree and collects the names of the analyzed images.
+     * @param root The root of the tree
+     * @param options The scan options
+     * @param report Receives the scan report as its only element
+     * @return The image names, sorted
+     * @throws IOException if the root cannot be read
+     */
+    private Set<String> scan(Path root, ScanOptions options, List<ScanReport> report) throws IOException {
+        Set<String> names = Collections.synchronizedSet(new TreeSet<>());
+        report.add(ImageAnalyzer.analyzeTree(root, options, info -> names.add(info.getName())));
+        return new TreeSet<>(names);
+    }
+
+    /**
+     * Tests that the depth limit stops the scan at the right level and that the report counts the images.
+     * @throws IOException if the library cannot be built
+     */
+    @Test
+    public void testDepthLimit() throws IOException {
+        Path root = library();
+        try {
+            List<ScanReport> reports = new ArrayList<>();
+            ScanOptions options = new ScanOptions();
+            options.setPoolSize(3);
+            assertEquals(Set.of("a.png", "b.png", "c.png", "d.png"), scan(root, options, reports));
+            assertEquals(4, reports.get(0).getFiles());
+            assertEquals(0, reports.get(0).getFailures());
+            assertTrue(reports.get(0).getBytes() > 0);
+
+            options.setMaxDepth(2);
+            assertEquals(Set.of("a.png", "b.png", "d.png"), scan(root, options, reports));
+            options.setMaxDepth(1);
+            assertEquals(Set.of("a.png"), scan(root, options, reports));
+            options.setMaxDepth(0);
+            assertEquals(Set.of(), scan(root, options, reports));
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Tests that include patterns select files and exclude patterns skip files and whole subtrees.
+     * @throws IOException if the library cannot be built
+     */
+    @Test
+    public void testIncludeAndExclude() throws IOException {
+        Path root = library();
+        try {
+            List<ScanReport> reports = new ArrayList<>();
+            ScanOptions excluded = new ScanOptions();
+            excluded.addExclude("tmp");
+            excluded.addExclude("c.*");
+            assertEquals(Set.of("a.png", "b.png"), scan(root, excluded, reports));
+
+            ScanOptions included = new ScanOptions();
+            included.addInclude("Viajes/**");
+            assertEquals(Set.of("b.png", "c.png"), scan(root, included, reports));
+
+            ScanOptions byName = new ScanOptions();
+            byName.addInclude("[ad].png");
+            assertEquals(Set.of("a.png", "d.png"), scan(root, byName, reports));
+        } finally {
+            delete(root);
+        }
+    }
+
+    /**
+     * Tests that symbolic links are skipped by default, followed on request, and that a link
+     * cycle does not make the scan loop or report an image twice.
+     * @throws IOException if the library cannot be built
+     */
+    @Test
+    public void testSymbolicLinks() throws IOException {
+        Path root = library();
+        Path outside = Files.createTempDirectory("outside");
+        try {
+            image(outside.resolve("e.png"));
+            try {
+                Files.createSymbolicLink(root.resolve("enlace"), outside);
+                Files.createSymbolicLink(root.resolve("Viajes").resolve("ciclo"), root);
+            } catch (UnsupportedOperationException | IOException e) {
+                assumeTrue(false, "Symbolic links are not supported here");
+            }
+
+            List<ScanReport> reports = new ArrayList<>();
+            assertEquals(Set.of("a.png", "b.png", "c.png", "d.png"), scan(root, new ScanOptions(), reports));
+
+            ScanOptions follow = new ScanOptions();
+            follow.setFollowLinks(true);
+            List<String> names = Collections.synchronizedList(new ArrayList<>());
+            ScanReport report = ImageAnalyzer.analyzeTree(root, follow, info -> names.add(info.getName()));
+            Collections.sort(names);
+            assertEquals(List.of("a.png", "b.png", "c.png", "d.png", "e.png"), names);
+            assertEquals(5, report.getFiles());
+        } finally {
+            Files.deleteIfExists(root.resolve("enlace"));
+            Files.deleteIfExists(root.resolve("Viajes").resolve("ciclo"));
+            delete(root);
+            delete(outside);
+        }
+    }
+
+    /**
+     * Tests that an unreadable folder is counted as a failure without stopping the rest of the scan.
+     * @throws IOException if the library cannot be built
+     */
+    @Test
+    public void testUnreadableFolder() throws IOException {
+        Path root = library();
+        Path locked = root.resolve("Viajes").resolve("Roma");
+        try {
+            try {
+                Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("---------"));
+            } catch (UnsupportedOperationException e) {
+                assumeTrue(false, "POSIX permissions are not supported here");
+            }
+            assumeTrue(!Files.isReadable(locked), "The folder is still readable (running as root?)");
+
+            List<ScanReport> reports = new ArrayList<>();
+            assertEquals(Set.of("a.png", "b.png", "d.png"), scan(root, new ScanOptions(), reports));
+            assertEquals(1, reports.get(0).getFailures());
+        } finally {
+            Files.setPosixFilePermissions(locked, PosixFilePermissions.fromString("rwx------"));
+            delete(root);
+        }
+    }
+}
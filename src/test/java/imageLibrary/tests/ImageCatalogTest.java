@@ -0,0 +1,51 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.File;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+import imageLibrary.model.ImageCatalog;
+
+/**
+ * Unit tests for the {@link ImageCatalog} class.
+ * Verifies row lookup, updates and renames in the columnar store.
+ */
+public class ImageCatalogTest {
+
+    /**
+     * Tests that many images can be added and found again by file.
+     */
+    @Test
+    public void testAddAndFind() {
+        ImageCatalog catalog = new ImageCatalog();
+        for (int i = 0; i < 5000; i++) {
+            catalog.add(Paths.get("fotos", "img" + i + ".jpg"), i, 1000L + i, i % 100, 50, ImageCatalog.UNKNOWN_DATE);
+        }
+        catalog.add(Paths.get("otras", "img7.jpg"), 1, 1, 1, 1, ImageCatalog.UNKNOWN_DATE);
+
+        assertEquals(5001, catalog.size());
+        int row = catalog.indexOf(new File("fotos", "img1234.jpg"));
+        assertEquals("img1234.jpg", catalog.getName(row));
+        assertEquals(1234, catalog.getSize(row));
+        assertEquals(34, catalog.getWidth(row));
+        assertEquals(5000, catalog.indexOf(new File("otras", "img7.jpg")));
+        assertEquals(-1, catalog.indexOf(new File("fotos", "img9999.jpg")));
+    }
+
+    /**
+     * Tests that adding a known file updates its row and that renames keep the row.
+     */
+    @Test
+    public void testUpdateAndRename() {
+        ImageCatalog catalog = new ImageCatalog();
+        int row = catalog.add(Paths.get("fotos", "a.jpg"), 10, 20, 0, 0, ImageCatalog.UNKNOWN_DATE);
+        assertEquals(row, catalog.add(Paths.get("fotos", "a.jpg"), 10, 20, 640, 480, ImageCatalog.UNKNOWN_DATE));
+        assertEquals(1, catalog.size());
+        assertEquals(640, catalog.getWidth(row));
+
+        catalog.setName(row, "b.jpg");
+        assertEquals(-1, catalog.indexOf(new File("fotos", "a.jpg")));
+        assertEquals(row, catalog.indexOf(new File("fotos", "b.jpg")));
+        assertEquals(new File("fotos", "b.jpg").getAbsoluteFile(), catalog.getFile(row));
+    }
+}
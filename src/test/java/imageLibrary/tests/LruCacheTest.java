@@ -0,0 +1,37 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.LruCache;
+
+/**
+ * Unit tests for the {@link LruCache} class.
+ * Checks that a full cache evicts only its least recently used entry, counting reads as uses.
+ */
+public class LruCacheTest {
+
+    /**
+     * Tests that adding to a full cache evicts the entry neither written nor read for longest.
+     */
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        LruCache<String, String> cache = new LruCache<>(3);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        assertEquals("A", cache.get("a"));
+
+        cache.put("d", "D");
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+
+        assertEquals("C", cache.remove("c"));
+        cache.put("e", "E");
+        assertEquals(3, cache.size());
+        assertEquals("A", cache.get("a"));
+    }
+}
@@ -0,0 +1,123 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.SingleFlight;
+
+/**
+ * Unit tests for the {@link SingleFlight} class.
+ * Checks that concurrent reads of the same file share one load, including its failure,
+ * and that different operations or later calls are not shared.
+ */
+public class SingleFlightTest {
+    private static final int CALLERS = 8;
+
+    /**
+     * Waits until every thread is blocked waiting for the leading load.
+     * @param threads The joining threads
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void awaitBlocked(List<Thread> threads) throws InterruptedException {
+        for (Thread thread : threads) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(Thread.State.WAITING, thread.getState());
+        }
+    }
+
+    /**
+     * Tests that callers arriving while a load runs share its result, and its exception.
+     * @throws Exception if the test file cannot be created or a thread is interrupted
+     */
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+        File file = File.createTempFile("flight", ".jpg");
+        try {
+            for (boolean failing : new boolean[] { false, true }) {
+                AtomicInteger loads = new AtomicInteger();
+                CountDownLatch started = new CountDownLatch(1);
+                CountDownLatch release = new CountDownLatch(1);
+                Object value = new Object();
+                IOException error = new IOException("fallo");
+                SingleFlight.Loader<Object> loader = () -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    release.await();
+                    if (failing) {
+                        throw error;
+                    }
+                    return value;
+                };
+
+                AtomicReferenceArray<Object> outcomes = new AtomicReferenceArray<>(CALLERS);
+                List<Thread> threads = new ArrayList<>();
+                for (int i = 0; i < CALLERS; i++) {
+                    int caller = i;
+                    threads.add(new Thread(() -> {
+                        try {
+                            outcomes.set(caller, SingleFlight.execute(file, "decode", loader));
+                        } catch (Exception e) {
+                            outcomes.set(caller, e);
+                        }
+                    }));
+                }
+                threads.get(0).start();
+                assertTrue(started.await(10, TimeUnit.SECONDS));
+                for (Thread thread : threads.subList(1, CALLERS)) {
+                    thread.start();
+                }
+                awaitBlocked(threads.subList(1, CALLERS));
+                release.countDown();
+                for (Thread thread : threads) {
+                    thread.join(10_000);
+                }
+
+                assertEquals(1, loads.get());
+                for (int i = 0; i < CALLERS; i++) {
+                    assertSame(failing ? error : value, outcomes.get(i));
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    /**
+     * Tests that different operations on the same file and calls made after a load finished are not shared.
+     * @throws Exception if the test file cannot be created
+     */
+    @Test
+    public void testSeparateOperationsAndLaterCalls() throws Exception {
+        File file = File.createTempFile("flight", ".jpg");
+        try {
+            AtomicInteger loads = new AtomicInteger();
+            String nested = SingleFlight.execute(file, "decode", () -> {
+                loads.incrementAndGet();
+                return SingleFlight.execute(file, "metadata", () -> {
+                    loads.incrementAndGet();
+                    return "metadatos";
+                });
+            });
+            assertEquals("metadatos", nested);
+            assertEquals(2, loads.get());
+
+            SingleFlight.execute(file, "decode", loads::incrementAndGet);
+            assertEquals(3, loads.get());
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
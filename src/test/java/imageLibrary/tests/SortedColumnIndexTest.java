@@ -0,0 +1,102 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import imageLibrary.model.CatalogQuery;
+import imageLibrary.model.ImageCatalog;
+import imageLibrary.model.SortedColumnIndex;
+
+/**
+ * Unit tests for the {@link SortedColumnIndex} class.
+ * Checks range queries against a plain scan while rows are added, changed and cleared.
+ */
+public class SortedColumnIndexTest {
+
+    /**
+     * Finds the rows of a catalog whose size lies in a range with a plain scan.
+     * @param catalog The catalog
+     * @param min Smallest size, inclusive
+     * @param max Largest size, inclusive
+     * @return The matching rows, in ascending order
+     */
+    private int[] scan(ImageCatalog catalog, long min, long max) {
+        return IntStream.range(0, catalog.size())
+                .filter(row -> catalog.getSize(row) >= min && catalog.getSize(row) <= max).toArray();
+    }
+
+    /**
+     * Finds the rows whose size lies in a range with the index.
+     * @param index The index
+     * @param min Smallest size, inclusive
+     * @param max Largest size, inclusive
+     * @return The matching rows, in ascending order
+     */
+    private int[] query(SortedColumnIndex index, long min, long max) {
+        int[] rows = index.rowsInRange(min, max);
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    /**
+     * Tests that range queries agree with a scan through inserts and updates that cross several merges.
+     */
+    @Test
+    public void testRangesFollowChanges() {
+        Random random = new Random(42);
+        ImageCatalog catalog = new ImageCatalog();
+        for (int i = 0; i < 3000; i++) {
+            catalog.add(Paths.get("fotos", "img" + i + ".jpg"), random.nextInt(10_000), 0, 0, 0, ImageCatalog.UNKNOWN_DATE);
+        }
+        SortedColumnIndex index = catalog.getIndex(CatalogQuery.Field.SIZE);
+        assertEquals(3000, index.size());
+
+        for (int step = 0; step < 20_000; step++) {
+            if (random.nextInt(4) == 0) {
+                catalog.add(Paths.get("nuevas", "img" + step + ".jpg"), random.nextInt(10_000), 0, 0, 0,
+                        ImageCatalog.UNKNOWN_DATE);
+            } else {
+                catalog.setSize(random.nextInt(catalog.size()), random.nextInt(10_000));
+            }
+            if (step % 997 == 0) {
+                long min = random.nextInt(10_000);
+                long max = min + random.nextInt(2_000);
+                assertArrayEquals(scan(catalog, min, max), query(index, min, max));
+                assertTrue(index.estimate(min, max) >= scan(catalog, min, max).length);
+            }
+        }
+        assertEquals(catalog.size(), index.size());
+        assertArrayEquals(scan(catalog, Long.MIN_VALUE, Long.MAX_VALUE), query(index, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertArrayEquals(scan(catalog, 500, 500), query(index, 500, 500));
+    }
+
+    /**
+     * Tests that rows are visited in ascending order of value and that clearing the catalog empties the index.
+     */
+    @Test
+    public void testOrderAndClear() {
+        ImageCatalog catalog = new ImageCatalog();
+        long[] sizes = { 30, 10, 20, 10, 50 };
+        for (int i = 0; i < sizes.length; i++) {
+            catalog.add(Paths.get("fotos", "img" + i + ".jpg"), sizes[i], 0, 0, 0, ImageCatalog.UNKNOWN_DATE);
+        }
+        SortedColumnIndex index = catalog.getIndex(CatalogQuery.Field.SIZE);
+        catalog.setSize(4, 5);
+
+        long[] visited = new long[sizes.length];
+        int[] count = new int[1];
+        index.forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, row -> visited[count[0]++] = catalog.getSize(row));
+        assertArrayEquals(new long[] { 5, 10, 10, 20, 30 }, visited);
+        assertEquals(2, index.rowsInRange(10, 19).length);
+
+        catalog.clear();
+        assertEquals(0, index.size());
+        catalog.add(Paths.get("fotos", "otra.jpg"), 15, 0, 0, 0, ImageCatalog.UNKNOWN_DATE);
+        assertArrayEquals(new int[] { 0 }, index.rowsInRange(10, 19));
+    }
+}
@@ -0,0 +1,93 @@
+package imageLibrary.tests;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import javax.imageio.ImageIO;
+
+/**
+ * Test images shared by the unit tests.
+ * The EXIF image carries a hand-built APP1 segment with a camera model, a capture date and a
+ * GPS position, so the tests do not depend on a library to write it.
+ */
+final class TestImages {
+    /** Capture date stored in the EXIF test image. */
+    static final LocalDateTime CAPTURED = LocalDateTime.of(2021, 5, 4, 10, 20, 30);
+    /** Camera model stored in the EXIF test image. */
+    static final String CAMERA_MODEL = "Cam X";
+    /** GPS position stored in the EXIF test image, as returned by {@code ExifData.getGpsCoordinates}. */
+    static final String GPS_COORDINATES = "-40.500000, -3.250000";
+
+    private TestImages() {
+    }
+
+    /**
+     * Encodes a small JPEG file without EXIF data.
+     * @return The bytes of the JPEG file
+     * @throws IOException if the image cannot be encoded
+     */
+    static byte[] jpeg() throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "jpg", image);
+        return image.toByteArray();
+    }
+
+    /**
+     * Builds a JPEG file whose APP1 segment holds the test EXIF data: {@link #CAMERA_MODEL},
+     * {@link #CAPTURED} and {@link #GPS_COORDINATES}.
+     * @return The bytes of the JPEG file
+     * @throws IOException if the image cannot be encoded
+     */
+    static byte[] jpegWithExif() throws IOException {
+        ByteBuffer tiff = ByteBuffer.allocate(196).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        // IFD0: Model, Exif IFD pointer, GPS IFD pointer
+        tiff.putShort((short) 3);
+        entry(tiff, 0x0110, 2, 6, 50);
+        entry(tiff, 0x8769, 4, 1, 56);
+        entry(tiff, 0x8825, 4, 1, 94);
+        tiff.putInt(0);
+        tiff.put((CAMERA_MODEL + "\0").getBytes(StandardCharsets.US_ASCII));
+        // Exif IFD: DateTimeOriginal
+        tiff.putShort((short) 1);
+        entry(tiff, 0x9003, 2, 20, 74);
+        tiff.putInt(0);
+        tiff.put("2021:05:04 10:20:30\0".getBytes(StandardCharsets.US_ASCII));
+        // GPS IFD: 40° 30' 0" S, 3° 15' 0" W
+        tiff.putShort((short) 4);
+        entry(tiff, 1, 2, 2, 'S');
+        entry(tiff, 2, 5, 3, 148);
+        entry(tiff, 3, 2, 2, 'W');
+        entry(tiff, 4, 5, 3, 172);
+        tiff.putInt(0);
+        tiff.putInt(40).putInt(1).putInt(30).putInt(1).putInt(0).putInt(1);
+        tiff.putInt(3).putInt(1).putInt(15).putInt(1).putInt(0).putInt(1);
+
+        byte[] encoded = jpeg();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1 });
+        int length = 2 + 6 + tiff.capacity();
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.write("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+        out.write(tiff.array());
+        out.write(encoded, 2, encoded.length - 2);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a 12-byte IFD entry.
+     * @param tiff The buffer to write to
+     * @param tag The tag number
+     * @param type The field type
+     * @param count The value count
+     * @param value The inline value or the value offset
+     */
+    private static void entry(ByteBuffer tiff, int tag, int type, int count, int value) {
+        tiff.putShort((short) tag).putShort((short) type).putInt(count).putInt(value);
+    }
+}
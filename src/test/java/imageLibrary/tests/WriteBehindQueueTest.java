@@ -0,0 +1,157 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import imageLibrary.util.WriteBehindQueue;
+
+/**
+ * Unit tests for the {@link WriteBehindQueue} class.
+ * Checks that writes run in submission order, that a waiting write for the same file is replaced
+ * by a newer one, and that shutting down the queue drains it.
+ */
+public class WriteBehindQueueTest {
+
+    /**
+     * Occupies the I/O thread until the returned latch is released, so later writes wait in the queue.
+     * @param queue The queue
+     * @return The latch that frees the I/O thread
+     * @throws InterruptedException if interrupted while waiting for the I/O thread
+     */
+    private CountDownLatch block(WriteBehindQueue queue) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.submit(() -> {
+            started.countDown();
+            release.await();
+        }, null);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * Builds a listener that records its outcome in a list.
+     * @param outcomes The list receiving the outcome
+     * @param name Name recorded on success
+     * @return The listener
+     */
+    private WriteBehindQueue.Listener listener(List<String> outcomes, String name) {
+        return new WriteBehindQueue.Listener() {
+            @Override
+            public void onWritten() {
+                outcomes.add(name);
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                outcomes.add(name + ": " + error.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Tests that writes run one after another in the order they were submitted, keyed or not.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testSubmissionOrder() throws InterruptedException {
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer");
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block(queue);
+        for (int i = 0; i < 20; i++) {
+            int write = i;
+            if (i % 2 == 0) {
+                queue.submit(() -> order.add(write), null);
+            } else {
+                assertFalse(queue.submit(new File("foto" + i + ".jpg"), "date", () -> order.add(write), null));
+            }
+        }
+        release.countDown();
+        assertTrue(queue.shutdown(10));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i);
+        }
+        assertEquals(expected, order);
+    }
+
+    /**
+     * Tests that a write waiting for the same file and kind is replaced together with its listener,
+     * while other kinds, other files and writes already running are not.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testReplacePendingWrite() throws InterruptedException {
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer");
+        File file = new File("foto.jpg");
+        List<String> writes = Collections.synchronizedList(new ArrayList<>());
+        List<String> outcomes = Collections.synchronizedList(new ArrayList<>());
+
+        CountDownLatch release = block(queue);
+        assertFalse(queue.submit(file, "date", () -> writes.add("date 1"), listener(outcomes, "date 1")));
+        assertTrue(queue.submit(file, "date", () -> writes.add("date 2"), listener(outcomes, "date 2")));
+        assertFalse(queue.submit(file, "gps", () -> writes.add("gps"), listener(outcomes, "gps")));
+        assertFalse(queue.submit(new File("otra.jpg"), "date", () -> writes.add("other"), listener(outcomes, "other")));
+        assertTrue(queue.submit(file, "date", () -> {
+            throw new IOException("disco lleno");
+        }, listener(outcomes, "date 3")));
+        release.countDown();
+        block(queue).countDown();
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        assertFalse(queue.submit(file, "date", () -> {
+            running.countDown();
+            finish.await();
+            writes.add("date 4");
+        }, null));
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        assertFalse(queue.submit(file, "date", () -> writes.add("date 5"), null));
+        finish.countDown();
+        assertTrue(queue.shutdown(10));
+
+        assertEquals(List.of("gps", "other", "date 4", "date 5"), writes);
+        assertEquals(List.of("date 3: disco lleno", "gps", "other"), outcomes);
+    }
+
+    /**
+     * Tests that shutting down waits for every write still in the queue, and reports a write
+     * that does not finish in time.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testShutdownDrainsQueue() throws InterruptedException {
+        WriteBehindQueue queue = new WriteBehindQueue("test-writer");
+        List<Integer> done = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = block(queue);
+        for (int i = 0; i < 5; i++) {
+            int write = i;
+            queue.submit(new File("foto" + i + ".jpg"), "date", () -> {
+                Thread.sleep(20);
+                done.add(write);
+            }, null);
+        }
+        release.countDown();
+        assertTrue(queue.shutdown(10));
+        assertEquals(List.of(0, 1, 2, 3, 4), done);
+
+        WriteBehindQueue stuck = new WriteBehindQueue("test-writer");
+        CountDownLatch never = block(stuck);
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        stuck.submit(() -> thread.set(Thread.currentThread()), null);
+        assertFalse(stuck.shutdown(0));
+        never.countDown();
+        assertTrue(stuck.shutdown(10));
+        assertEquals("test-writer", thread.get().getName());
+    }
+}
@@ -0,0 +1,116 @@
+package imageLibrary.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import imageLibrary.model.ExifData;
+import imageLibrary.util.XmpSidecar;
+
+/**
+ * Unit tests for the {@link XmpSidecar} class.
+ * Writes sidecars next to an empty file and reads them back.
+ */
+public class XmpSidecarTest {
+
+    /**
+     * Tests that the fields of a sidecar survive a write and a read, that a later write
+     * keeps the fields it does not set, and that the date overrides the embedded one.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        Path folder = Files.createTempDirectory("xmp");
+        File image = folder.resolve("photo.jpg").toFile();
+        Files.write(image.toPath(), new byte[0]);
+        try {
+            assertNull(XmpSidecar.read(image));
+
+            LocalDateTime date = LocalDateTime.of(2023, 7, 14, 18, 5, 9);
+            XmpSidecar.write(image, date, null);
+            XmpSidecar.write(image, null, "Playa & \"puesta\" <de sol>");
+
+            XmpSidecar sidecar = XmpSidecar.read(image);
+            assertEquals(date, sidecar.getCaptureDate());
+            assertEquals("Playa & \"puesta\" <de sol>", sidecar.getDescription());
+
+            ExifData embedded = new ExifData(LocalDateTime.of(2000, 1, 1, 0, 0), "Cam X", null);
+            ExifData merged = XmpSidecar.overlay(image, embedded);
+            assertEquals(date, merged.getCaptureDate());
+            assertEquals("Cam X", merged.getCameraModel());
+
+            XmpSidecar.delete(image);
+            assertFalse(XmpSidecar.fileFor(image).exists());
+            assertSame(embedded, XmpSidecar.overlay(image, embedded));
+        } finally {
+            XmpSidecar.delete(image);
+            Files.deleteIfExists(image.toPath());
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that dates written by other tools, with a time zone offset, a fraction or no seconds,
+     * are read as the local time they state.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testDateFormats() throws IOException {
+        Path folder = Files.createTempDirectory("xmp");
+        File image = folder.resolve("photo.jpg").toFile();
+        String[] dates = { "2023-07-14T18:05", "2023-07-14T18:05:00+02:00", "2023-07-14T18:05:00.250Z",
+                "2023-07-14T18:05-05:00" };
+        try {
+            for (String date : dates) {
+                Files.writeString(XmpSidecar.fileFor(image).toPath(), "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">"
+                        + "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">"
+                        + "<rdf:Description xmlns:exif=\"http://ns.adobe.com/exif/1.0/\">"
+                        + "<exif:DateTimeOriginal>" + date + "</exif:DateTimeOriginal>"
+                        + "</rdf:Description></rdf:RDF></x:xmpmeta>");
+                LocalDateTime read = XmpSidecar.read(image).getCaptureDate();
+                assertEquals(LocalDateTime.of(2023, 7, 14, 18, 5), read.withNano(0), date);
+            }
+        } finally {
+            XmpSidecar.delete(image);
+            Files.deleteIfExists(folder);
+        }
+    }
+
+    /**
+     * Tests that a sidecar follows its image to a new name, and that an existing sidecar at the
+     * new name is not overwritten.
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testMove() throws IOException {
+        Path folder = Files.createTempDirectory("xmp");
+        File image = folder.resolve("photo.jpg").toFile();
+        File renamed = folder.resolve("playa.jpg").toFile();
+        File other = folder.resolve("otra.jpg").toFile();
+        try {
+            assertFalse(XmpSidecar.move(image, renamed));
+            XmpSidecar.write(image, null, "Playa");
+            assertTrue(XmpSidecar.move(image, renamed));
+            assertFalse(XmpSidecar.fileFor(image).exists());
+            assertEquals("Playa", XmpSidecar.read(renamed).getDescription());
+
+            XmpSidecar.write(other, null, "Otra");
+            assertThrows(IOException.class, () -> XmpSidecar.move(renamed, other));
+            assertEquals("Otra", XmpSidecar.read(other).getDescription());
+            assertEquals("Playa", XmpSidecar.read(renamed).getDescription());
+        } finally {
+            XmpSidecar.delete(image);
+            XmpSidecar.delete(renamed);
+            XmpSidecar.delete(other);
+            Files.deleteIfExists(folder);
+        }
+    }
+}